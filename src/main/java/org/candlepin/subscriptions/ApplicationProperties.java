@@ -93,6 +93,73 @@ public class ApplicationProperties {
    */
   private int cullingOffsetDays = 14;
 
+  /**
+   * Number of worker threads used to normalize and bucket HBI hosts during a nightly tally. When
+   * set to 1 (the default), hosts are processed sequentially on the tally thread.
+   */
+  private int hbiTallyParallelism = 1;
+
+  /**
+   * Number of HBI hosts handed to a tally worker at a time when hbiTallyParallelism is greater than
+   * 1. Default: 1000
+   */
+  private int hbiTallyPartitionSize = 1000;
+
+  /**
+   * Number of HBI hosts to read per keyset page during a nightly tally. When set to 0 (the
+   * default), all of an org's hosts are read with a single streaming query in one transaction.
+   */
+  private int hbiFactsPageSize = 0;
+
+  /** JDBC fetch size used for queries against the inventory database. Default: 1000 */
+  private int hbiFactsFetchSize = 1000;
+
+  /**
+   * If enabled, nightly HBI tallies only re-read hosts modified since the previous tally, falling
+   * back to a full tally once hbiFullReconciliationInterval has passed.
+   */
+  private boolean hbiIncrementalTallyEnabled = false;
+
+  /** How often an incremental HBI tally is replaced by a full re-read of every host. */
+  private Duration hbiFullReconciliationInterval = Duration.ofDays(7);
+
+  /**
+   * If enabled, HBI tallies count the host, bucket and measurement rows they insert, update and
+   * delete, and publish the counts as the rhsm-subscriptions.tally.hbi_host_changes metric.
+   */
+  private boolean hbiHostChangeTrackingEnabled = false;
+
+  /**
+   * If enabled, rolled tally snapshots are written with batched INSERT ... ON CONFLICT statements
+   * instead of per-row JPA inserts and updates. Requires PostgreSQL.
+   */
+  private boolean tallySnapshotBulkUpsertEnabled = false;
+
+  /**
+   * If enabled, metric tallies read the events of the whole effective range with a single query
+   * ordered by timestamp and fold them hour by hour, instead of issuing one query per hour.
+   */
+  private boolean metricTallyStreamingEnabled = false;
+
+  /**
+   * If enabled, metric tallies record what each instance contributed per hour, so that re-tallying
+   * late hours corrects monthly totals by difference instead of clearing and replaying the month.
+   */
+  private boolean metricTallyIncrementalTotalsEnabled = false;
+
+  /**
+   * If enabled, hourly tallies keep a running month-to-date total per remittance key, which monthly
+   * billing reads instead of summing every hourly snapshot of the month. Totals left behind while
+   * disabled should be reconciled before enabling it again.
+   */
+  private boolean billableUsageRunningTotalsEnabled = false;
+
+  /**
+   * Number of service types tallied concurrently during an account's hourly tally. When set to 1
+   * (the default), service types are tallied one after another on the tally thread.
+   */
+  private int hourlyTallyServiceTypeParallelism = 1;
+
   /** Enable or disable cloudigrade integration. */
   private boolean cloudigradeEnabled = false;
 
@@ -105,6 +105,42 @@ public class EventController {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Creates or updates events by their natural key, without loading the existing events first.
+   *
+   * @param events the events to write.
+   * @param meteringBatchId identifies the metering run writing the events.
+   * @return the number of events written.
+   * @see #deleteStaleEvents(String, String, String, OffsetDateTime, OffsetDateTime, UUID)
+   */
+  @Transactional
+  public int upsertAll(Collection<Event> events, UUID meteringBatchId) {
+    return repo.upsertAll(events, meteringBatchId);
+  }
+
+  /**
+   * Deletes the events in a time range that were not written by the given metering run.
+   *
+   * @param accountNumber account identifier
+   * @param eventSource event source
+   * @param eventType event type
+   * @param begin beginning of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @param meteringBatchId identifies the metering run whose events are kept.
+   * @return the number of deleted events.
+   */
+  @Transactional
+  public int deleteStaleEvents(
+      String accountNumber,
+      String eventSource,
+      String eventType,
+      OffsetDateTime begin,
+      OffsetDateTime end,
+      UUID meteringBatchId) {
+    return repo.deleteStaleMeteringEvents(
+        accountNumber, eventSource, eventType, begin, end, meteringBatchId);
+  }
+
   /**
    * Fetch a single Event by its ID.
    *
@@ -21,8 +21,11 @@
 package org.candlepin.subscriptions.inventory.db;
 
 import com.zaxxer.hikari.HikariDataSource;
+import java.util.Map;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -61,11 +64,18 @@ public class InventoryDataSourceConfiguration {
   @Bean(name = "inventoryEntityManagerFactory")
   public LocalContainerEntityManagerFactoryBean inventoryEntityManagerFactory(
       EntityManagerFactoryBuilder builder,
-      @Qualifier("inventoryDataSource") DataSource dataSource) {
+      @Qualifier("inventoryDataSource") DataSource dataSource,
+      ApplicationProperties applicationProperties) {
+    // Without an explicit fetch size the Postgres driver buffers the whole result set of a
+    // streamed query in memory.
     return builder
         .dataSource(dataSource)
         .packages("org.candlepin.subscriptions.inventory.db.model")
         .persistenceUnit("inventory")
+        .properties(
+            Map.of(
+                AvailableSettings.STATEMENT_FETCH_SIZE,
+                String.valueOf(applicationProperties.getHbiFactsFetchSize())))
         .build();
   }
 
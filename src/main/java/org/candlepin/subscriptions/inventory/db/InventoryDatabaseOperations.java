@@ -20,8 +20,13 @@
  */
 package org.candlepin.subscriptions.inventory.db;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
 import org.springframework.stereotype.Component;
@@ -31,6 +36,12 @@ import org.springframework.transaction.annotation.Transactional;
 @Component
 public class InventoryDatabaseOperations {
 
+  /** Sorts before every other UUID, so the first page starts from the beginning of the org. */
+  private static final UUID FIRST_INVENTORY_ID = new UUID(0L, 0L);
+
+  /** Upper bound on the size of an IN list when looking up hosts by inventory ID. */
+  private static final int INVENTORY_ID_BATCH_SIZE = 1000;
+
   private final InventoryRepository repo;
 
   public InventoryDatabaseOperations(InventoryRepository inventoryRepository) {
@@ -45,6 +56,68 @@ public class InventoryDatabaseOperations {
     }
   }
 
+  /**
+   * Process host facts one keyset page at a time. Unlike {@link #processHostFacts}, no transaction
+   * spans the whole org, and at most one page of host facts is held in memory at once.
+   *
+   * @param orgIds the orgIds to filter hosts by.
+   * @param culledOffsetDays the number of days after stale_timestamp that hosts are culled.
+   * @param pageSize the number of hosts to read per page.
+   * @param consumer the consumer of each host's facts.
+   */
+  public void processHostFactsPaged(
+      Collection<String> orgIds,
+      int culledOffsetDays,
+      int pageSize,
+      Consumer<InventoryHostFacts> consumer) {
+    UUID afterInventoryId = FIRST_INVENTORY_ID;
+    List<InventoryHostFacts> page;
+    do {
+      page =
+          repo.getFactsPage(orgIds, culledOffsetDays, afterInventoryId.toString(), pageSize);
+      page.forEach(consumer);
+      if (!page.isEmpty()) {
+        afterInventoryId = page.get(page.size() - 1).getInventoryId();
+      }
+    } while (page.size() >= pageSize);
+  }
+
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public void processHostFactsModifiedSince(
+      Collection<String> orgIds,
+      int culledOffsetDays,
+      OffsetDateTime modifiedSince,
+      Consumer<InventoryHostFacts> consumer) {
+    try (Stream<InventoryHostFacts> hostFactStream =
+        repo.getFactsModifiedSince(orgIds, culledOffsetDays, modifiedSince)) {
+      hostFactStream.forEach(consumer::accept);
+    }
+  }
+
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public void processHostFactsByInventoryIds(
+      Collection<String> orgIds,
+      int culledOffsetDays,
+      Collection<String> inventoryIds,
+      Consumer<InventoryHostFacts> consumer) {
+    // Bound as UUIDs, so that the hosts primary key index can be used.
+    List<UUID> ids = inventoryIds.stream().map(UUID::fromString).collect(Collectors.toList());
+    for (int i = 0; i < ids.size(); i += INVENTORY_ID_BATCH_SIZE) {
+      List<UUID> batch = ids.subList(i, Math.min(ids.size(), i + INVENTORY_ID_BATCH_SIZE));
+      try (Stream<InventoryHostFacts> hostFactStream =
+          repo.getFactsByInventoryIds(orgIds, culledOffsetDays, batch)) {
+        hostFactStream.forEach(consumer::accept);
+      }
+    }
+  }
+
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  public Set<String> activeInventoryIds(Collection<String> orgIds, int culledOffsetDays) {
+    try (Stream<String> stream = repo.getActiveInventoryIds(orgIds, culledOffsetDays)) {
+      return stream.collect(Collectors.toSet());
+    }
+  }
+
   @Transactional(value = "inventoryTransactionManager", readOnly = true)
   public void reportedHypervisors(Collection<String> orgIds, Consumer<Object[]> consumer) {
     try (Stream<Object[]> stream = repo.getReportedHypervisors(orgIds)) {
@@ -20,7 +20,9 @@
  */
 package org.candlepin.subscriptions.inventory.db;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHost;
@@ -28,6 +30,7 @@ import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /** Interface that Spring Data will turn into a read-only DAO. */
 @SuppressWarnings({"linelength", "indentation"})
@@ -38,6 +41,50 @@ public interface InventoryRepository extends Repository<InventoryHost, UUID> {
       @Param("orgIds") Collection<String> orgIds,
       @Param("culledOffsetDays") Integer culledOffsetDays);
 
+  /**
+   * Get a single page of host facts, ordered by inventory ID. Paging is keyset-based, so each page
+   * is a bounded index range scan rather than an offset into the full result set. Each page is read
+   * in its own short read-only transaction.
+   *
+   * @param orgIds the orgIds to filter hosts by.
+   * @param culledOffsetDays the number of days after stale_timestamp that hosts are culled.
+   * @param afterInventoryId only hosts with an inventory ID greater than this UUID are returned.
+   * @param pageSize the maximum number of hosts to return.
+   * @return the page of host facts.
+   */
+  @Query(nativeQuery = true)
+  @Transactional(value = "inventoryTransactionManager", readOnly = true)
+  List<InventoryHostFacts> getFactsPage(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays,
+      @Param("afterInventoryId") String afterInventoryId,
+      @Param("pageSize") Integer pageSize);
+
+  @Query(nativeQuery = true)
+  Stream<InventoryHostFacts> getFactsModifiedSince(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays,
+      @Param("modifiedSince") OffsetDateTime modifiedSince);
+
+  @Query(nativeQuery = true)
+  Stream<InventoryHostFacts> getFactsByInventoryIds(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays,
+      @Param("inventoryIds") Collection<UUID> inventoryIds);
+
+  /**
+   * Get the inventory IDs of every host that a full tally would consider, without reading their
+   * facts. Used to detect hosts that were deleted or culled since the last tally.
+   *
+   * @param orgIds the orgIds to filter hosts by.
+   * @param culledOffsetDays the number of days after stale_timestamp that hosts are culled.
+   * @return a stream of inventory IDs.
+   */
+  @Query(nativeQuery = true)
+  Stream<String> getActiveInventoryIds(
+      @Param("orgIds") Collection<String> orgIds,
+      @Param("culledOffsetDays") Integer culledOffsetDays);
+
   /**
    * Get a mapping of hypervisor ID to associated hypervisor host's subscription-manager ID. If the
    * hypervisor hasn't been reported, then the hyp_subman_id value will be null.
@@ -28,6 +28,7 @@ import javax.persistence.ColumnResult;
 import javax.persistence.ConstructorResult;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
 import javax.persistence.NamedNativeQuery;
 import javax.persistence.SqlResultSetMapping;
 import javax.persistence.Table;
@@ -87,60 +88,90 @@ import lombok.Setter;
  * Second step: Add new field as a ColumnResult
  * Third step : update inventory host facts constructor with new column
  */
-@NamedNativeQuery(
-    name = "InventoryHost.getFacts",
-    query =
-        "select h.id as inventory_id, h.org_id, h.modified_on, h.account, h.display_name, "
-            + "h.facts->'rhsm'->>'IS_VIRTUAL' as is_virtual, "
-            + "h.facts->'rhsm'->>'VM_HOST_UUID' as hypervisor_uuid, "
-            + "h.facts->'satellite'->>'virtual_host_uuid' as satellite_hypervisor_uuid, "
-            + "h.facts->'satellite'->>'system_purpose_role' as satellite_role, "
-            + "h.facts->'satellite'->>'system_purpose_sla' as satellite_sla, "
-            + "h.facts->'satellite'->>'system_purpose_usage' as satellite_usage, "
-            + "h.facts->'rhsm'->>'GUEST_ID' as guest_id, "
-            + "h.facts->'rhsm'->>'SYNC_TIMESTAMP' as sync_timestamp, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_ROLE' as syspurpose_role, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_SLA' as syspurpose_sla, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_USAGE' as syspurpose_usage, "
-            + "h.facts->'rhsm'->>'SYSPURPOSE_UNITS' as syspurpose_units, "
-            + "h.facts->'rhsm'->>'BILLING_MODEL' as  billing_model, "
-            + "h.facts->'qpc'->>'IS_RHEL' as is_rhel, "
-            + "h.system_profile_facts->>'infrastructure_type' as system_profile_infrastructure_type, "
-            + "h.system_profile_facts->>'cores_per_socket' as system_profile_cores_per_socket, "
-            + "h.system_profile_facts->>'number_of_sockets' as system_profile_sockets, "
-            + "h.system_profile_facts->>'cloud_provider' as cloud_provider, "
-            + "h.system_profile_facts->>'arch' as system_profile_arch, "
-            + "h.system_profile_facts->>'is_marketplace' as is_marketplace, "
-            + "h.canonical_facts->>'subscription_manager_id' as subscription_manager_id, "
-            + "h.canonical_facts->>'insights_id' as insights_id, "
-            + "rhsm_products.products, "
-            + "qpc_prods.qpc_products, "
-            + "qpc_certs.qpc_product_ids, "
-            + "system_profile.system_profile_product_ids, "
-            + "h.stale_timestamp "
-            + "from hosts h "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as products "
-            + "    from jsonb_array_elements_text(h.facts->'rhsm'->'RH_PROD') as items) rhsm_products "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as qpc_products "
-            + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_products_installed') as items) qpc_prods "
-            + "cross join lateral ( "
-            + "    select string_agg(items, ',') as qpc_product_ids "
-            + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_product_certs') as items) qpc_certs "
-            + "cross join lateral ( "
-            + "    select string_agg(items->>'id', ',') as system_profile_product_ids "
-            + "    from jsonb_array_elements(h.system_profile_facts->'installed_products') as items) system_profile "
-            + "where h.org_id IN (:orgIds)"
-            + "   and (h.facts->'rhsm'->>'BILLING_MODEL' IS NULL OR h.facts->'rhsm'->>'BILLING_MODEL' <> 'marketplace')"
-            + "   and (h.system_profile_facts->>'host_type' IS NULL OR h.system_profile_facts->>'host_type' <> 'edge')"
-            + "   and (stale_timestamp is null "
-            + "   or  (NOW() < stale_timestamp + make_interval(days => :culledOffsetDays)))",
-    resultSetMapping = "inventoryHostFactsMapping")
+@NamedNativeQueries({
+  @NamedNativeQuery(
+      name = "InventoryHost.getFacts",
+      query = InventoryHost.HOST_FACTS_QUERY,
+      resultSetMapping = "inventoryHostFactsMapping"),
+  /* Keyset-paged variant of getFacts; callers pass the last inventory ID of the previous page. */
+  @NamedNativeQuery(
+      name = "InventoryHost.getFactsPage",
+      query =
+          InventoryHost.HOST_FACTS_QUERY
+              + "   and h.id > cast(:afterInventoryId as uuid) "
+              + "order by h.id "
+              + "limit :pageSize",
+      resultSetMapping = "inventoryHostFactsMapping"),
+  @NamedNativeQuery(
+      name = "InventoryHost.getFactsModifiedSince",
+      query = InventoryHost.HOST_FACTS_QUERY + "   and h.modified_on > :modifiedSince",
+      resultSetMapping = "inventoryHostFactsMapping"),
+  @NamedNativeQuery(
+      name = "InventoryHost.getFactsByInventoryIds",
+      query = InventoryHost.HOST_FACTS_QUERY + "   and h.id IN (:inventoryIds)",
+      resultSetMapping = "inventoryHostFactsMapping"),
+  @NamedNativeQuery(
+      name = "InventoryHost.getActiveInventoryIds",
+      query =
+          "select cast(h.id as varchar) as inventory_id from hosts h "
+              + InventoryHost.ACTIVE_HOSTS_FILTER)
+})
 @Getter
 @Setter
 public class InventoryHost implements Serializable {
 
+  /** Restricts a query to the org's hosts that are considered during a tally. */
+  static final String ACTIVE_HOSTS_FILTER =
+      "where h.org_id IN (:orgIds)"
+          + "   and (h.facts->'rhsm'->>'BILLING_MODEL' IS NULL OR h.facts->'rhsm'->>'BILLING_MODEL' <> 'marketplace')"
+          + "   and (h.system_profile_facts->>'host_type' IS NULL OR h.system_profile_facts->>'host_type' <> 'edge')"
+          + "   and (stale_timestamp is null "
+          + "   or  (NOW() < stale_timestamp + make_interval(days => :culledOffsetDays)))";
+
+  static final String HOST_FACTS_QUERY =
+      "select h.id as inventory_id, h.org_id, h.modified_on, h.account, h.display_name, "
+          + "h.facts->'rhsm'->>'IS_VIRTUAL' as is_virtual, "
+          + "h.facts->'rhsm'->>'VM_HOST_UUID' as hypervisor_uuid, "
+          + "h.facts->'satellite'->>'virtual_host_uuid' as satellite_hypervisor_uuid, "
+          + "h.facts->'satellite'->>'system_purpose_role' as satellite_role, "
+          + "h.facts->'satellite'->>'system_purpose_sla' as satellite_sla, "
+          + "h.facts->'satellite'->>'system_purpose_usage' as satellite_usage, "
+          + "h.facts->'rhsm'->>'GUEST_ID' as guest_id, "
+          + "h.facts->'rhsm'->>'SYNC_TIMESTAMP' as sync_timestamp, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_ROLE' as syspurpose_role, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_SLA' as syspurpose_sla, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_USAGE' as syspurpose_usage, "
+          + "h.facts->'rhsm'->>'SYSPURPOSE_UNITS' as syspurpose_units, "
+          + "h.facts->'rhsm'->>'BILLING_MODEL' as  billing_model, "
+          + "h.facts->'qpc'->>'IS_RHEL' as is_rhel, "
+          + "h.system_profile_facts->>'infrastructure_type' as system_profile_infrastructure_type, "
+          + "h.system_profile_facts->>'cores_per_socket' as system_profile_cores_per_socket, "
+          + "h.system_profile_facts->>'number_of_sockets' as system_profile_sockets, "
+          + "h.system_profile_facts->>'cloud_provider' as cloud_provider, "
+          + "h.system_profile_facts->>'arch' as system_profile_arch, "
+          + "h.system_profile_facts->>'is_marketplace' as is_marketplace, "
+          + "h.canonical_facts->>'subscription_manager_id' as subscription_manager_id, "
+          + "h.canonical_facts->>'insights_id' as insights_id, "
+          + "rhsm_products.products, "
+          + "qpc_prods.qpc_products, "
+          + "qpc_certs.qpc_product_ids, "
+          + "system_profile.system_profile_product_ids, "
+          + "h.stale_timestamp "
+          + "from hosts h "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as products "
+          + "    from jsonb_array_elements_text(h.facts->'rhsm'->'RH_PROD') as items) rhsm_products "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as qpc_products "
+          + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_products_installed') as items) qpc_prods "
+          + "cross join lateral ( "
+          + "    select string_agg(items, ',') as qpc_product_ids "
+          + "    from jsonb_array_elements_text(h.facts->'qpc'->'rh_product_certs') as items) qpc_certs "
+          + "cross join lateral ( "
+          + "    select string_agg(items->>'id', ',') as system_profile_product_ids "
+          + "    from jsonb_array_elements(h.system_profile_facts->'installed_products') as items) system_profile "
+          + ACTIVE_HOSTS_FILTER;
+
   @Id private UUID id;
 
   private String account;
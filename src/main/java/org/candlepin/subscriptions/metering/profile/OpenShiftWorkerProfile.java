@@ -22,6 +22,7 @@ package org.candlepin.subscriptions.metering.profile;
 
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusFleetMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusService;
 import org.candlepin.subscriptions.metering.service.prometheus.config.PrometheusServiceConfiguration;
@@ -97,4 +98,23 @@ public class OpenShiftWorkerProfile {
         optInController,
         tagProfile);
   }
+
+  @Bean
+  PrometheusFleetMeteringController getFleetController(
+      ApplicationClock clock,
+      MetricProperties mProps,
+      PrometheusService service,
+      QueryBuilder queryBuilder,
+      PrometheusMeteringController meteringController,
+      @Qualifier("openshiftMetricRetryTemplate") RetryTemplate openshiftRetryTemplate,
+      TagProfile tagProfile) {
+    return new PrometheusFleetMeteringController(
+        clock,
+        mProps,
+        service,
+        queryBuilder,
+        meteringController,
+        openshiftRetryTemplate,
+        tagProfile);
+  }
 }
@@ -70,6 +70,31 @@ public class MetricProperties {
 
   private Map<String, String> accountQueryTemplates = new HashMap<>();
 
+  /**
+   * When enabled, metrics are gathered with one range query per tag and metric for all accounts,
+   * grouped by ebs_account in-process, instead of one query per account.
+   */
+  private boolean fleetQueryEnabled = false;
+
+  /**
+   * When fleet queries are enabled, the number of events of an account that are collected from the
+   * query result before they are written.
+   */
+  private int fleetEventBatchSize = 1000;
+
+  /**
+   * When enabled, range query responses are read series by series as they arrive instead of being
+   * deserialized into a complete QueryResult first.
+   */
+  private boolean streamingQueryEnabled = false;
+
+  /**
+   * When enabled, metered events are written with INSERT ... ON CONFLICT on their natural key and
+   * stale events are deleted with a single statement, rather than loading every existing event in
+   * the range first. Requires PostgreSQL.
+   */
+  private boolean eventUpsertEnabled = false;
+
   /**
    * SPEL templates do not support nested expressions so the QueryBuilder will apply template
    * parameters a set number of times to prevent recursion.
@@ -0,0 +1,244 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */package org.candlepin.subscriptions.metering.service.prometheus;
+
+import io.micrometer.core.annotation.Timed;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.MeteringException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController.SeriesEvents;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
+import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
+import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryDescriptor;
+import org.candlepin.subscriptions.registry.TagMetaData;
+import org.candlepin.subscriptions.registry.TagMetric;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Gathers a metric for every account with a single range query, rather than one query per account.
+ * The result is streamed, and each series is handed to the events of the account named by its
+ * ebs_account label. {@link PrometheusMeteringController} writes each account's events in batches,
+ * in their own transactions.
+ */
+@Component
+public class PrometheusFleetMeteringController {
+
+  private static final Logger log =
+      LoggerFactory.getLogger(PrometheusFleetMeteringController.class);
+
+  private final ApplicationClock clock;
+  private final MetricProperties metricProperties;
+  private final PrometheusService prometheusService;
+  private final QueryBuilder prometheusQueryBuilder;
+  private final PrometheusMeteringController meteringController;
+  private final RetryTemplate openshiftRetry;
+  private final TagProfile tagProfile;
+
+  @SuppressWarnings("java:S107")
+  public PrometheusFleetMeteringController(
+      ApplicationClock clock,
+      MetricProperties metricProperties,
+      PrometheusService service,
+      QueryBuilder queryBuilder,
+      PrometheusMeteringController meteringController,
+      @Qualifier("openshiftMetricRetryTemplate") RetryTemplate openshiftRetry,
+      TagProfile tagProfile) {
+    this.clock = clock;
+    this.metricProperties = metricProperties;
+    this.prometheusService = service;
+    this.prometheusQueryBuilder = queryBuilder;
+    this.meteringController = meteringController;
+    this.openshiftRetry = openshiftRetry;
+    this.tagProfile = tagProfile;
+  }
+
+  @Timed("rhsm-subscriptions.metering.openshift.fleet")
+  public void collectMetrics(String tag, Uom metric, OffsetDateTime start, OffsetDateTime end) {
+    TagMetric tagMetric =
+        tagProfile
+            .getTagMetric(tag, metric)
+            .orElseThrow(
+                () ->
+                    new UnsupportedOperationException(
+                        String.format(
+                            "Unable to find TagMetric for tag %s and metric %s!", tag, metric)));
+    TagMetaData tagMetaData =
+        tagProfile
+            .getTagMetaDataByTag(tagMetric.getTag())
+            .orElseThrow(
+                () ->
+                    new UnsupportedOperationException(
+                        String.format(
+                            "Unable to determine service type for tag %s.", tagMetric.getTag())));
+
+    // See PrometheusMeteringController#collectMetrics for why the start of the range is shifted.
+    OffsetDateTime startDate = clock.startOfHour(start).plusHours(1);
+    AccountEvents accountEvents =
+        openshiftRetry.execute(
+            context -> {
+              log.info("Collecting metrics for all accounts: {} {}", tag, metric);
+              AccountEvents handler = new AccountEvents(tagMetric, tagMetaData, startDate, end);
+              prometheusService.streamRangeQuery(
+                  buildPromQL(tagMetric),
+                  startDate,
+                  end,
+                  metricProperties.getStep(),
+                  metricProperties.getQueryTimeout(),
+                  handler);
+              return handler;
+            });
+
+    int failed = accountEvents.persist();
+    if (failed > 0) {
+      throw new MeteringException(
+          String.format("Unable to persist %s %s metrics for %d accounts.", tag, metric, failed));
+    }
+  }
+
+  private String buildPromQL(TagMetric tagMetric) {
+    // Default the query template if the tag profile didn't specify one.
+    if (!StringUtils.hasText(tagMetric.getQueryKey())) {
+      tagMetric.setQueryKey(QueryBuilder.DEFAULT_METRIC_QUERY_KEY);
+    }
+    return prometheusQueryBuilder.buildFleetQuery(new QueryDescriptor(tagMetric));
+  }
+
+  /**
+   * Hands each series to the events of its account, and flushes an account's events whenever a
+   * batch of them has been collected. A failure for one account is logged, and the rest of its
+   * series are skipped without affecting the other accounts.
+   */
+  private class AccountEvents implements SeriesHandler {
+    private final TagMetric tagMetric;
+    private final TagMetaData tagMetaData;
+    private final OffsetDateTime startDate;
+    private final OffsetDateTime end;
+    private final Map<String, SeriesEvents> eventsByAccount = new LinkedHashMap<>();
+    private final Set<String> failedAccounts = new HashSet<>();
+
+    private String account;
+    private SeriesEvents current;
+
+    AccountEvents(
+        TagMetric tagMetric,
+        TagMetaData tagMetaData,
+        OffsetDateTime startDate,
+        OffsetDateTime end) {
+      this.tagMetric = tagMetric;
+      this.tagMetaData = tagMetaData;
+      this.startDate = startDate;
+      this.end = end;
+    }
+
+    @Override
+    public void series(Map<String, String> labels) {
+      account = labels.get(QueryBuilder.ACCOUNT_LABEL);
+      current = null;
+      if (!StringUtils.hasText(account)) {
+        log.warn("Skipping series without an {} label: {}", QueryBuilder.ACCOUNT_LABEL, labels);
+        return;
+      }
+      if (failedAccounts.contains(account)) {
+        return;
+      }
+      try {
+        current = eventsByAccount.computeIfAbsent(account, this::startEvents);
+        current.series(labels);
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+
+    @Override
+    public void sample(long epochSeconds, double value) {
+      if (current == null) {
+        return;
+      }
+      try {
+        current.sample(epochSeconds, value);
+        if (current.pendingEvents() >= metricProperties.getFleetEventBatchSize()) {
+          meteringController.flushEvents(current);
+        }
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Writes the remaining events of every account and deletes their stale events.
+     *
+     * @return the number of accounts whose events could not be persisted
+     */
+    int persist() {
+      log.info(
+          "Found {} {} metrics for {} accounts.",
+          tagMetric.getTag(),
+          tagMetric.getUom(),
+          eventsByAccount.size() + failedAccounts.size());
+      // Each account's events are released once they have been persisted.
+      Iterator<Entry<String, SeriesEvents>> accounts = eventsByAccount.entrySet().iterator();
+      while (accounts.hasNext()) {
+        Entry<String, SeriesEvents> entry = accounts.next();
+        accounts.remove();
+        try {
+          meteringController.persistEvents(entry.getValue());
+        } catch (Exception e) {
+          failedAccounts.add(entry.getKey());
+          logFailure(entry.getKey(), e);
+        }
+      }
+      return failedAccounts.size();
+    }
+
+    private SeriesEvents startEvents(String accountNumber) {
+      meteringController.ensureOptIn(accountNumber);
+      return meteringController.startEvents(accountNumber, tagMetric, tagMetaData, startDate, end);
+    }
+
+    private void fail(Exception e) {
+      logFailure(account, e);
+      failedAccounts.add(account);
+      eventsByAccount.remove(account);
+      current = null;
+    }
+
+    private void logFailure(String accountNumber, Exception e) {
+      log.error(
+          "Unable to persist {} {} metrics for account {}",
+          tagMetric.getTag(),
+          tagMetric.getUom(),
+          accountNumber,
+          e);
+    }
+  }
+}
@@ -25,9 +25,12 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import org.candlepin.subscriptions.db.model.EventKey;
 import org.candlepin.subscriptions.db.model.config.OptInType;
 import org.candlepin.subscriptions.event.EventController;
@@ -35,6 +38,7 @@ import org.candlepin.subscriptions.json.Event;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.MeteringEventFactory;
 import org.candlepin.subscriptions.metering.MeteringException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryDescriptor;
 import org.candlepin.subscriptions.prometheus.model.QueryResult;
@@ -123,9 +127,24 @@ public class PrometheusMeteringController {
           try {
 
             log.info("Collecting metrics for account {}: {} {}", account, tag, metric);
+            String promQL = buildPromQLForMetering(account, tagMetric.get());
+            if (metricProperties.isStreamingQueryEnabled()) {
+              SeriesEvents seriesEvents =
+                  new SeriesEvents(account, tagMetric.get(), tagMetaData.get(), startDate, end);
+              prometheusService.streamRangeQuery(
+                  promQL,
+                  startDate,
+                  end,
+                  metricProperties.getStep(),
+                  metricProperties.getQueryTimeout(),
+                  seriesEvents);
+              seriesEvents.persist();
+              return null;
+            }
+
             QueryResult metricData =
                 prometheusService.runRangeQuery(
-                    buildPromQLForMetering(account, tagMetric.get()),
+                    promQL,
                     startDate,
                     end,
                     metricProperties.getStep(),
@@ -137,76 +156,13 @@ public class PrometheusMeteringController {
                       "Unable to fetch %s %s metrics: %s", tag, metric, metricData.getError()));
             }
 
-            Map<EventKey, Event> existing =
-                eventController.mapEventsInTimeRange(
-                    account,
-                    MeteringEventFactory.EVENT_SOURCE,
-                    MeteringEventFactory.getEventType(tagMetric.get().getMetricId()),
-                    // We need to shift the start and end dates by the step, to account for the
-                    // shift in the event start date when it is created. See note about eventDate
-                    // below.
-                    startDate.minusSeconds(metricProperties.getStep()),
-                    end);
-
-            log.debug(
-                "Looking for events in range [{}, {})",
-                startDate.minusSeconds(metricProperties.getStep()),
+            persistMetrics(
+                account,
+                tagMetric.get(),
+                tagMetaData.get(),
+                metricData.getData().getResult(),
+                startDate,
                 end);
-            log.debug("Found {} existing events.", existing.size());
-
-            Map<EventKey, Event> events = new HashMap<>();
-            for (QueryResultDataResultInner r : metricData.getData().getResult()) {
-              Map<String, String> labels = r.getMetric();
-              String clusterId = labels.get("_id");
-              String sla = labels.get("support");
-              String usage = labels.get("usage");
-              // NOTE: Role comes from the product label despite its name. The values set here
-              //       are NOT engineering or swatch product IDs. They map to the roles in the
-              //       tag profile. For openshift, the values will be 'ocp' or 'osd'.
-              String role = labels.get("product");
-              String billingProvider = labels.get("billing_marketplace");
-              String billingAccountId = labels.get("billing_marketplace_account");
-              String orgId = labels.get("external_organization");
-
-              // For the openshift metrics, we expect our results to be a 'matrix'
-              // vector [(instant_time,value), ...] so we only look at the result's getValues()
-              // data.
-              for (List<BigDecimal> measurement : r.getValues()) {
-                BigDecimal time = measurement.get(0);
-                BigDecimal value = measurement.get(1);
-
-                OffsetDateTime eventTermDate = clock.dateFromUnix(time);
-                // Need to subtract the step because we are averaging and the metric value
-                // actually represents the end of the measured period. The start of the event
-                // should be at the beginning.
-                OffsetDateTime eventDate = eventTermDate.minusSeconds(metricProperties.getStep());
-
-                Event event =
-                    createOrUpdateEvent(
-                        existing,
-                        account,
-                        orgId,
-                        tagMetric.get().getMetricId(),
-                        clusterId,
-                        sla,
-                        usage,
-                        role,
-                        eventDate,
-                        eventTermDate,
-                        tagMetaData.get().getServiceType(),
-                        billingProvider,
-                        billingAccountId,
-                        tagMetric.get().getUom(),
-                        value);
-                events.putIfAbsent(EventKey.fromEvent(event), event);
-              }
-            }
-
-            eventController.saveAll(events.values());
-            log.info("Persisted {} events for {} {} metrics.", events.size(), tag, metric);
-
-            // Delete any stale events found during the period.
-            deleteStaleEvents(existing.values());
             return null;
           } catch (Exception e) {
             log.warn(
@@ -220,7 +176,61 @@ public class PrometheusMeteringController {
         });
   }
 
-  private void ensureOptIn(String account) {
+  private void persistMetrics(
+      String account,
+      TagMetric tagMetric,
+      TagMetaData tagMetaData,
+      List<QueryResultDataResultInner> series,
+      OffsetDateTime startDate,
+      OffsetDateTime end) {
+    SeriesEvents seriesEvents = new SeriesEvents(account, tagMetric, tagMetaData, startDate, end);
+    for (QueryResultDataResultInner r : series) {
+      seriesEvents.series(r.getMetric());
+      // For the openshift metrics, we expect our results to be a 'matrix'
+      // vector [(instant_time,value), ...] so we only look at the result's getValues()
+      // data.
+      for (List<BigDecimal> measurement : r.getValues()) {
+        seriesEvents.sample(measurement.get(0).longValue(), measurement.get(1).doubleValue());
+      }
+    }
+    seriesEvents.persist();
+  }
+
+  /**
+   * Starts turning the series of an account into events, for callers that read the series of many
+   * accounts from a single query. The events are written with {@link #flushEvents} and {@link
+   * #persistEvents}.
+   *
+   * @param account the account the series belong to
+   * @param tagMetric the metric the series were queried for
+   * @param tagMetaData the metadata of the metric's tag
+   * @param startDate the adjusted start of the range query
+   * @param end the end of the range query
+   * @return a handler for the account's series
+   */
+  @Transactional
+  public SeriesEvents startEvents(
+      String account,
+      TagMetric tagMetric,
+      TagMetaData tagMetaData,
+      OffsetDateTime startDate,
+      OffsetDateTime end) {
+    return new SeriesEvents(account, tagMetric, tagMetaData, startDate, end);
+  }
+
+  /** Writes the events collected so far for an account, without deleting its stale events. */
+  @Transactional
+  public void flushEvents(SeriesEvents seriesEvents) {
+    seriesEvents.flush();
+  }
+
+  /** Writes the remaining events for an account, then deletes those no longer reported. */
+  @Transactional
+  public void persistEvents(SeriesEvents seriesEvents) {
+    seriesEvents.persist();
+  }
+
+  public void ensureOptIn(String account) {
     try {
       optInController.optInByAccountNumber(account, OptInType.PROMETHEUS, true, true, true);
     } catch (Exception e) {
@@ -248,7 +258,7 @@ public class PrometheusMeteringController {
       String billingProvider,
       String billingAccountId,
       Uom metric,
-      BigDecimal value) {
+      double value) {
     EventKey lookupKey =
         new EventKey(
             account,
@@ -275,7 +285,7 @@ public class PrometheusMeteringController {
         billingProvider,
         billingAccountId,
         metric,
-        value.doubleValue());
+        value);
     return event;
   }
 
@@ -299,4 +309,159 @@ public class PrometheusMeteringController {
     descriptor.addRuntimeVar("account", account);
     return prometheusQueryBuilder.build(descriptor);
   }
+
+  /**
+   * Turns the series of a range query into events for an account, as they are read. Existing events
+   * in the range are loaded up front so that they can be updated, and any that are not reported
+   * again are deleted when the events are persisted. When event upserts are enabled, events are
+   * instead written by their natural key and stale events are deleted by metering batch.
+   *
+   * <p>Events may be flushed in batches before they are persisted. Stale events are only deleted
+   * once all of the account's series have been read.
+   */
+  public class SeriesEvents implements SeriesHandler {
+    private final String account;
+    private final TagMetric tagMetric;
+    private final TagMetaData tagMetaData;
+    private final Map<EventKey, Event> existing;
+    private final Map<EventKey, Event> events = new HashMap<>();
+    // keys of flushed events, so that a duplicate sample read later is not written again
+    private final Set<EventKey> flushed = new HashSet<>();
+    private final OffsetDateTime rangeStart;
+    private final OffsetDateTime rangeEnd;
+    private final UUID meteringBatchId;
+
+    private String clusterId;
+    private String sla;
+    private String usage;
+    private String role;
+    private String billingProvider;
+    private String billingAccountId;
+    private String orgId;
+
+    SeriesEvents(
+        String account,
+        TagMetric tagMetric,
+        TagMetaData tagMetaData,
+        OffsetDateTime startDate,
+        OffsetDateTime end) {
+      this.account = account;
+      this.tagMetric = tagMetric;
+      this.tagMetaData = tagMetaData;
+      // We need to shift the start and end dates by the step, to account for the
+      // shift in the event start date when it is created. See note about eventDate
+      // below.
+      this.rangeStart = startDate.minusSeconds(metricProperties.getStep());
+      this.rangeEnd = end;
+
+      if (metricProperties.isEventUpsertEnabled()) {
+        // Events are written by their natural key, so the existing ones are never loaded.
+        this.existing = new HashMap<>();
+        this.meteringBatchId = UUID.randomUUID();
+        return;
+      }
+
+      this.meteringBatchId = null;
+      this.existing =
+          eventController.mapEventsInTimeRange(
+              account,
+              MeteringEventFactory.EVENT_SOURCE,
+              MeteringEventFactory.getEventType(tagMetric.getMetricId()),
+              rangeStart,
+              rangeEnd);
+
+      log.debug("Looking for events in range [{}, {})", rangeStart, rangeEnd);
+      log.debug("Found {} existing events.", existing.size());
+    }
+
+    @Override
+    public void series(Map<String, String> labels) {
+      clusterId = labels.get("_id");
+      sla = labels.get("support");
+      usage = labels.get("usage");
+      // NOTE: Role comes from the product label despite its name. The values set here
+      //       are NOT engineering or swatch product IDs. They map to the roles in the
+      //       tag profile. For openshift, the values will be 'ocp' or 'osd'.
+      role = labels.get("product");
+      billingProvider = labels.get("billing_marketplace");
+      billingAccountId = labels.get("billing_marketplace_account");
+      orgId = labels.get("external_organization");
+    }
+
+    @Override
+    public void sample(long epochSeconds, double value) {
+      OffsetDateTime eventTermDate = clock.dateFromUnix(epochSeconds);
+      // Need to subtract the step because we are averaging and the metric value
+      // actually represents the end of the measured period. The start of the event
+      // should be at the beginning.
+      OffsetDateTime eventDate = eventTermDate.minusSeconds(metricProperties.getStep());
+
+      Event event =
+          createOrUpdateEvent(
+              existing,
+              account,
+              orgId,
+              tagMetric.getMetricId(),
+              clusterId,
+              sla,
+              usage,
+              role,
+              eventDate,
+              eventTermDate,
+              tagMetaData.getServiceType(),
+              billingProvider,
+              billingAccountId,
+              tagMetric.getUom(),
+              value);
+      EventKey key = EventKey.fromEvent(event);
+      if (!flushed.contains(key)) {
+        events.putIfAbsent(key, event);
+      }
+    }
+
+    /** The number of events collected since they were last flushed. */
+    public int pendingEvents() {
+      return events.size();
+    }
+
+    void flush() {
+      if (meteringBatchId != null) {
+        eventController.upsertAll(events.values(), meteringBatchId);
+      } else {
+        eventController.saveAll(events.values());
+      }
+      flushed.addAll(events.keySet());
+      events.clear();
+    }
+
+    void persist() {
+      flush();
+      if (meteringBatchId != null) {
+        int deleted =
+            eventController.deleteStaleEvents(
+                account,
+                MeteringEventFactory.EVENT_SOURCE,
+                MeteringEventFactory.getEventType(tagMetric.getMetricId()),
+                rangeStart,
+                rangeEnd,
+                meteringBatchId);
+        log.info(
+            "Upserted {} events for {} {} metrics and deleted {} stale events.",
+            flushed.size(),
+            tagMetric.getTag(),
+            tagMetric.getUom(),
+            deleted);
+        return;
+      }
+
+      log.info(
+          "Persisted {} events for {} {} metrics.",
+          flushed.size(),
+          tagMetric.getTag(),
+          tagMetric.getUom());
+
+      // Delete any stale events found during the period.
+      deleteStaleEvents(existing.values());
+    }
+  }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.metering.service.prometheus;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.candlepin.subscriptions.metering.MeteringException;
+
+/**
+ * Reads a prometheus query response as it arrives, handing each series' labels and samples to a
+ * {@link SeriesHandler} instead of building the generated QueryResult model. Only the labels of
+ * the series currently being read are held in memory.
+ */
+public class PrometheusQueryResultReader {
+
+  /** Receives the series of a query result in the order they are read. */
+  public interface SeriesHandler {
+
+    /**
+     * Called when a new series starts. Every following sample belongs to this series until the
+     * next call.
+     *
+     * @param labels the series' labels
+     */
+    void series(Map<String, String> labels);
+
+    /**
+     * Called for each sample of the current series.
+     *
+     * @param epochSeconds the sample's timestamp
+     * @param value the sample's value
+     */
+    void sample(long epochSeconds, double value);
+  }
+
+  private static final String STATUS_SUCCESS = "success";
+
+  private final JsonFactory jsonFactory;
+
+  public PrometheusQueryResultReader() {
+    this(new JsonFactory());
+  }
+
+  public PrometheusQueryResultReader(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Reads a matrix or vector query response, closing the stream once done.
+   *
+   * @param stream the response body
+   * @param handler receives the series and samples of the result
+   * @throws IOException if the response could not be read or is not valid JSON
+   * @throws MeteringException if prometheus reported that the query failed
+   */
+  public void read(InputStream stream, SeriesHandler handler) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(stream)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      String status = null;
+      String error = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "status":
+            status = parser.getText();
+            break;
+          case "error":
+            error = parser.getText();
+            break;
+          case "data":
+            readData(parser, handler);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+
+      if (!STATUS_SUCCESS.equals(status)) {
+        throw new MeteringException(
+            String.format("Prometheus query failed with status %s: %s", status, error));
+      }
+    }
+  }
+
+  private void readData(JsonParser parser, SeriesHandler handler) throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return;
+    }
+    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if ("result".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          readSeries(parser, handler);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void readSeries(JsonParser parser, SeriesHandler handler) throws IOException {
+    boolean started = false;
+    // Prometheus writes the labels before the samples; should that ever not be the case, the
+    // samples are held until the labels have been read.
+    List<Long> pendingTimes = new ArrayList<>();
+    List<Double> pendingValues = new ArrayList<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "metric":
+          handler.series(readLabels(parser));
+          started = true;
+          for (int i = 0; i < pendingTimes.size(); i++) {
+            handler.sample(pendingTimes.get(i), pendingValues.get(i));
+          }
+          pendingTimes.clear();
+          pendingValues.clear();
+          break;
+        case "values":
+          expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+          while (parser.nextToken() == JsonToken.START_ARRAY) {
+            readSample(parser, handler, started, pendingTimes, pendingValues);
+          }
+          break;
+        case "value":
+          expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+          readSample(parser, handler, started, pendingTimes, pendingValues);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    if (!started && !pendingTimes.isEmpty()) {
+      throw new JsonParseException(parser, "Series samples were found without any labels.");
+    }
+  }
+
+  private Map<String, String> readLabels(JsonParser parser) throws IOException {
+    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+    Map<String, String> labels = new HashMap<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      labels.put(name, parser.nextTextValue());
+    }
+    return labels;
+  }
+
+  private void readSample(
+      JsonParser parser,
+      SeriesHandler handler,
+      boolean started,
+      List<Long> pendingTimes,
+      List<Double> pendingValues)
+      throws IOException {
+    parser.nextToken();
+    long time = (long) parser.getDoubleValue();
+    parser.nextToken();
+    // Sample values are sent as strings so that NaN and +/-Inf can be represented.
+    double value =
+        parser.currentToken() == JsonToken.VALUE_STRING
+            ? parseValue(parser.getText())
+            : parser.getDoubleValue();
+    expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
+
+    if (started) {
+      handler.sample(time, value);
+    } else {
+      pendingTimes.add(time);
+      pendingValues.add(value);
+    }
+  }
+
+  private double parseValue(String value) {
+    switch (value) {
+      case "+Inf":
+        return Double.POSITIVE_INFINITY;
+      case "-Inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        return Double.parseDouble(value);
+    }
+  }
+
+  private void expect(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws JsonParseException {
+    if (actual != expected) {
+      throw new JsonParseException(
+          parser, String.format("Expected %s but found %s.", expected, actual));
+    }
+  }
+}
@@ -21,9 +21,12 @@
 package org.candlepin.subscriptions.metering.service.prometheus;
 
 import com.google.common.net.UrlEscapers;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.OffsetDateTime;
 import org.candlepin.subscriptions.exception.ErrorCode;
 import org.candlepin.subscriptions.exception.ExternalServiceException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
 import org.candlepin.subscriptions.prometheus.ApiException;
 import org.candlepin.subscriptions.prometheus.api.ApiProvider;
 import org.candlepin.subscriptions.prometheus.model.QueryResult;
@@ -38,6 +41,7 @@ public class PrometheusService {
   private static final Logger log = LoggerFactory.getLogger(PrometheusService.class);
 
   private ApiProvider apiProvider;
+  private final PrometheusQueryResultReader resultReader = new PrometheusQueryResultReader();
 
   public PrometheusService(ApiProvider prometheusApiProvider) {
     this.apiProvider = prometheusApiProvider;
@@ -65,6 +69,41 @@ public class PrometheusService {
     }
   }
 
+  /**
+   * Runs a range query, handing each series and sample to the handler as the response is read
+   * rather than returning the whole result at once.
+   */
+  public void streamRangeQuery(
+      String promQL,
+      OffsetDateTime start,
+      OffsetDateTime end,
+      Integer step,
+      Integer timeout,
+      SeriesHandler handler)
+      throws ExternalServiceException {
+    log.info("Streaming metrics from prometheus: {} -> {} [Step: {}]", start, end, step);
+    String query = sanitizeQuery(promQL);
+    log.debug(
+        "Running streaming prometheus range query: Start: {} End: {} Step: {}, Query: {}",
+        start.toEpochSecond(),
+        end.toEpochSecond(),
+        step,
+        query);
+    try (InputStream stream =
+        apiProvider.queryRangeStream(
+            query, start.toEpochSecond(), end.toEpochSecond(), Integer.toString(step), timeout)) {
+      resultReader.read(stream, handler);
+    } catch (ApiException apie) {
+      throw new ExternalServiceException(
+          ErrorCode.REQUEST_PROCESSING_ERROR, formatErrorMessage(apie), apie);
+    } catch (IOException ioe) {
+      throw new ExternalServiceException(
+          ErrorCode.REQUEST_PROCESSING_ERROR,
+          String.format("Unable to read prometheus range query result: %s", ioe.getMessage()),
+          ioe);
+    }
+  }
+
   public QueryResult runQuery(String promQL, OffsetDateTime time, Integer timeout)
       throws ExternalServiceException {
     log.debug("Fetching metrics from prometheus: {}", time);
@@ -44,6 +44,15 @@ public class QueryBuilder {
    */
   public static final String DEFAULT_METRIC_QUERY_KEY = "default";
 
+  /** The label that identifies the account a series belongs to. */
+  public static final String ACCOUNT_LABEL = "ebs_account";
+
+  /**
+   * The runtime variable that query templates use to select the series of the queried accounts,
+   * e.g. {@code {ebs_account="123"}} for a single account.
+   */
+  public static final String ACCOUNT_SELECTOR = "accountSelector";
+
   private final MetricProperties metricProperties;
 
   public QueryBuilder(MetricProperties metricProperties) {
@@ -51,6 +60,12 @@ public class QueryBuilder {
   }
 
   public String build(QueryDescriptor queryDescriptor) {
+    String account = queryDescriptor.getRuntime().get("account");
+    if (account != null) {
+      queryDescriptor
+          .getRuntime()
+          .putIfAbsent(ACCOUNT_SELECTOR, String.format("%s=\"%s\"", ACCOUNT_LABEL, account));
+    }
     String templateKey = queryDescriptor.getMetric().getQueryKey();
     Optional<String> template = metricProperties.getQueryTemplate(templateKey);
 
@@ -62,6 +77,15 @@ public class QueryBuilder {
     return buildQuery(template.get(), queryDescriptor);
   }
 
+  /**
+   * Builds a query from the same template as {@link #build}, selecting the series of every account
+   * instead of a single one.
+   */
+  public String buildFleetQuery(QueryDescriptor queryDescriptor) {
+    queryDescriptor.addRuntimeVar(ACCOUNT_SELECTOR, String.format("%s!=\"\"", ACCOUNT_LABEL));
+    return build(queryDescriptor);
+  }
+
   public String buildAccountLookupQuery(QueryDescriptor queryDescriptor) {
     String templateKey = queryDescriptor.getMetric().getAccountQueryKey();
     Optional<String> template = metricProperties.getAccountQueryTemplate(templateKey);
@@ -22,7 +22,9 @@ package org.candlepin.subscriptions.metering.service.prometheus.task;
 
 import java.time.OffsetDateTime;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusFleetMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
+import org.candlepin.subscriptions.metering.task.FleetMetricsTask;
 import org.candlepin.subscriptions.metering.task.MetricsTask;
 import org.candlepin.subscriptions.task.Task;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -34,9 +36,12 @@ import org.springframework.util.StringUtils;
 public class PrometheusMeteringTaskFactory implements TaskFactory {
 
   private final PrometheusMeteringController controller;
+  private final PrometheusFleetMeteringController fleetController;
 
-  public PrometheusMeteringTaskFactory(PrometheusMeteringController controller) {
+  public PrometheusMeteringTaskFactory(
+      PrometheusMeteringController controller, PrometheusFleetMeteringController fleetController) {
     this.controller = controller;
+    this.fleetController = fleetController;
   }
 
   @Override
@@ -50,6 +55,14 @@ public class PrometheusMeteringTaskFactory implements TaskFactory {
           validateDate(taskDescriptor, "start"),
           validateDate(taskDescriptor, "end"));
     }
+    if (TaskType.METRICS_FLEET_COLLECTION.equals(taskDescriptor.getTaskType())) {
+      return new FleetMetricsTask(
+          fleetController,
+          validateString(taskDescriptor, "productTag"),
+          Uom.fromValue(validateString(taskDescriptor, "metric")),
+          validateDate(taskDescriptor, "start"),
+          validateDate(taskDescriptor, "end"));
+    }
     throw new IllegalArgumentException(
         String.format("Could not build task. Unknown task type: %s", taskDescriptor.getTaskType()));
   }
@@ -25,6 +25,7 @@ import java.util.stream.Stream;
 import javax.transaction.Transactional;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusAccountSource;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -57,13 +58,16 @@ public class PrometheusMetricsTaskManager {
 
   private ApplicationProperties appProps;
 
+  private MetricProperties metricProperties;
+
   public PrometheusMetricsTaskManager(
       TaskQueue queue,
       @Qualifier("meteringTaskQueueProperties") TaskQueueProperties queueProps,
       PrometheusAccountSource accountSource,
       TagProfile tagProfile,
       ApplicationClock clock,
-      ApplicationProperties appProps) {
+      ApplicationProperties appProps,
+      MetricProperties metricProperties) {
     log.info("Initializing metering manager. Topic: {}", queueProps.getTopic());
     this.queue = queue;
     this.topic = queueProps.getTopic();
@@ -71,6 +75,7 @@ public class PrometheusMetricsTaskManager {
     this.tagProfile = tagProfile;
     this.clock = clock;
     this.appProps = appProps;
+    this.metricProperties = metricProperties;
   }
 
   public void updateMetricsForAccount(
@@ -136,6 +141,11 @@ public class PrometheusMetricsTaskManager {
 
   private void queueMetricUpdateForAllAccounts(
       String productTag, Uom metric, OffsetDateTime start, OffsetDateTime end) {
+    if (metricProperties.isFleetQueryEnabled()) {
+      log.info("Queuing {} {} metric update for all accounts as one task.", productTag, metric);
+      this.queue.enqueue(createFleetMetricsTask(productTag, metric, start, end));
+      return;
+    }
     try (Stream<String> accountStream =
         accountSource.getMarketplaceAccounts(productTag, metric, start, end).stream()) {
       log.info("Queuing {} {} metric updates for all configured accounts.", productTag, metric);
@@ -145,6 +155,20 @@ public class PrometheusMetricsTaskManager {
     }
   }
 
+  private TaskDescriptor createFleetMetricsTask(
+      String productTag, Uom metric, OffsetDateTime start, OffsetDateTime end) {
+    TaskDescriptorBuilder builder =
+        TaskDescriptor.builder(TaskType.METRICS_FLEET_COLLECTION, topic)
+            .setSingleValuedArg("productTag", productTag)
+            .setSingleValuedArg("metric", metric.value())
+            .setSingleValuedArg("start", start.toString());
+
+    if (end != null) {
+      builder.setSingleValuedArg("end", end.toString());
+    }
+    return builder.build();
+  }
+
   private TaskDescriptor createMetricsTask(
       String account, String productTag, Uom metric, OffsetDateTime start, OffsetDateTime end) {
     log.info(
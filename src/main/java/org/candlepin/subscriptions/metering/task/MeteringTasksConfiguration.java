@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.metering.task;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusAccountSource;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusFleetMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusService;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
@@ -76,9 +77,10 @@ public class MeteringTasksConfiguration {
       PrometheusAccountSource accountSource,
       TagProfile tagProfile,
       ApplicationClock clock,
-      ApplicationProperties appProps) {
+      ApplicationProperties appProps,
+      MetricProperties metricProperties) {
     return new PrometheusMetricsTaskManager(
-        queue, queueProps, accountSource, tagProfile, clock, appProps);
+        queue, queueProps, accountSource, tagProfile, clock, appProps, metricProperties);
   }
 
   // The following beans are defined for the worker profile only allowing
@@ -86,8 +88,9 @@ public class MeteringTasksConfiguration {
   @Bean
   @Qualifier("prometheusTaskFactory")
   @Profile("openshift-metering-worker")
-  TaskFactory meteringTaskFactory(PrometheusMeteringController controller) {
-    return new PrometheusMeteringTaskFactory(controller);
+  TaskFactory meteringTaskFactory(
+      PrometheusMeteringController controller, PrometheusFleetMeteringController fleetController) {
+    return new PrometheusMeteringTaskFactory(controller, fleetController);
   }
 
   @Bean
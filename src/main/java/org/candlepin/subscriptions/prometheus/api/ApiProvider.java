@@ -20,6 +20,8 @@
  */
 package org.candlepin.subscriptions.prometheus.api;
 
+import java.io.InputStream;
+import org.candlepin.subscriptions.prometheus.ApiException;
 import org.candlepin.subscriptions.prometheus.resources.QueryApi;
 import org.candlepin.subscriptions.prometheus.resources.QueryRangeApi;
 
@@ -41,4 +43,19 @@ public interface ApiProvider {
    * @return the prometheus range query API.
    */
   QueryRangeApi queryRangeApi();
+
+  /**
+   * Runs a range query and returns the raw response body so that it can be read as it arrives,
+   * rather than deserialized into a QueryResult all at once.
+   *
+   * @param query the (already encoded) prometheus query
+   * @param start start of the range, as unix time
+   * @param end end of the range, as unix time
+   * @param step query resolution step width
+   * @param timeout evaluation timeout
+   * @return the response body, which the caller must close.
+   * @throws ApiException if the query could not be run.
+   */
+  InputStream queryRangeStream(String query, Long start, Long end, String step, Integer timeout)
+      throws ApiException;
 }
@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.prometheus.api;
 
+import javax.ws.rs.client.Client;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.http.HttpClient;
 import org.candlepin.subscriptions.http.HttpClientProperties;
@@ -46,8 +47,9 @@ public class ApiProviderFactory implements FactoryBean<ApiProvider> {
     }
 
     ApiClient client = Configuration.getDefaultApiClient();
-    client.setHttpClient(
-        HttpClient.buildHttpClient(properties, client.getJSON(), client.isDebugging()));
+    Client httpClient =
+        HttpClient.buildHttpClient(properties, client.getJSON(), client.isDebugging());
+    client.setHttpClient(httpClient);
 
     var url = properties.getUrl();
     if (StringUtils.hasText(url)) {
@@ -57,7 +59,7 @@ public class ApiProviderFactory implements FactoryBean<ApiProvider> {
       log.warn("Prometheus API service URL not set...");
     }
 
-    return new ApiProviderImpl(client);
+    return new ApiProviderImpl(client, httpClient, client.getBasePath());
   }
 
   @Override
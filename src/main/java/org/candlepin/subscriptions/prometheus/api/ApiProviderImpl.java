@@ -20,7 +20,13 @@
  */
 package org.candlepin.subscriptions.prometheus.api;
 
+import java.io.InputStream;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import org.candlepin.subscriptions.prometheus.ApiClient;
+import org.candlepin.subscriptions.prometheus.ApiException;
 import org.candlepin.subscriptions.prometheus.resources.QueryApi;
 import org.candlepin.subscriptions.prometheus.resources.QueryRangeApi;
 
@@ -32,10 +38,14 @@ public class ApiProviderImpl implements ApiProvider {
 
   private QueryApi queryApi;
   private QueryRangeApi rangeApi;
+  private Client httpClient;
+  private String basePath;
 
-  public ApiProviderImpl(ApiClient apiClient) {
+  public ApiProviderImpl(ApiClient apiClient, Client httpClient, String basePath) {
     queryApi = new QueryApi(apiClient);
     rangeApi = new QueryRangeApi(apiClient);
+    this.httpClient = httpClient;
+    this.basePath = basePath;
   }
 
   @Override
@@ -47,4 +57,30 @@ public class ApiProviderImpl implements ApiProvider {
   public QueryRangeApi queryRangeApi() {
     return this.rangeApi;
   }
+
+  @Override
+  public InputStream queryRangeStream(
+      String query, Long start, Long end, String step, Integer timeout) throws ApiException {
+    WebTarget target =
+        httpClient
+            .target(basePath)
+            .path("query_range")
+            .queryParam("query", query)
+            .queryParam("start", start)
+            .queryParam("end", end)
+            .queryParam("step", step);
+    if (timeout != null) {
+      target = target.queryParam("timeout", timeout);
+    }
+
+    Response response = target.request(MediaType.APPLICATION_JSON).get();
+    if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+      try {
+        throw new ApiException(response.getStatus(), response.readEntity(String.class));
+      } finally {
+        response.close();
+      }
+    }
+    return response.readEntity(InputStream.class);
+  }
 }
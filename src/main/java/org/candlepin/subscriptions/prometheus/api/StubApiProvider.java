@@ -20,12 +20,18 @@
  */
 package org.candlepin.subscriptions.prometheus.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import org.candlepin.subscriptions.prometheus.resources.QueryApi;
 import org.candlepin.subscriptions.prometheus.resources.QueryRangeApi;
 
 /** A prometheus Query API provider that returns stubbed data. */
 public class StubApiProvider implements ApiProvider {
 
+  private static final String EMPTY_RANGE_RESULT =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[]}}";
+
   private QueryApi queryApi;
   private QueryRangeApi rangeApi;
 
@@ -47,4 +53,10 @@ public class StubApiProvider implements ApiProvider {
   public QueryRangeApi queryRangeApi() {
     return this.rangeApi;
   }
+
+  @Override
+  public InputStream queryRangeStream(
+      String query, Long start, Long end, String step, Integer timeout) {
+    return new ByteArrayInputStream(EMPTY_RANGE_RESULT.getBytes(StandardCharsets.UTF_8));
+  }
 }
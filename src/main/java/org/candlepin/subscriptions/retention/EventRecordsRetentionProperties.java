@@ -31,5 +31,12 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties(prefix = "rhsm-subscriptions.event-retention-policy")
 public class EventRecordsRetentionProperties {
+  /**
+   * How long events are kept. When the events table is partitioned by month, a month is only
+   * dropped once all of it is older than this, so events may be kept up to a month longer.
+   */
   private Duration eventRetentionDuration = Duration.ofDays(90L);
+
+  /** How many months ahead of the current one events partitions are created. */
+  private int partitionMonthsAhead = 3;
 }
@@ -45,6 +45,10 @@ public class PurgeSnapshotsJob implements Runnable {
   public void run() {
     log.info("Starting snapshot purge.");
     try {
+      // The partitions are created here rather than in a job of their own, because this job is the
+      // one run through the purge-snapshots profile's JobRunner.
+      retentionController.maintainEventPartitions();
+      retentionController.maintainSnapshotPartitions();
       retentionController.purgeSnapshots();
       log.info("Snapshot purge complete.");
     } catch (AccountListSourceException e) {
@@ -21,6 +21,8 @@
 package org.candlepin.subscriptions.retention;
 
 import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.AccountListSource;
@@ -43,6 +45,7 @@ public class TallyRetentionController {
   private final EventRecordRepository eventRecordRepository;
   private final TallyRetentionPolicy policy;
   private final EventRecordsRetentionProperties eventRecordsRetentionProperties;
+  private final TallyRetentionPolicyProperties tallyRetentionPolicyProperties;
   private final AccountListSource accountListSource;
 
   @Autowired
@@ -51,16 +54,22 @@ public class TallyRetentionController {
       EventRecordRepository eventRecordRepository,
       TallyRetentionPolicy policy,
       EventRecordsRetentionProperties eventRecordsRetentionProperties,
+      TallyRetentionPolicyProperties tallyRetentionPolicyProperties,
       AccountListSource accountListSource) {
     this.tallySnapshotRepository = tallySnapshotRepository;
     this.eventRecordRepository = eventRecordRepository;
     this.policy = policy;
     this.eventRecordsRetentionProperties = eventRecordsRetentionProperties;
+    this.tallyRetentionPolicyProperties = tallyRetentionPolicyProperties;
     this.accountListSource = accountListSource;
   }
 
   @Transactional
   public void purgeSnapshots() throws AccountListSourceException {
+    if (tallySnapshotRepository.isPartitioned()) {
+      dropExpiredSnapshotPartitions();
+      return;
+    }
     try (Stream<String> accountList = accountListSource.purgeReportAccounts()) {
       accountList.forEach(this::cleanStaleSnapshotsForAccount);
     }
@@ -77,6 +86,45 @@ public class TallyRetentionController {
     }
   }
 
+  /**
+   * Creates the snapshot partitions for the current month and the configured number of months
+   * ahead, for every granularity partitioned by month.
+   */
+  @Transactional
+  public void maintainSnapshotPartitions() {
+    if (!tallySnapshotRepository.isPartitioned()) {
+      log.debug("Tally snapshots are not partitioned; skipping partition maintenance.");
+      return;
+    }
+    YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+    for (Granularity granularity : TallySnapshotRepository.MONTHLY_PARTITIONED_GRANULARITIES) {
+      for (int i = 0; i <= tallyRetentionPolicyProperties.getPartitionMonthsAhead(); i++) {
+        tallySnapshotRepository.createMonthlyPartition(granularity, currentMonth.plusMonths(i));
+      }
+    }
+  }
+
+  private void dropExpiredSnapshotPartitions() {
+    for (Granularity granularity : Granularity.values()) {
+      OffsetDateTime cutoffDate = policy.getCutoffDate(granularity);
+      if (cutoffDate == null) {
+        continue;
+      }
+      // Only months entirely before the cutoff are dropped, so up to a month of snapshots past the
+      // cutoff may be kept. Snapshots of granularities not partitioned by month are few, and are
+      // deleted in a single statement.
+      YearMonth cutoffMonth = YearMonth.from(cutoffDate.withOffsetSameInstant(ZoneOffset.UTC));
+      for (YearMonth month : tallySnapshotRepository.findMonthlyPartitions(granularity)) {
+        if (month.isBefore(cutoffMonth)) {
+          tallySnapshotRepository.dropMonthlyPartition(granularity, month);
+        }
+      }
+      int deleted =
+          tallySnapshotRepository.deleteUnpartitionedSnapshotsBefore(granularity, cutoffDate);
+      log.info("Deleted {} {} snapshots outside monthly partitions.", deleted, granularity);
+    }
+  }
+
   public void purgeOldEventRecords() {
     var eventRetentionDuration = eventRecordsRetentionProperties.getEventRetentionDuration();
 
@@ -85,6 +133,41 @@ public class TallyRetentionController {
 
     log.info("Purging event records older than Duration {}", cutoffDate);
 
+    if (eventRecordRepository.isPartitionedByMonth()) {
+      dropExpiredEventPartitions(cutoffDate);
+      return;
+    }
     eventRecordRepository.deleteEventRecordsByTimestampBefore(cutoffDate);
   }
+
+  /**
+   * Creates the monthly events partitions for the current month and the configured number of
+   * months ahead, so that new events never land in the default partition.
+   */
+  @Transactional
+  public void maintainEventPartitions() {
+    if (!eventRecordRepository.isPartitionedByMonth()) {
+      log.debug("Events table is not partitioned; skipping partition maintenance.");
+      return;
+    }
+    YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+    for (int i = 0; i <= eventRecordsRetentionProperties.getPartitionMonthsAhead(); i++) {
+      eventRecordRepository.createMonthlyPartition(currentMonth.plusMonths(i));
+    }
+  }
+
+  private void dropExpiredEventPartitions(OffsetDateTime cutoffDate) {
+    // Only months entirely before the cutoff are dropped, so the cost depends on the number of
+    // partitions rather than the number of events.
+    YearMonth cutoffMonth = YearMonth.from(cutoffDate.withOffsetSameInstant(ZoneOffset.UTC));
+    for (YearMonth month : eventRecordRepository.findMonthlyPartitions()) {
+      if (month.isBefore(cutoffMonth)) {
+        eventRecordRepository.dropMonthlyPartition(month);
+      }
+    }
+    int deleted = eventRecordRepository.deleteDefaultPartitionEventsBefore(cutoffDate);
+    if (deleted > 0) {
+      log.warn("Deleted {} expired events from the default events partition.", deleted);
+    }
+  }
 }
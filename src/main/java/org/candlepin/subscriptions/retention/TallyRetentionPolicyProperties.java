@@ -62,4 +62,10 @@ public class TallyRetentionPolicyProperties {
    * year (the current incomplete year).
    */
   private Integer yearly;
+
+  /**
+   * How many months ahead of the current one snapshot partitions are created, for the
+   * granularities partitioned by month.
+   */
+  private int partitionMonthsAhead = 3;
 }
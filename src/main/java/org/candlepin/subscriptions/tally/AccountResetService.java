@@ -23,8 +23,10 @@ package org.candlepin.subscriptions.tally;
 import javax.transaction.Transactional;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.BillableUsageRemittanceRepository;
+import org.candlepin.subscriptions.db.BillableUsageTotalRepository;
 import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.HostRepository;
+import org.candlepin.subscriptions.db.InstanceHourlyTotalRepository;
 import org.candlepin.subscriptions.db.SubscriptionCapacityRepository;
 import org.candlepin.subscriptions.db.SubscriptionRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
@@ -41,6 +43,8 @@ public class AccountResetService {
   private final SubscriptionCapacityRepository subscriptionCapacityRepository;
   private final SubscriptionRepository subscriptionRepository;
   private final BillableUsageRemittanceRepository remittanceRepository;
+  private final InstanceHourlyTotalRepository instanceHourlyTotalRepository;
+  private final BillableUsageTotalRepository billableUsageTotalRepository;
 
   @Autowired
   public AccountResetService(
@@ -50,7 +54,9 @@ public class AccountResetService {
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       SubscriptionCapacityRepository subscriptionCapacityRepository,
       SubscriptionRepository subscriptionRepository,
-      BillableUsageRemittanceRepository remittanceRepository) {
+      BillableUsageRemittanceRepository remittanceRepository,
+      InstanceHourlyTotalRepository instanceHourlyTotalRepository,
+      BillableUsageTotalRepository billableUsageTotalRepository) {
     this.eventRecordRepo = eventRecordRepo;
     this.hostRepo = hostRepo;
     this.tallySnapshotRepository = tallySnapshotRepository;
@@ -58,6 +64,8 @@ public class AccountResetService {
     this.subscriptionCapacityRepository = subscriptionCapacityRepository;
     this.subscriptionRepository = subscriptionRepository;
     this.remittanceRepository = remittanceRepository;
+    this.instanceHourlyTotalRepository = instanceHourlyTotalRepository;
+    this.billableUsageTotalRepository = billableUsageTotalRepository;
   }
 
   @Transactional
@@ -70,5 +78,7 @@ public class AccountResetService {
     subscriptionRepository.deleteByAccountNumber(accountNumber);
     subscriptionCapacityRepository.deleteByAccountNumber(accountNumber);
     remittanceRepository.deleteByKeyAccountNumber(accountNumber);
+    instanceHourlyTotalRepository.deleteByKeyAccountNumber(accountNumber);
+    billableUsageTotalRepository.deleteByKeyAccountNumber(accountNumber);
   }
 }
@@ -27,21 +27,39 @@ import java.util.Set;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.json.Measurement;
 
-/** The calculated usage for an account. */
+/**
+ * The calculated usage for an account.
+ *
+ * <p>When created with a {@link UsageKeySpace}, calculations for keys within that space are also
+ * indexed in a dense array, so that they can be resolved without allocating or hashing a key. The
+ * map of calculations remains the complete view used by the snapshot strategies and rollers.
+ */
 public class AccountUsageCalculation {
 
   private String account;
   private String owner;
   private Map<UsageCalculation.Key, UsageCalculation> calculations;
   private Set<String> products;
+  private final UsageKeySpace keySpace;
+  private final UsageCalculation[] indexedCalculations;
 
   public AccountUsageCalculation(String account) {
+    this(account, null);
+  }
+
+  public AccountUsageCalculation(String account, UsageKeySpace keySpace) {
     this.account = account;
     this.calculations = new HashMap<>();
     this.products = new HashSet<>();
+    this.keySpace = keySpace;
+    this.indexedCalculations = keySpace == null ? null : new UsageCalculation[keySpace.size()];
   }
 
   public UsageCalculation getOrCreateCalculation(UsageCalculation.Key key) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      return getOrCreateIndexedCalculation(index);
+    }
     UsageCalculation calc = getCalculation(key);
     if (calc == null) {
       calc = new UsageCalculation(key);
@@ -50,6 +68,28 @@ public class AccountUsageCalculation {
     return calc;
   }
 
+  /**
+   * Get or create the calculation for a key by its index in this calculation's key space.
+   *
+   * @param index the index of the key, see {@link UsageKeySpace#indexOf}
+   * @return the calculation for the key
+   */
+  public UsageCalculation getOrCreateIndexedCalculation(int index) {
+    UsageCalculation calc = indexedCalculations[index];
+    if (calc == null) {
+      UsageCalculation.Key key = keySpace.getKey(index);
+      calc = new UsageCalculation(key);
+      indexedCalculations[index] = calc;
+      calculations.put(key, calc);
+      products.add(key.getProductId());
+    }
+    return calc;
+  }
+
+  private int indexOf(UsageCalculation.Key key) {
+    return keySpace == null ? -1 : keySpace.indexOf(key);
+  }
+
   public String getAccount() {
     return account;
   }
@@ -64,14 +104,18 @@ public class AccountUsageCalculation {
 
   public void addCalculation(UsageCalculation calc) {
     String productId = calc.getProductId();
-    this.calculations.put(
+    UsageCalculation.Key key =
         new UsageCalculation.Key(
             productId,
             calc.getSla(),
             calc.getUsage(),
             calc.getBillingProvider(),
-            calc.getBillingAccountId()),
-        calc);
+            calc.getBillingAccountId());
+    this.calculations.put(key, calc);
+    int index = indexOf(key);
+    if (index >= 0) {
+      indexedCalculations[index] = calc;
+    }
     this.products.add(productId);
   }
 
@@ -85,6 +129,16 @@ public class AccountUsageCalculation {
     products.add(key.getProductId());
   }
 
+  /**
+   * Adds the calculations of another partial calculation for the same account into this one.
+   *
+   * @param other the partial calculation to fold into this one.
+   */
+  public void merge(AccountUsageCalculation other) {
+    other.calculations.forEach((key, calc) -> getOrCreateCalculation(key).merge(calc));
+    this.products.addAll(other.products);
+  }
+
   public boolean containsCalculation(UsageCalculation.Key key) {
     return this.calculations.containsKey(key);
   }
@@ -98,6 +152,10 @@ public class AccountUsageCalculation {
   }
 
   public UsageCalculation getCalculation(UsageCalculation.Key key) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      return indexedCalculations[index];
+    }
     return this.calculations.get(key);
   }
 
@@ -40,6 +40,7 @@ import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.tally.billing.BillableUsageTotalController;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.candlepin.subscriptions.util.DateRange;
 import org.slf4j.Logger;
@@ -63,12 +64,16 @@ public class CombiningRollupSnapshotStrategy {
 
   private final TallySnapshotRepository tallyRepo;
   private final ApplicationClock clock;
+  private final BillableUsageTotalController billableUsageTotalController;
 
   @Autowired
   public CombiningRollupSnapshotStrategy(
-      TallySnapshotRepository tallyRepo, ApplicationClock clock) {
+      TallySnapshotRepository tallyRepo,
+      ApplicationClock clock,
+      BillableUsageTotalController billableUsageTotalController) {
     this.tallyRepo = tallyRepo;
     this.clock = clock;
+    this.billableUsageTotalController = billableUsageTotalController;
   }
 
   /**
@@ -273,6 +278,9 @@ public class CombiningRollupSnapshotStrategy {
       Granularity granularity) {
 
     List<TallySnapshot> toSave = new ArrayList<>();
+    boolean trackBillableTotals =
+        granularity == Granularity.HOURLY && billableUsageTotalController.isEnabled();
+    List<BillableUsageTotalController.HourlyChange> billableChanges = new ArrayList<>();
 
     Map<TallySnapshotNaturalKey, TallySnapshot> affectedSnaps =
         existingSnapshotLookup.entrySet().stream()
@@ -295,6 +303,8 @@ public class CombiningRollupSnapshotStrategy {
 
             TallySnapshot existing = affectedSnaps.remove(snapshotKey);
             TallySnapshot snapshot = Objects.requireNonNullElseGet(existing, TallySnapshot::new);
+            Map<TallyMeasurementKey, Double> previousMeasurements =
+                trackBillableTotals ? new HashMap<>(snapshot.getTallyMeasurements()) : Map.of();
 
             UsageCalculation productCalc = accountCalc.getCalculation(usageKey);
 
@@ -306,7 +316,12 @@ public class CombiningRollupSnapshotStrategy {
                 granularity);
 
             snapshot.setSnapshotDate(offset);
-            toSave.add(tallyRepo.save(snapshot));
+            TallySnapshot saved = tallyRepo.save(snapshot);
+            toSave.add(saved);
+            if (trackBillableTotals) {
+              billableChanges.add(
+                  new BillableUsageTotalController.HourlyChange(saved, previousMeasurements));
+            }
           }
         });
 
@@ -315,9 +330,20 @@ public class CombiningRollupSnapshotStrategy {
         .values()
         .forEach(
             snapshot -> {
+              Map<TallyMeasurementKey, Double> previousMeasurements =
+                  trackBillableTotals ? new HashMap<>(snapshot.getTallyMeasurements()) : Map.of();
               snapshot.getTallyMeasurements().clear();
-              toSave.add(tallyRepo.save(snapshot));
+              TallySnapshot saved = tallyRepo.save(snapshot);
+              toSave.add(saved);
+              if (trackBillableTotals) {
+                billableChanges.add(
+                    new BillableUsageTotalController.HourlyChange(saved, previousMeasurements));
+              }
             });
+
+    if (!billableChanges.isEmpty()) {
+      billableUsageTotalController.recordHourlyChanges(billableChanges);
+    }
     return toSave;
   }
 
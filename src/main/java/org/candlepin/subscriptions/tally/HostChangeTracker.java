@@ -0,0 +1,166 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.HostBucketKey;
+import org.candlepin.subscriptions.db.model.HostTallyBucket;
+import org.candlepin.subscriptions.json.Measurement;
+
+/**
+ * Captures the persisted state of an account's hosts as they were loaded, so that once a tally has
+ * updated them the hosts, buckets and measurements that actually differ can be counted by kind of
+ * write. Unchanged rows are left alone by Hibernate's dirty checking; the counts make the resulting
+ * write volume visible.
+ */
+public class HostChangeTracker {
+
+  /** The kind of row whose writes are counted. */
+  public enum Entity {
+    HOST,
+    BUCKET,
+    MEASUREMENT
+  }
+
+  /** The write a difference results in. */
+  public enum Operation {
+    INSERT,
+    UPDATE,
+    DELETE
+  }
+
+  private final Map<String, HostState> loaded = new HashMap<>();
+
+  public HostChangeTracker(Collection<Host> hosts) {
+    hosts.forEach(host -> loaded.put(host.getInstanceId(), new HostState(host)));
+  }
+
+  /**
+   * Compares the given hosts against the loaded state.
+   *
+   * @param hosts every host that will remain after the tally
+   * @return the number of rows of each entity affected by each operation
+   */
+  public Map<Entity, Map<Operation, Integer>> compare(Collection<Host> hosts) {
+    Map<Entity, Map<Operation, Integer>> changes = new EnumMap<>(Entity.class);
+    for (Entity entity : Entity.values()) {
+      Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+      EnumSet.allOf(Operation.class).forEach(operation -> counts.put(operation, 0));
+      changes.put(entity, counts);
+    }
+
+    Set<String> remaining = new HashSet<>(loaded.keySet());
+    for (Host host : hosts) {
+      HostState previous = loaded.get(host.getInstanceId());
+      remaining.remove(host.getInstanceId());
+      HostState current = new HostState(host);
+      if (previous == null) {
+        increment(changes, Entity.HOST, Operation.INSERT, 1);
+        increment(changes, Entity.BUCKET, Operation.INSERT, current.buckets.size());
+        increment(changes, Entity.MEASUREMENT, Operation.INSERT, current.measurements.size());
+        continue;
+      }
+      if (previous.fields != current.fields) {
+        increment(changes, Entity.HOST, Operation.UPDATE, 1);
+      }
+      compareRows(changes, Entity.BUCKET, previous.buckets, current.buckets);
+      compareRows(changes, Entity.MEASUREMENT, previous.measurements, current.measurements);
+    }
+
+    for (String instanceId : remaining) {
+      HostState previous = loaded.get(instanceId);
+      increment(changes, Entity.HOST, Operation.DELETE, 1);
+      increment(changes, Entity.BUCKET, Operation.DELETE, previous.buckets.size());
+      increment(changes, Entity.MEASUREMENT, Operation.DELETE, previous.measurements.size());
+    }
+    return changes;
+  }
+
+  private static <K, V> void compareRows(
+      Map<Entity, Map<Operation, Integer>> changes,
+      Entity entity,
+      Map<K, V> previous,
+      Map<K, V> current) {
+    current.forEach(
+        (key, value) -> {
+          if (!previous.containsKey(key)) {
+            increment(changes, entity, Operation.INSERT, 1);
+          } else if (!Objects.equals(previous.get(key), value)) {
+            increment(changes, entity, Operation.UPDATE, 1);
+          }
+        });
+    previous.keySet().stream()
+        .filter(key -> !current.containsKey(key))
+        .forEach(key -> increment(changes, entity, Operation.DELETE, 1));
+  }
+
+  private static void increment(
+      Map<Entity, Map<Operation, Integer>> changes,
+      Entity entity,
+      Operation operation,
+      int count) {
+    changes.get(entity).merge(operation, count, Integer::sum);
+  }
+
+  /**
+   * Fingerprints of the columns an HBI tally writes to a host and its child rows. Only hashes are
+   * kept, so a change that happens to leave a hash intact goes uncounted; the counts are an
+   * estimate of write volume, not a record of it.
+   */
+  private static class HostState {
+    private final int fields;
+    private final Map<Measurement.Uom, Double> measurements;
+    private final Map<HostBucketKey, Integer> buckets = new HashMap<>();
+
+    HostState(Host host) {
+      fields =
+          Objects.hash(
+              host.getInventoryId(),
+              host.getInsightsId(),
+              host.getDisplayName(),
+              host.getAccountNumber(),
+              host.getOrgId(),
+              host.getSubscriptionManagerId(),
+              host.isGuest(),
+              host.getHypervisorUuid(),
+              host.getHardwareType(),
+              host.getNumOfGuests(),
+              host.getLastSeen(),
+              host.isUnmappedGuest(),
+              host.isHypervisor(),
+              host.getCloudProvider());
+      measurements = new HashMap<>(host.getMeasurements());
+      for (HostTallyBucket bucket : host.getBuckets()) {
+        buckets.put(
+            bucket.getKey(),
+            Objects.hash(bucket.getCores(), bucket.getSockets(), bucket.getMeasurementType()));
+      }
+    }
+  }
+}
@@ -22,8 +22,13 @@ package org.candlepin.subscriptions.tally;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,6 +36,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.ApplicationProperties;
@@ -45,8 +54,10 @@ import org.candlepin.subscriptions.tally.collector.ProductUsageCollector;
 import org.candlepin.subscriptions.tally.collector.ProductUsageCollectorFactory;
 import org.candlepin.subscriptions.tally.facts.FactNormalizer;
 import org.candlepin.subscriptions.tally.facts.NormalizedFacts;
+import org.candlepin.subscriptions.util.ApplicationClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -63,18 +74,42 @@ public class InventoryAccountUsageCollector {
   private final AccountServiceInventoryRepository accountServiceInventoryRepository;
   private final int culledOffsetDays;
   private final Counter totalHosts;
-
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService hbiTallyExecutor;
+  private final int hbiTallyParallelism;
+  private final int hbiTallyPartitionSize;
+  private final int hbiFactsPageSize;
+  private final boolean hbiIncrementalTallyEnabled;
+  private final Duration hbiFullReconciliationInterval;
+  private final boolean hbiHostChangeTrackingEnabled;
+  private final int hostLastSyncThresholdHours;
+  private final ApplicationClock clock;
+  private volatile UsageKeySpace cachedKeySpace;
+
+  @SuppressWarnings("java:S107")
   public InventoryAccountUsageCollector(
       FactNormalizer factNormalizer,
       InventoryDatabaseOperations inventory,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       ApplicationProperties props,
-      MeterRegistry meterRegistry) {
+      MeterRegistry meterRegistry,
+      @Qualifier("hbiTallyExecutor") ExecutorService hbiTallyExecutor,
+      ApplicationClock clock) {
     this.factNormalizer = factNormalizer;
     this.inventory = inventory;
     this.accountServiceInventoryRepository = accountServiceInventoryRepository;
     this.culledOffsetDays = props.getCullingOffsetDays();
     this.totalHosts = meterRegistry.counter("rhsm-subscriptions.tally.hbi_hosts");
+    this.meterRegistry = meterRegistry;
+    this.hbiTallyExecutor = hbiTallyExecutor;
+    this.hbiTallyParallelism = props.getHbiTallyParallelism();
+    this.hbiTallyPartitionSize = Math.max(1, props.getHbiTallyPartitionSize());
+    this.hbiFactsPageSize = props.getHbiFactsPageSize();
+    this.hbiIncrementalTallyEnabled = props.isHbiIncrementalTallyEnabled();
+    this.hbiFullReconciliationInterval = props.getHbiFullReconciliationInterval();
+    this.hbiHostChangeTrackingEnabled = props.isHbiHostChangeTrackingEnabled();
+    this.hostLastSyncThresholdHours = props.getHostLastSyncThresholdHours();
+    this.clock = clock;
   }
 
   @SuppressWarnings("squid:S3776")
@@ -93,6 +128,10 @@ public class InventoryAccountUsageCollector {
         accountServiceInventoryRepository
             .findById(new AccountServiceInventoryId(account, HBI_INSTANCE_TYPE))
             .orElse(new AccountServiceInventory(account, HBI_INSTANCE_TYPE));
+    HostChangeTracker changeTracker =
+        hbiHostChangeTrackingEnabled
+            ? new HostChangeTracker(accountServiceInventory.getServiceInstances().values())
+            : null;
 
     Set<String> duplicateInstanceIds = new HashSet<>();
     Map<String, Host> inventoryHostMap =
@@ -106,117 +145,50 @@ public class InventoryAccountUsageCollector {
     duplicateInstanceIds.forEach(accountServiceInventory.getServiceInstances()::remove);
 
     Map<String, String> hypMapping = new HashMap<>();
-    Map<String, Set<UsageCalculation.Key>> hypervisorUsageKeys = new HashMap<>();
-    Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts = new HashMap<>();
-    Map<String, Host> hypervisorHosts = new HashMap<>();
-    Map<String, Integer> hypervisorGuestCounts = new HashMap<>();
-
     inventory.reportedHypervisors(
         List.of(orgId), reported -> hypMapping.put((String) reported[0], (String) reported[1]));
     log.info("Found {} reported hypervisors.", hypMapping.size());
 
-    Map<String, Set<HostBucketKey>> hostSeenBucketKeysLookup = new HashMap<>();
-    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
-    inventory.processHostFacts(
-        List.of(orgId),
-        culledOffsetDays,
-        hostFacts -> {
-          calcsByAccount.putIfAbsent(account, new AccountUsageCalculation(account));
-
-          AccountUsageCalculation accountCalc = calcsByAccount.get(account);
-          NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
-
-          // Validate and set the owner.
-          // Don't set null owner as it may overwrite an existing value.
-          // Likely won't happen, but there could be stale data in inventory
-          // with no owner set.
-          String owner = facts.getOwner();
-          if (owner != null) {
-            String currentOwner = accountCalc.getOwner();
-            if (currentOwner != null && !currentOwner.equalsIgnoreCase(owner)) {
-              throw new IllegalStateException(
-                  String.format(
-                      "Attempt to set a different owner for an account: %s:%s",
-                      currentOwner, owner));
-            }
-            accountCalc.setOwner(owner);
-          }
-
-          Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
-          Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
-          if (existingHost != null) {
-            populateHostFieldsFromHbi(host, hostFacts, facts);
-          }
-          Set<HostBucketKey> seenBucketKeys =
-              hostSeenBucketKeysLookup.computeIfAbsent(host.getInstanceId(), h -> new HashSet<>());
-
-          if (facts.isHypervisor()) {
-            Map<String, NormalizedFacts> idToHypervisorMap =
-                accountHypervisorFacts.computeIfAbsent(account, a -> new HashMap<>());
-            idToHypervisorMap.put(hostFacts.getSubscriptionManagerId(), facts);
-            hypervisorHosts.put(hostFacts.getSubscriptionManagerId(), host);
-          } else if (facts.isVirtual() && StringUtils.hasText(facts.getHypervisorUuid())) {
-            Integer guests = hypervisorGuestCounts.getOrDefault(host.getHypervisorUuid(), 0);
-            hypervisorGuestCounts.put(host.getHypervisorUuid(), ++guests);
-          }
+    UsageKeySpace keySpace = keySpaceFor(products);
+    boolean incremental = isIncrementalTallyDue(accountServiceInventory);
+    HostPartition collected;
+    if (incremental) {
+      collected =
+          collectIncremental(
+              keySpace,
+              account,
+              orgId,
+              hypMapping,
+              inventoryHostMap,
+              accountServiceInventory.getModifiedOnWatermark());
+    } else if (hbiTallyParallelism > 1) {
+      collected = collectPartitioned(keySpace, account, orgId, hypMapping, inventoryHostMap);
+    } else {
+      collected = collectSequential(keySpace, account, orgId, hypMapping, inventoryHostMap);
+    }
 
-          ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
-          Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
-
-          // Calculate for each UsageKey
-          // review current implementation of default values, and determine if factnormalizer needs
-          // to handle billingAcctId & BillingProvider
-          products.forEach(
-              product -> {
-                for (ServiceLevel sla : slas) {
-                  for (Usage usage : usages) {
-                    UsageCalculation.Key key =
-                        new UsageCalculation.Key(product, sla, usage, BillingProvider._ANY, "_ANY");
-                    UsageCalculation calc = accountCalc.getOrCreateCalculation(key);
-                    if (facts.getProducts().contains(product)) {
-                      try {
-                        String hypervisorUuid = facts.getHypervisorUuid();
-                        if (hypervisorUuid != null) {
-                          Set<UsageCalculation.Key> keys =
-                              hypervisorUsageKeys.computeIfAbsent(
-                                  hypervisorUuid, uuid -> new HashSet<>());
-                          keys.add(key);
-                        }
-                        Optional<HostTallyBucket> appliedBucket =
-                            ProductUsageCollectorFactory.get(product).collect(calc, facts);
-                        appliedBucket.ifPresent(
-                            bucket -> {
-                              // host.addBucket changes bucket.key.hostId, so we do that first; to
-                              // avoid mutating the item in the set
-                              host.addBucket(bucket);
-                              seenBucketKeys.add(bucket.getKey());
-                            });
-                      } catch (Exception e) {
-                        log.error(
-                            "Unable to collect usage data for host: {} product: {}",
-                            hostFacts.getSubscriptionManagerId(),
-                            product,
-                            e);
-                      }
-                    }
-                  }
-                }
-              });
-          // Save the host now that the buckets have been determined. Hypervisor hosts will
-          // be persisted once all potential guests have been processed.
-          if (!facts.isHypervisor()) {
-            accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host);
-          }
+    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
+    Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts = new HashMap<>();
+    if (collected.accountCalc != null) {
+      calcsByAccount.put(account, collected.accountCalc);
+    }
+    if (!collected.hypervisorFacts.isEmpty()) {
+      accountHypervisorFacts.put(account, collected.hypervisorFacts);
+    }
+    Map<String, Host> hypervisorHosts = collected.hypervisorHosts;
+    Map<String, Set<HostBucketKey>> hostSeenBucketKeysLookup = collected.seenBucketKeys;
 
-          totalHosts.increment();
-        });
+    // Save the hosts now that the buckets have been determined. Hypervisor hosts will
+    // be persisted once all potential guests have been processed.
+    collected.hosts.forEach(
+        host -> accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host));
 
     // apply data from guests to hypervisor records
     collectHypervisorGuestData(
-        hypervisorUsageKeys,
+        collected.hypervisorUsageKeys,
         accountHypervisorFacts,
         hypervisorHosts,
-        hypervisorGuestCounts,
+        collected.hypervisorGuestCounts,
         calcsByAccount,
         hostSeenBucketKeysLookup);
 
@@ -256,17 +228,433 @@ public class InventoryAccountUsageCollector {
         .filter(Objects::nonNull)
         .findFirst()
         .ifPresent(accountServiceInventory::setOrgId);
+    updateWatermarks(accountServiceInventory, collected, incremental);
+    if (changeTracker != null) {
+      recordHostChanges(
+          account, changeTracker.compare(accountServiceInventory.getServiceInstances().values()));
+    }
     accountServiceInventoryRepository.save(accountServiceInventory);
 
     return calcsByAccount;
   }
 
+  private void recordHostChanges(
+      String account,
+      Map<HostChangeTracker.Entity, Map<HostChangeTracker.Operation, Integer>> changes) {
+    changes.forEach(
+        (entity, counts) ->
+            counts.forEach(
+                (operation, count) ->
+                    meterRegistry
+                        .counter(
+                            "rhsm-subscriptions.tally.hbi_host_changes",
+                            "entity",
+                            entity.name().toLowerCase(),
+                            "operation",
+                            operation.name().toLowerCase())
+                        .increment(count)));
+    log.info("Host changes for account={}: {}", account, changes);
+  }
+
   private Host handleDuplicateHost(Set<String> duplicateInstanceIds, Host host1, Host host2) {
     log.warn("Removing duplicate host record w/ inventory ID: {}", host2.getInventoryId());
     duplicateInstanceIds.add(host2.getInstanceId());
     return host1;
   }
 
+  /**
+   * The applicable products rarely change between tallies, so the key space built for them is
+   * reused until a different set of products is requested.
+   */
+  private UsageKeySpace keySpaceFor(Collection<String> products) {
+    UsageKeySpace current = cachedKeySpace;
+    if (current == null || !current.covers(products)) {
+      current = new UsageKeySpace(products);
+      cachedKeySpace = current;
+    }
+    return current;
+  }
+
+  private boolean isIncrementalTallyDue(AccountServiceInventory accountServiceInventory) {
+    OffsetDateTime lastFullReconciliation = accountServiceInventory.getLastFullReconciliation();
+    return hbiIncrementalTallyEnabled
+        && accountServiceInventory.getModifiedOnWatermark() != null
+        && lastFullReconciliation != null
+        && lastFullReconciliation.plus(hbiFullReconciliationInterval).isAfter(clock.now());
+  }
+
+  private void updateWatermarks(
+      AccountServiceInventory accountServiceInventory,
+      HostPartition collected,
+      boolean incremental) {
+    OffsetDateTime watermark = collected.maxModifiedOn;
+    OffsetDateTime previous = accountServiceInventory.getModifiedOnWatermark();
+    if (incremental && (watermark == null || (previous != null && previous.isAfter(watermark)))) {
+      watermark = previous;
+    }
+    accountServiceInventory.setModifiedOnWatermark(watermark);
+    if (!incremental) {
+      accountServiceInventory.setLastFullReconciliation(clock.now());
+    }
+  }
+
+  /**
+   * Re-reads only the hosts modified since the last tally, along with any hosts whose usage depends
+   * on them through a hypervisor-guest mapping. Every other host contributes to the totals by
+   * re-applying its persisted buckets. On return, inventoryHostMap only contains hosts that are no
+   * longer present in HBI.
+   *
+   * <p>The modified_on lookback is widened by the host sync threshold, since a host whose rhsm sync
+   * timestamp ages past the threshold is normalized differently without being modified.
+   */
+  private HostPartition collectIncremental(
+      UsageKeySpace keySpace,
+      String account,
+      String orgId,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap,
+      OffsetDateTime watermark) {
+    OffsetDateTime modifiedSince = watermark.minusHours(hostLastSyncThresholdHours);
+    Map<String, InventoryHostFacts> modifiedFacts = new HashMap<>();
+    inventory.processHostFactsModifiedSince(
+        List.of(orgId),
+        culledOffsetDays,
+        modifiedSince,
+        hostFacts -> modifiedFacts.put(hostFacts.getInventoryId().toString(), hostFacts));
+    Set<String> activeInventoryIds = inventory.activeInventoryIds(List.of(orgId), culledOffsetDays);
+
+    Set<String> affectedHypervisorIds = new HashSet<>();
+    modifiedFacts
+        .values()
+        .forEach(
+            hostFacts -> {
+              addIfPresent(affectedHypervisorIds, hostFacts.getHypervisorUuid());
+              addIfPresent(affectedHypervisorIds, hostFacts.getSatelliteHypervisorUuid());
+              if (hypMapping.containsKey(hostFacts.getSubscriptionManagerId())) {
+                affectedHypervisorIds.add(hostFacts.getSubscriptionManagerId());
+              }
+            });
+    inventoryHostMap.forEach(
+        (inventoryId, host) -> {
+          if (modifiedFacts.containsKey(inventoryId) || !activeInventoryIds.contains(inventoryId)) {
+            addAffectedHypervisorIds(affectedHypervisorIds, host);
+          }
+        });
+
+    Set<String> relatedInventoryIds =
+        findRelatedInventoryIds(
+            inventoryHostMap, modifiedFacts.keySet(), activeInventoryIds, affectedHypervisorIds);
+    inventory.processHostFactsByInventoryIds(
+        List.of(orgId),
+        culledOffsetDays,
+        relatedInventoryIds,
+        hostFacts -> modifiedFacts.put(hostFacts.getInventoryId().toString(), hostFacts));
+    log.info(
+        "Incremental tally re-reading {} modified or related hosts out of {} active.",
+        modifiedFacts.size(),
+        activeInventoryIds.size());
+
+    HostPartition partition = new HostPartition(account, keySpace);
+    modifiedFacts.forEach(
+        (inventoryId, hostFacts) ->
+            collectHost(
+                keySpace, hypMapping, partition, hostFacts, inventoryHostMap.remove(inventoryId)));
+
+    inventoryHostMap
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (!activeInventoryIds.contains(entry.getKey())) {
+                // stale; left in the map to be removed
+                return false;
+              }
+              replayHost(keySpace, partition, entry.getValue());
+              return true;
+            });
+    return partition;
+  }
+
+  /**
+   * Finds unmodified hosts that must be re-read: those tied to an affected hypervisor, either as
+   * the hypervisor or as one of its guests, and those with buckets that cannot be re-applied. The
+   * search repeats until no new hosts are found, since a related hypervisor may itself be a guest.
+   */
+  private Set<String> findRelatedInventoryIds(
+      Map<String, Host> inventoryHostMap,
+      Set<String> modifiedInventoryIds,
+      Set<String> activeInventoryIds,
+      Set<String> affectedHypervisorIds) {
+    Set<String> related = new HashSet<>();
+    boolean found = true;
+    while (found) {
+      found = false;
+      for (Map.Entry<String, Host> entry : inventoryHostMap.entrySet()) {
+        String inventoryId = entry.getKey();
+        Host host = entry.getValue();
+        if (modifiedInventoryIds.contains(inventoryId)
+            || related.contains(inventoryId)
+            || !activeInventoryIds.contains(inventoryId)) {
+          continue;
+        }
+        boolean isRelated =
+            affectedHypervisorIds.contains(host.getSubscriptionManagerId())
+                || affectedHypervisorIds.contains(host.getHypervisorUuid())
+                || host.getBuckets().stream().anyMatch(b -> b.getMeasurementType() == null);
+        if (isRelated) {
+          related.add(inventoryId);
+          found |= addAffectedHypervisorIds(affectedHypervisorIds, host);
+        }
+      }
+    }
+    return related;
+  }
+
+  private boolean addAffectedHypervisorIds(Set<String> affectedHypervisorIds, Host host) {
+    boolean added = addIfPresent(affectedHypervisorIds, host.getHypervisorUuid());
+    if (host.isHypervisor()) {
+      added |= addIfPresent(affectedHypervisorIds, host.getSubscriptionManagerId());
+    }
+    return added;
+  }
+
+  private static boolean addIfPresent(Set<String> values, String value) {
+    return StringUtils.hasText(value) && values.add(value);
+  }
+
+  /** Applies an unmodified host's persisted buckets to the calculation, keeping the buckets. */
+  private void replayHost(UsageKeySpace keySpace, HostPartition partition, Host host) {
+    AccountUsageCalculation accountCalc = partition.getOrCreateAccountCalc();
+    applyOwner(accountCalc, host.getOrgId());
+    for (int ordinal = 0; ordinal < keySpace.getProducts().size(); ordinal++) {
+      accountCalc.getOrCreateIndexedCalculation(
+          keySpace.indexOf(ordinal, ServiceLevel._ANY, Usage._ANY, BillingProvider._ANY));
+    }
+    Set<HostBucketKey> seenBucketKeys =
+        partition.seenBucketKeys.computeIfAbsent(host.getInstanceId(), h -> new HashSet<>());
+    host.getBuckets()
+        .forEach(
+            bucket -> {
+              HostBucketKey bucketKey = bucket.getKey();
+              UsageCalculation.Key key =
+                  new UsageCalculation.Key(
+                      bucketKey.getProductId(),
+                      bucketKey.getSla(),
+                      bucketKey.getUsage(),
+                      bucketKey.getBillingProvider(),
+                      bucketKey.getBillingAccountId());
+              ProductUsageCollectorFactory.get(bucketKey.getProductId())
+                  .collectFromBucket(accountCalc.getOrCreateCalculation(key), bucket);
+              seenBucketKeys.add(bucketKey);
+            });
+    partition.hosts.add(host);
+  }
+
+  private void processHostFacts(String orgId, Consumer<InventoryHostFacts> consumer) {
+    if (hbiFactsPageSize > 0) {
+      inventory.processHostFactsPaged(List.of(orgId), culledOffsetDays, hbiFactsPageSize, consumer);
+    } else {
+      inventory.processHostFacts(List.of(orgId), culledOffsetDays, consumer);
+    }
+  }
+
+  private HostPartition collectSequential(
+      UsageKeySpace keySpace,
+      String account,
+      String orgId,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap) {
+    HostPartition partition = new HostPartition(account, keySpace);
+    processHostFacts(
+        orgId,
+        hostFacts -> {
+          Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
+          collectHost(keySpace, hypMapping, partition, hostFacts, existingHost);
+        });
+    return partition;
+  }
+
+  /**
+   * Splits the HBI host stream into partitions that are normalized and bucketed on the HBI tally
+   * executor, each into its own {@link HostPartition}. Partials are merged back in stream order so
+   * that the result is identical to {@link #collectSequential}. The number of partitions in flight
+   * is bounded so that the org's host facts are never all held in memory at once.
+   */
+  private HostPartition collectPartitioned(
+      UsageKeySpace keySpace,
+      String account,
+      String orgId,
+      Map<String, String> hypMapping,
+      Map<String, Host> inventoryHostMap) {
+    HostPartition merged = new HostPartition(account, keySpace);
+    Deque<Future<HostPartition>> pending = new ArrayDeque<>();
+    List<InventoryHostFacts> chunk = new ArrayList<>(hbiTallyPartitionSize);
+    Map<String, Host> chunkExistingHosts = new HashMap<>();
+    int maxPending = hbiTallyParallelism * 2;
+    try {
+      processHostFacts(
+          orgId,
+          hostFacts -> {
+            String inventoryId = hostFacts.getInventoryId().toString();
+            Host existingHost = inventoryHostMap.remove(inventoryId);
+            if (existingHost != null) {
+              chunkExistingHosts.put(inventoryId, existingHost);
+            }
+            chunk.add(hostFacts);
+            if (chunk.size() >= hbiTallyPartitionSize) {
+              pending.add(
+                  submitPartition(
+                      keySpace,
+                      account,
+                      hypMapping,
+                      new ArrayList<>(chunk),
+                      new HashMap<>(chunkExistingHosts)));
+              chunk.clear();
+              chunkExistingHosts.clear();
+              while (pending.size() >= maxPending) {
+                merged.merge(awaitPartition(pending.poll()));
+              }
+            }
+          });
+      if (!chunk.isEmpty()) {
+        pending.add(submitPartition(keySpace, account, hypMapping, chunk, chunkExistingHosts));
+      }
+      while (!pending.isEmpty()) {
+        merged.merge(awaitPartition(pending.poll()));
+      }
+    } finally {
+      pending.forEach(future -> future.cancel(true));
+    }
+    return merged;
+  }
+
+  private Future<HostPartition> submitPartition(
+      UsageKeySpace keySpace,
+      String account,
+      Map<String, String> hypMapping,
+      List<InventoryHostFacts> hostFactsChunk,
+      Map<String, Host> existingHosts) {
+    return hbiTallyExecutor.submit(
+        () -> {
+          HostPartition partition = new HostPartition(account, keySpace);
+          hostFactsChunk.forEach(
+              hostFacts ->
+                  collectHost(
+                      keySpace,
+                      hypMapping,
+                      partition,
+                      hostFacts,
+                      existingHosts.get(hostFacts.getInventoryId().toString())));
+          return partition;
+        });
+  }
+
+  private HostPartition awaitPartition(Future<HostPartition> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while collecting HBI host partition", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to collect HBI host partition", e.getCause());
+    }
+  }
+
+  private void collectHost(
+      UsageKeySpace keySpace,
+      Map<String, String> hypMapping,
+      HostPartition partition,
+      InventoryHostFacts hostFacts,
+      Host existingHost) {
+    AccountUsageCalculation accountCalc = partition.getOrCreateAccountCalc();
+    partition.observeModifiedOn(hostFacts.getModifiedOn());
+    NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
+
+    // Validate and set the owner.
+    // Don't set null owner as it may overwrite an existing value.
+    // Likely won't happen, but there could be stale data in inventory
+    // with no owner set.
+    applyOwner(accountCalc, facts.getOwner());
+
+    Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
+    if (existingHost != null) {
+      populateHostFieldsFromHbi(host, hostFacts, facts);
+    }
+    Set<HostBucketKey> seenBucketKeys =
+        partition.seenBucketKeys.computeIfAbsent(host.getInstanceId(), h -> new HashSet<>());
+
+    if (facts.isHypervisor()) {
+      partition.hypervisorFacts.put(hostFacts.getSubscriptionManagerId(), facts);
+      partition.hypervisorHosts.put(hostFacts.getSubscriptionManagerId(), host);
+    } else if (facts.isVirtual() && StringUtils.hasText(facts.getHypervisorUuid())) {
+      partition.hypervisorGuestCounts.merge(host.getHypervisorUuid(), 1, Integer::sum);
+    }
+
+    ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
+    Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
+
+    // Calculate for each UsageKey
+    // review current implementation of default values, and determine if factnormalizer needs
+    // to handle billingAcctId & BillingProvider
+    List<String> products = keySpace.getProducts();
+    for (int ordinal = 0; ordinal < products.size(); ordinal++) {
+      String product = products.get(ordinal);
+      boolean hostHasProduct = facts.getProducts().contains(product);
+      for (ServiceLevel sla : slas) {
+        for (Usage usage : usages) {
+          int index = keySpace.indexOf(ordinal, sla, usage, BillingProvider._ANY);
+          UsageCalculation calc = accountCalc.getOrCreateIndexedCalculation(index);
+          if (hostHasProduct) {
+            try {
+              String hypervisorUuid = facts.getHypervisorUuid();
+              if (hypervisorUuid != null) {
+                Set<UsageCalculation.Key> keys =
+                    partition.hypervisorUsageKeys.computeIfAbsent(
+                        hypervisorUuid, uuid -> new HashSet<>());
+                keys.add(keySpace.getKey(index));
+              }
+              Optional<HostTallyBucket> appliedBucket =
+                  ProductUsageCollectorFactory.get(product).collect(calc, facts);
+              appliedBucket.ifPresent(
+                  bucket -> {
+                    // host.addBucket changes bucket.key.hostId, so we do that first; to
+                    // avoid mutating the item in the set
+                    host.addBucket(bucket);
+                    seenBucketKeys.add(bucket.getKey());
+                  });
+            } catch (Exception e) {
+              log.error(
+                  "Unable to collect usage data for host: {} product: {}",
+                  hostFacts.getSubscriptionManagerId(),
+                  product,
+                  e);
+            }
+          }
+        }
+      }
+    }
+
+    if (!facts.isHypervisor()) {
+      partition.hosts.add(host);
+    }
+
+    totalHosts.increment();
+  }
+
+  private static void applyOwner(AccountUsageCalculation accountCalc, String owner) {
+    if (owner != null) {
+      String currentOwner = accountCalc.getOwner();
+      if (currentOwner != null && !currentOwner.equalsIgnoreCase(owner)) {
+        throw new IllegalStateException(
+            String.format(
+                "Attempt to set a different owner for an account: %s:%s", currentOwner, owner));
+      }
+      accountCalc.setOwner(owner);
+    }
+  }
+
   private void collectHypervisorGuestData(
       Map<String, Set<Key>> hypervisorUsageKeys,
       Map<String, Map<String, NormalizedFacts>> accountHypervisorFacts,
@@ -329,12 +717,11 @@ public class InventoryAccountUsageCollector {
     host.setHypervisorUuid(normalizedFacts.getHypervisorUuid());
 
     if (normalizedFacts.getCores() != null) {
-      host.getMeasurements().put(Measurement.Uom.CORES, normalizedFacts.getCores().doubleValue());
+      host.setMeasurement(Measurement.Uom.CORES, normalizedFacts.getCores().doubleValue());
     }
 
     if (normalizedFacts.getSockets() != null) {
-      host.getMeasurements()
-          .put(Measurement.Uom.SOCKETS, normalizedFacts.getSockets().doubleValue());
+      host.setMeasurement(Measurement.Uom.SOCKETS, normalizedFacts.getSockets().doubleValue());
     }
 
     host.setHypervisor(normalizedFacts.isHypervisor());
@@ -355,4 +742,60 @@ public class InventoryAccountUsageCollector {
     populateHostFieldsFromHbi(host, inventoryHostFacts, normalizedFacts);
     return host;
   }
+
+  /**
+   * The usage and host data collected from a contiguous run of HBI hosts. In sequential mode a
+   * single partition covers the whole org; in partitioned mode each worker fills its own partition
+   * and the results are merged in stream order.
+   */
+  private static class HostPartition {
+    private final String account;
+    private final UsageKeySpace keySpace;
+    private AccountUsageCalculation accountCalc;
+    private final Map<String, Set<UsageCalculation.Key>> hypervisorUsageKeys = new HashMap<>();
+    private final Map<String, NormalizedFacts> hypervisorFacts = new HashMap<>();
+    private final Map<String, Host> hypervisorHosts = new HashMap<>();
+    private final Map<String, Integer> hypervisorGuestCounts = new HashMap<>();
+    private final Map<String, Set<HostBucketKey>> seenBucketKeys = new HashMap<>();
+    private final List<Host> hosts = new ArrayList<>();
+    private OffsetDateTime maxModifiedOn;
+
+    HostPartition(String account, UsageKeySpace keySpace) {
+      this.account = account;
+      this.keySpace = keySpace;
+    }
+
+    void observeModifiedOn(OffsetDateTime modifiedOn) {
+      if (modifiedOn != null && (maxModifiedOn == null || modifiedOn.isAfter(maxModifiedOn))) {
+        maxModifiedOn = modifiedOn;
+      }
+    }
+
+    AccountUsageCalculation getOrCreateAccountCalc() {
+      if (accountCalc == null) {
+        accountCalc = new AccountUsageCalculation(account, keySpace);
+      }
+      return accountCalc;
+    }
+
+    void merge(HostPartition other) {
+      if (other.accountCalc != null) {
+        AccountUsageCalculation calc = getOrCreateAccountCalc();
+        applyOwner(calc, other.accountCalc.getOwner());
+        calc.merge(other.accountCalc);
+      }
+      other.hypervisorUsageKeys.forEach(
+          (uuid, keys) ->
+              hypervisorUsageKeys.computeIfAbsent(uuid, u -> new HashSet<>()).addAll(keys));
+      hypervisorFacts.putAll(other.hypervisorFacts);
+      hypervisorHosts.putAll(other.hypervisorHosts);
+      other.hypervisorGuestCounts.forEach(
+          (uuid, count) -> hypervisorGuestCounts.merge(uuid, count, Integer::sum));
+      other.seenBucketKeys.forEach(
+          (instanceId, keys) ->
+              seenBucketKeys.computeIfAbsent(instanceId, i -> new HashSet<>()).addAll(keys));
+      hosts.addAll(other.hosts);
+      observeModifiedOn(other.maxModifiedOn);
+    }
+  }
 }
@@ -20,21 +20,16 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.registry.TagProfile;
-import org.candlepin.subscriptions.tally.roller.BaseSnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.DailySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.HourlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.MonthlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.QuarterlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.WeeklySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.YearlySnapshotRoller;
+import org.candlepin.subscriptions.tally.roller.CombinedSnapshotRoller;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,12 +43,7 @@ public class MaxSeenSnapshotStrategy {
 
   private static final Logger log = LoggerFactory.getLogger(MaxSeenSnapshotStrategy.class);
 
-  private final HourlySnapshotRoller hourlyRoller;
-  private final DailySnapshotRoller dailyRoller;
-  private final WeeklySnapshotRoller weeklyRoller;
-  private final MonthlySnapshotRoller monthlyRoller;
-  private final YearlySnapshotRoller yearlyRoller;
-  private final QuarterlySnapshotRoller quarterlyRoller;
+  private final CombinedSnapshotRoller roller;
   private final SnapshotSummaryProducer summaryProducer;
 
   @Autowired
@@ -61,27 +51,28 @@ public class MaxSeenSnapshotStrategy {
       TallySnapshotRepository tallyRepo,
       ApplicationClock clock,
       TagProfile tagProfile,
-      SnapshotSummaryProducer summaryProducer) {
+      SnapshotSummaryProducer summaryProducer,
+      ApplicationProperties props) {
     this.summaryProducer = summaryProducer;
-    hourlyRoller = new HourlySnapshotRoller(tallyRepo, clock, tagProfile);
-    dailyRoller = new DailySnapshotRoller(tallyRepo, clock, tagProfile);
-    weeklyRoller = new WeeklySnapshotRoller(tallyRepo, clock, tagProfile);
-    monthlyRoller = new MonthlySnapshotRoller(tallyRepo, clock, tagProfile);
-    yearlyRoller = new YearlySnapshotRoller(tallyRepo, clock, tagProfile);
-    quarterlyRoller = new QuarterlySnapshotRoller(tallyRepo, clock, tagProfile);
+    roller =
+        new CombinedSnapshotRoller(
+            tallyRepo,
+            clock,
+            tagProfile,
+            Granularity.HOURLY,
+            Granularity.DAILY,
+            Granularity.WEEKLY,
+            Granularity.MONTHLY,
+            Granularity.QUARTERLY,
+            Granularity.YEARLY);
+    roller.setBulkUpsertEnabled(props.isTallySnapshotBulkUpsertEnabled());
   }
 
   @Transactional
   public List<TallySnapshot> produceSnapshotsFromCalculations(
       String account, Collection<AccountUsageCalculation> accountCalcs) {
-    Stream<BaseSnapshotRoller> rollers =
-        Stream.of(
-            hourlyRoller, dailyRoller, weeklyRoller, monthlyRoller, quarterlyRoller, yearlyRoller);
-    var newAndUpdatedSnapshots =
-        rollers
-            .map(roller -> roller.rollSnapshots(account, accountCalcs))
-            .flatMap(Collection::stream)
-            .collect(Collectors.toList());
+    List<TallySnapshot> newAndUpdatedSnapshots =
+        new ArrayList<>(roller.rollSnapshots(account, accountCalcs));
     summaryProducer.produceTallySummaryMessages(Map.of(account, newAndUpdatedSnapshots));
     log.info("Finished producing snapshots for account {}", account);
     return newAndUpdatedSnapshots;
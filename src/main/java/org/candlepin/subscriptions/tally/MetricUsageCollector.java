@@ -20,10 +20,13 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -32,9 +35,12 @@ import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
+import org.candlepin.subscriptions.db.InstanceHourlyTotalRepository;
 import org.candlepin.subscriptions.db.model.*;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.json.Event;
@@ -53,19 +59,48 @@ public class MetricUsageCollector {
   private static final Logger log = LoggerFactory.getLogger(MetricUsageCollector.class);
 
   private final AccountServiceInventoryRepository accountServiceInventoryRepository;
+  private final InstanceHourlyTotalRepository instanceHourlyTotalRepository;
   private final EventController eventController;
   private final ApplicationClock clock;
   private final TagProfile tagProfile;
+  private final boolean streamingEnabled;
+  private final boolean incrementalTotalsEnabled;
 
   public MetricUsageCollector(
       TagProfile tagProfile,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       EventController eventController,
       ApplicationClock clock) {
+    this(
+        tagProfile,
+        accountServiceInventoryRepository,
+        null,
+        eventController,
+        clock,
+        new ApplicationProperties());
+  }
+
+  /**
+   * @param instanceHourlyTotalRepository required only when incremental totals are enabled
+   * @param applicationProperties when metric tally streaming is enabled, the events of the whole
+   *     range are read with a single ordered query and folded hour by hour, rather than queried one
+   *     hour at a time. When incremental totals are enabled, per-hour instance totals are recorded
+   *     and used to correct monthly totals on re-tally.
+   */
+  public MetricUsageCollector(
+      TagProfile tagProfile,
+      AccountServiceInventoryRepository accountServiceInventoryRepository,
+      InstanceHourlyTotalRepository instanceHourlyTotalRepository,
+      EventController eventController,
+      ApplicationClock clock,
+      ApplicationProperties applicationProperties) {
     this.accountServiceInventoryRepository = accountServiceInventoryRepository;
+    this.instanceHourlyTotalRepository = instanceHourlyTotalRepository;
     this.eventController = eventController;
     this.clock = clock;
     this.tagProfile = tagProfile;
+    this.streamingEnabled = applicationProperties.isMetricTallyStreamingEnabled();
+    this.incrementalTotalsEnabled = applicationProperties.isMetricTallyIncrementalTotalsEnabled();
   }
 
   @Transactional
@@ -103,19 +138,33 @@ public class MetricUsageCollector {
     OffsetDateTime newestInstanceTimestamp = OffsetDateTime.MIN;
     for (Host host : accountServiceInventory.getServiceInstances().values()) {
       existingInstances.put(host.getInstanceId(), host);
-      newestInstanceTimestamp =
-          newestInstanceTimestamp.isAfter(host.getLastSeen())
-              ? newestInstanceTimestamp
-              : host.getLastSeen();
+      if (host.getLastSeen() != null && host.getLastSeen().isAfter(newestInstanceTimestamp)) {
+        newestInstanceTimestamp = host.getLastSeen();
+      }
     }
     OffsetDateTime effectiveStartDateTime;
     OffsetDateTime effectiveEndDateTime;
     boolean isRecalculating;
+    boolean isCorrecting = false;
     /*
     We need to recalculate several things if we are re-tallying, namely monthly totals need to be
-    cleared and re-updated for each host record
+    cleared and re-updated for each host record, unless the hourly totals recorded for the range
+    let us correct them by difference
      */
-    if (newestInstanceTimestamp.isAfter(range.getStartDate())) {
+    OffsetDateTime hourlyTotalsStart = accountServiceInventory.getHourlyTotalsStart();
+    if (newestInstanceTimestamp.isAfter(range.getStartDate())
+        && incrementalTotalsEnabled
+        && hourlyTotalsStart != null
+        && !range.getStartDate().isBefore(hourlyTotalsStart)) {
+      effectiveStartDateTime = range.getStartDate();
+      effectiveEndDateTime = range.getEndDate();
+      log.info(
+          "Correcting monthly totals incrementally from hourly totals for [{} : {}]",
+          range.getStartString(),
+          range.getEndString());
+      isRecalculating = true;
+      isCorrecting = true;
+    } else if (newestInstanceTimestamp.isAfter(range.getStartDate())) {
       effectiveStartDateTime = clock.startOfMonth(range.getStartDate());
       effectiveEndDateTime = clock.endOfCurrentHour();
       log.info(
@@ -137,7 +186,7 @@ public class MetricUsageCollector {
       isRecalculating = false;
     }
 
-    if (isRecalculating) {
+    if (isRecalculating && !isCorrecting) {
       log.info("Clearing monthly totals for {} instances", existingInstances.size());
       existingInstances
           .values()
@@ -146,16 +195,43 @@ public class MetricUsageCollector {
                   instance.clearMonthlyTotals(effectiveStartDateTime, effectiveEndDateTime));
     }
 
-    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
-    for (OffsetDateTime offset = effectiveStartDateTime;
-        offset.isBefore(effectiveEndDateTime);
-        offset = offset.plusHours(1)) {
-      AccountUsageCalculation accountUsageCalculation =
-          collectHour(accountServiceInventory, offset);
-      if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
-        accountCalcs.put(offset, accountUsageCalculation);
+    // replaying older hours must not roll back instances that were seen more recently
+    Map<String, Host> latestInstanceStates =
+        isCorrecting ? copyInstanceStates(existingInstances) : null;
+    Map<InstanceHourlyTotalKey, Double> hourlyTotals =
+        incrementalTotalsEnabled ? new HashMap<>() : null;
+
+    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs;
+    if (streamingEnabled) {
+      accountCalcs =
+          collectHoursFromStream(
+              accountServiceInventory, effectiveStartDateTime, effectiveEndDateTime, hourlyTotals);
+    } else {
+      accountCalcs = new HashMap<>();
+      for (OffsetDateTime offset = effectiveStartDateTime;
+          offset.isBefore(effectiveEndDateTime);
+          offset = offset.plusHours(1)) {
+        AccountUsageCalculation accountUsageCalculation =
+            collectHour(accountServiceInventory, offset, hourlyTotals);
+        if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
+          accountCalcs.put(offset, accountUsageCalculation);
+        }
       }
     }
+
+    if (isCorrecting) {
+      restoreLatestInstanceStates(existingInstances, latestInstanceStates);
+    }
+    if (incrementalTotalsEnabled) {
+      updateHourlyTotals(
+          accountServiceInventory,
+          effectiveStartDateTime,
+          effectiveEndDateTime,
+          hourlyTotals,
+          isCorrecting);
+    } else {
+      accountServiceInventory.setHourlyTotalsStart(null);
+    }
     accountCalcs.values().forEach(calc -> calc.setOwner(accountServiceInventory.getOrgId()));
     accountServiceInventoryRepository.save(accountServiceInventory);
 
@@ -166,6 +242,13 @@ public class MetricUsageCollector {
   @Transactional
   public AccountUsageCalculation collectHour(
       AccountServiceInventory accountServiceInventory, OffsetDateTime startDateTime) {
+    return collectHour(accountServiceInventory, startDateTime, null);
+  }
+
+  private AccountUsageCalculation collectHour(
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime startDateTime,
+      Map<InstanceHourlyTotalKey, Double> hourlyTotals) {
     Optional<TagMetaData> serviceTypeMeta =
         tagProfile.getTagMetaDataByServiceType(accountServiceInventory.getServiceType());
     OffsetDateTime endDateTime = startDateTime.plusHours(1);
@@ -193,20 +276,216 @@ public class MetricUsageCollector {
           events.forEach(
               event -> {
                 updateInstanceFromEvent(event, host, serviceTypeMeta);
+                recordHourlyTotals(hourlyTotals, accountServiceInventory, startDateTime, event);
                 if (event.getMeasurements() != null) {
                   event.getMeasurements().stream().map(Measurement::getUom).forEach(seenUoms::add);
                 }
               });
-          // clear any measurements that we don't have events for
-          Set<Uom> staleMeasurements =
-              host.getMeasurements().keySet().stream()
-                  .filter(k -> !seenUoms.contains(k))
-                  .collect(Collectors.toSet());
-          staleMeasurements.forEach(host.getMeasurements()::remove);
+          removeStaleMeasurements(host, seenUoms);
         });
     return tallyCurrentAccountState(accountServiceInventory.getAccountNumber(), thisHoursInstances);
   }
 
+  /**
+   * Collects every hour of the range from a single event stream ordered by timestamp. Each hour is
+   * tallied as soon as the first event of a later hour arrives, so only one hour's instances are
+   * held at a time. The result is the same as calling {@link #collectHour} for each hour.
+   */
+  private Map<OffsetDateTime, AccountUsageCalculation> collectHoursFromStream(
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime startDateTime,
+      OffsetDateTime endDateTime,
+      Map<InstanceHourlyTotalKey, Double> hourlyTotals) {
+    Optional<TagMetaData> serviceTypeMeta =
+        tagProfile.getTagMetaDataByServiceType(accountServiceInventory.getServiceType());
+    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
+    Map<String, Host> thisHoursInstances = new HashMap<>();
+    Map<String, Set<Uom>> thisHoursUoms = new HashMap<>();
+    OffsetDateTime currentHour = null;
+
+    try (Stream<Event> events =
+        eventController.fetchEventsInTimeRangeByServiceType(
+            accountServiceInventory.getAccountNumber(),
+            accountServiceInventory.getServiceType(),
+            startDateTime,
+            endDateTime)) {
+      Iterator<Event> iterator = events.iterator();
+      while (iterator.hasNext()) {
+        Event event = iterator.next();
+        // keep the same hour offsets (and zone offset) as the hour-by-hour loop would use
+        OffsetDateTime hour =
+            startDateTime.plusHours(
+                Duration.between(startDateTime, event.getTimestamp()).toHours());
+        if (!hour.equals(currentHour)) {
+          if (currentHour != null && hour.isBefore(currentHour)) {
+            throw new IllegalStateException("Events must be ordered by timestamp");
+          }
+          completeHour(
+              accountServiceInventory,
+              currentHour,
+              thisHoursInstances,
+              thisHoursUoms,
+              accountCalcs);
+          currentHour = hour;
+        }
+
+        String instanceId = event.getInstanceId();
+        Host host =
+            thisHoursInstances.computeIfAbsent(
+                instanceId,
+                id -> {
+                  Host existing = accountServiceInventory.getServiceInstances().get(id);
+                  Host instance = existing == null ? new Host() : existing;
+                  accountServiceInventory.getServiceInstances().put(id, instance);
+                  return instance;
+                });
+        Set<Uom> seenUoms = thisHoursUoms.computeIfAbsent(instanceId, id -> new HashSet<>());
+        updateInstanceFromEvent(event, host, serviceTypeMeta);
+        recordHourlyTotals(hourlyTotals, accountServiceInventory, currentHour, event);
+        if (event.getMeasurements() != null) {
+          event.getMeasurements().stream().map(Measurement::getUom).forEach(seenUoms::add);
+        }
+      }
+    }
+    completeHour(
+        accountServiceInventory, currentHour, thisHoursInstances, thisHoursUoms, accountCalcs);
+    return accountCalcs;
+  }
+
+  private void completeHour(
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime hour,
+      Map<String, Host> thisHoursInstances,
+      Map<String, Set<Uom>> thisHoursUoms,
+      Map<OffsetDateTime, AccountUsageCalculation> accountCalcs) {
+    if (hour == null) {
+      return;
+    }
+    thisHoursInstances.forEach(
+        (instanceId, host) -> removeStaleMeasurements(host, thisHoursUoms.get(instanceId)));
+    AccountUsageCalculation accountUsageCalculation =
+        tallyCurrentAccountState(accountServiceInventory.getAccountNumber(), thisHoursInstances);
+    if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
+      accountCalcs.put(hour, accountUsageCalculation);
+    }
+    thisHoursInstances.clear();
+    thisHoursUoms.clear();
+  }
+
+  /** Accumulate what the event adds to its instance's monthly totals during the given hour. */
+  private void recordHourlyTotals(
+      Map<InstanceHourlyTotalKey, Double> hourlyTotals,
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime hour,
+      Event event) {
+    if (hourlyTotals == null || event.getMeasurements() == null) {
+      return;
+    }
+    event
+        .getMeasurements()
+        .forEach(
+            measurement ->
+                hourlyTotals.merge(
+                    InstanceHourlyTotalKey.of(
+                        accountServiceInventory.getAccountNumber(),
+                        accountServiceInventory.getServiceType(),
+                        event.getInstanceId(),
+                        hour,
+                        measurement.getUom()),
+                    measurement.getValue(),
+                    Double::sum));
+  }
+
+  /**
+   * Replace the stored hourly totals of the range with the ones just collected. When correcting,
+   * monthly totals already include the new hourly totals, so the previously stored ones are
+   * subtracted.
+   */
+  private void updateHourlyTotals(
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime startDateTime,
+      OffsetDateTime endDateTime,
+      Map<InstanceHourlyTotalKey, Double> hourlyTotals,
+      boolean isCorrecting) {
+    String accountNumber = accountServiceInventory.getAccountNumber();
+    String serviceType = accountServiceInventory.getServiceType();
+    List<InstanceHourlyTotal> staleTotals = new ArrayList<>();
+    for (InstanceHourlyTotal existing :
+        instanceHourlyTotalRepository.findInRange(
+            accountNumber, serviceType, startDateTime, endDateTime)) {
+      InstanceHourlyTotalKey key = existing.getKey().normalized();
+      if (isCorrecting) {
+        Host host = accountServiceInventory.getServiceInstances().get(key.getInstanceId());
+        if (host != null) {
+          host.addToMonthlyTotal(key.getHour(), key.getUom(), -existing.getValue());
+        }
+      }
+      Double value = hourlyTotals.remove(key);
+      if (value == null) {
+        staleTotals.add(existing);
+      } else {
+        existing.setValue(value);
+      }
+    }
+    instanceHourlyTotalRepository.deleteAll(staleTotals);
+    instanceHourlyTotalRepository.saveAll(
+        hourlyTotals.entrySet().stream()
+            .map(entry -> new InstanceHourlyTotal(entry.getKey(), entry.getValue()))
+            .collect(Collectors.toList()));
+
+    OffsetDateTime hourlyTotalsStart = accountServiceInventory.getHourlyTotalsStart();
+    if (hourlyTotalsStart == null || startDateTime.isBefore(hourlyTotalsStart)) {
+      hourlyTotalsStart = startDateTime;
+    }
+    // hourly totals are only needed while late events can still arrive for the month
+    OffsetDateTime retainFrom = clock.startOfCurrentMonth().minusMonths(1);
+    if (hourlyTotalsStart.isBefore(retainFrom)) {
+      instanceHourlyTotalRepository.deleteByKeyAccountNumberAndKeyServiceTypeAndKeyHourBefore(
+          accountNumber, serviceType, retainFrom);
+      hourlyTotalsStart = retainFrom;
+    }
+    accountServiceInventory.setHourlyTotalsStart(hourlyTotalsStart);
+  }
+
+  private Map<String, Host> copyInstanceStates(Map<String, Host> instances) {
+    Map<String, Host> states = new HashMap<>();
+    instances.forEach(
+        (instanceId, instance) -> {
+          Host state = new Host();
+          state.setLastSeen(instance.getLastSeen());
+          state.getMeasurements().putAll(instance.getMeasurements());
+          states.put(instanceId, state);
+        });
+    return states;
+  }
+
+  private void restoreLatestInstanceStates(
+      Map<String, Host> instances, Map<String, Host> latestStates) {
+    latestStates.forEach(
+        (instanceId, state) -> {
+          Host instance = instances.get(instanceId);
+          // an instance never seen before the replayed hours has no newer state to restore
+          if (state.getLastSeen() == null) {
+            return;
+          }
+          if (instance.getLastSeen() == null
+              || instance.getLastSeen().isBefore(state.getLastSeen())) {
+            instance.setLastSeen(state.getLastSeen());
+            removeStaleMeasurements(instance, state.getMeasurements().keySet());
+            state.getMeasurements().forEach(instance::setMeasurement);
+          }
+        });
+  }
+
+  /** Clear any measurements that we don't have events for. */
+  private void removeStaleMeasurements(Host host, Set<Uom> seenUoms) {
+    Set<Uom> staleMeasurements =
+        host.getMeasurements().keySet().stream()
+            .filter(k -> !seenUoms.contains(k))
+            .collect(Collectors.toSet());
+    staleMeasurements.forEach(host.getMeasurements()::remove);
+  }
+
   private AccountUsageCalculation tallyCurrentAccountState(
       String accountNumber, Map<String, Host> thisHoursInstances) {
     if (thisHoursInstances.isEmpty()) {
@@ -20,10 +20,17 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.json.TallySummary;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
@@ -32,8 +39,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
 
 /** Component that produces tally snapshot summary messages given a list of tally snapshots. */
 @Service
@@ -44,6 +53,8 @@ public class SnapshotSummaryProducer {
   private final KafkaTemplate<String, TallySummary> tallySummaryKafkaTemplate;
   private final RetryTemplate kafkaRetryTemplate;
   private final TallySummaryMapper summaryMapper;
+  private final TallySummaryProperties summaryProperties;
+  private final DistributionSummary snapshotsPerMessage;
 
   @Autowired
   protected SnapshotSummaryProducer(
@@ -51,14 +62,24 @@ public class SnapshotSummaryProducer {
           KafkaTemplate<String, TallySummary> tallySummaryKafkaTemplate,
       @Qualifier("tallySummaryKafkaRetryTemplate") RetryTemplate kafkaRetryTemplate,
       @Qualifier("rhMarketplaceTasks") TaskQueueProperties props,
-      TallySummaryMapper summaryMapper) {
+      TallySummaryMapper summaryMapper,
+      TallySummaryProperties summaryProperties,
+      MeterRegistry meterRegistry) {
     this.tallySummaryTopic = props.getTopic();
     this.kafkaRetryTemplate = kafkaRetryTemplate;
     this.tallySummaryKafkaTemplate = tallySummaryKafkaTemplate;
     this.summaryMapper = summaryMapper;
+    this.summaryProperties = summaryProperties;
+    this.snapshotsPerMessage =
+        meterRegistry.summary("rhsm-subscriptions.tally.summary_snapshots_per_message");
   }
 
   public void produceTallySummaryMessages(Map<String, List<TallySnapshot>> newAndUpdatedSnapshots) {
+    if (summaryProperties.isBatchEnabled()) {
+      produceBatchedTallySummaryMessages(newAndUpdatedSnapshots);
+      return;
+    }
+
     AtomicInteger totalTallies = new AtomicInteger();
     newAndUpdatedSnapshots.forEach(
         (account, snapshots) ->
@@ -82,6 +103,77 @@ public class SnapshotSummaryProducer {
     log.info("Produced {} TallySummary messages", totalTallies);
   }
 
+  /**
+   * Packs the snapshots of each account and hour into TallySummary messages of at most {@link
+   * TallySummaryProperties#getMaxSnapshotsPerMessage()} snapshots. All messages are sent before
+   * waiting on any of them, and their completion is checked once for the whole batch.
+   */
+  private void produceBatchedTallySummaryMessages(
+      Map<String, List<TallySnapshot>> newAndUpdatedSnapshots) {
+    int maxSnapshots = Math.max(1, summaryProperties.getMaxSnapshotsPerMessage());
+    List<ListenableFuture<SendResult<String, TallySummary>>> sends = new ArrayList<>();
+    newAndUpdatedSnapshots.forEach(
+        (account, snapshots) ->
+            // NOTE: The orgId should be passed in the same way as the account. When the APIs
+            // are changed to require an orgID, this should be updated to not take the orgId
+            // from the snapshot when they are mapped to a summary.
+            snapshots.stream()
+                .filter(this::hasMeasurements)
+                .collect(
+                    Collectors.groupingBy(
+                        snapshot ->
+                            Arrays.asList(snapshot.getOwnerId(), snapshot.getSnapshotDate()),
+                        LinkedHashMap::new,
+                        Collectors.toList()))
+                .forEach(
+                    (ownerAndHour, hourSnapshots) -> {
+                      for (int i = 0; i < hourSnapshots.size(); i += maxSnapshots) {
+                        List<TallySnapshot> chunk =
+                            hourSnapshots.subList(
+                                i, Math.min(i + maxSnapshots, hourSnapshots.size()));
+                        TallySummary summary =
+                            summaryMapper.mapSnapshots(
+                                account, chunk.get(0).getOwnerId(), List.copyOf(chunk));
+                        sends.add(
+                            kafkaRetryTemplate.execute(
+                                ctx -> tallySummaryKafkaTemplate.send(tallySummaryTopic, summary)));
+                        snapshotsPerMessage.record(chunk.size());
+                      }
+                    }));
+
+    long failed = sends.stream().filter(send -> !isSent(send)).count();
+    if (failed > 0) {
+      log.error("Failed to send {} of {} TallySummary messages", failed, sends.size());
+    }
+    log.info("Produced {} TallySummary messages", sends.size() - failed);
+  }
+
+  private boolean isSent(ListenableFuture<SendResult<String, TallySummary>> send) {
+    try {
+      send.get();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while waiting for a TallySummary message to be sent", e);
+      return false;
+    } catch (ExecutionException e) {
+      log.error("Unable to send TallySummary message", e.getCause());
+      return false;
+    }
+  }
+
+  private boolean hasMeasurements(TallySnapshot snapshot) {
+    // RH Marketplace requires at least one measurement be included in the Event
+    if (snapshot.getTallyMeasurements().isEmpty()) {
+      log.warn(
+          "Tally snapshot did not have measurements. "
+              + "No usage will be sent to RH marketplace for this snapshot.\n{}",
+          snapshot);
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Validates a TallySummary to make sure that it has all the information required by the RH
    * marketplace API. Any issues will be logged.
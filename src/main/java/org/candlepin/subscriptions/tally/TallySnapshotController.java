@@ -21,11 +21,16 @@
 package org.candlepin.subscriptions.tally;
 
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.OffsetDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountConfigRepository;
@@ -51,6 +56,8 @@ import org.springframework.util.StringUtils;
 public class TallySnapshotController {
 
   private static final Logger log = LoggerFactory.getLogger(TallySnapshotController.class);
+  private static final String SERVICE_TYPE_TIMER =
+      "rhsm-subscriptions.snapshots.single.hourly.service_type";
 
   private final ApplicationProperties props;
   private final AccountConfigRepository accountRepo;
@@ -64,6 +71,8 @@ public class TallySnapshotController {
   private final Set<String> applicableProducts;
   private final TagProfile tagProfile;
   private final SnapshotSummaryProducer summaryProducer;
+  private final ExecutorService hourlyTallyExecutor;
+  private final MeterRegistry meterRegistry;
 
   @Autowired
   public TallySnapshotController(
@@ -78,7 +87,9 @@ public class TallySnapshotController {
       MetricUsageCollector metricUsageCollector,
       CombiningRollupSnapshotStrategy combiningRollupSnapshotStrategy,
       TagProfile tagProfile,
-      SnapshotSummaryProducer summaryProducer) {
+      SnapshotSummaryProducer summaryProducer,
+      @Qualifier("hourlyTallyExecutor") ExecutorService hourlyTallyExecutor,
+      MeterRegistry meterRegistry) {
 
     this.props = props;
     this.accountRepo = accountRepo;
@@ -92,6 +103,8 @@ public class TallySnapshotController {
     this.combiningRollupSnapshotStrategy = combiningRollupSnapshotStrategy;
     this.tagProfile = tagProfile;
     this.summaryProducer = summaryProducer;
+    this.hourlyTallyExecutor = hourlyTallyExecutor;
+    this.meterRegistry = meterRegistry;
   }
 
   @Timed("rhsm-subscriptions.snapshots.single")
@@ -139,49 +152,79 @@ public class TallySnapshotController {
   @Transactional(propagation = Propagation.NEVER)
   @Timed("rhsm-subscriptions.snapshots.single.hourly")
   public void produceHourlySnapshotsForAccount(String accountNumber, DateRange snapshotRange) {
-    tagProfile
-        .getServiceTypes()
-        .forEach(
-            serviceType -> {
-              log.info(
-                  "Producing hourly snapshots for account {} for service type {} "
-                      + "between startDateTime {} and endDateTime {}",
-                  accountNumber,
-                  serviceType,
-                  snapshotRange.getStartString(),
-                  snapshotRange.getEndString());
-              try {
-                var result =
-                    retryTemplate.execute(
-                        context ->
-                            metricUsageCollector.collect(
-                                serviceType, accountNumber, snapshotRange));
-                if (result == null) {
-                  return;
-                }
-
-                var applicableUsageCalculations =
-                    result.getCalculations().entrySet().stream()
-                        .filter(this::isCombiningRollupStrategySupported)
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-                Map<String, List<TallySnapshot>> totalSnapshots =
-                    combiningRollupSnapshotStrategy.produceSnapshotsFromCalculations(
-                        accountNumber,
-                        result.getRange(),
-                        tagProfile.getTagsForServiceType(serviceType),
-                        applicableUsageCalculations,
-                        Granularity.HOURLY,
-                        Double::sum);
-
-                summaryProducer.produceTallySummaryMessages(totalSnapshots);
-                log.info("Finished producing hourly snapshots for account: {}", accountNumber);
-              } catch (Exception e) {
-                log.error(
-                    "Could not collect metrics and/or produce snapshots for account {}",
-                    accountNumber,
-                    e);
-              }
-            });
+    Set<String> serviceTypes = tagProfile.getServiceTypes();
+    if (props.getHourlyTallyServiceTypeParallelism() <= 1 || serviceTypes.size() <= 1) {
+      serviceTypes.forEach(
+          serviceType ->
+              produceHourlySnapshotsForServiceType(accountNumber, serviceType, snapshotRange));
+      return;
+    }
+
+    // Service types share no state, so each one is tallied on its own thread, within its own
+    // transactions. A failure for one service type does not affect the others.
+    List<Future<?>> pending =
+        serviceTypes.stream()
+            .map(
+                serviceType ->
+                    hourlyTallyExecutor.submit(
+                        () ->
+                            produceHourlySnapshotsForServiceType(
+                                accountNumber, serviceType, snapshotRange)))
+            .collect(Collectors.toList());
+    pending.forEach(future -> awaitServiceType(accountNumber, future));
+  }
+
+  private void produceHourlySnapshotsForServiceType(
+      String accountNumber, String serviceType, DateRange snapshotRange) {
+    log.info(
+        "Producing hourly snapshots for account {} for service type {} "
+            + "between startDateTime {} and endDateTime {}",
+        accountNumber,
+        serviceType,
+        snapshotRange.getStartString(),
+        snapshotRange.getEndString());
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      var result =
+          retryTemplate.execute(
+              context -> metricUsageCollector.collect(serviceType, accountNumber, snapshotRange));
+      if (result == null) {
+        return;
+      }
+
+      var applicableUsageCalculations =
+          result.getCalculations().entrySet().stream()
+              .filter(this::isCombiningRollupStrategySupported)
+              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+      Map<String, List<TallySnapshot>> totalSnapshots =
+          combiningRollupSnapshotStrategy.produceSnapshotsFromCalculations(
+              accountNumber,
+              result.getRange(),
+              tagProfile.getTagsForServiceType(serviceType),
+              applicableUsageCalculations,
+              Granularity.HOURLY,
+              Double::sum);
+
+      summaryProducer.produceTallySummaryMessages(totalSnapshots);
+      log.info("Finished producing hourly snapshots for account: {}", accountNumber);
+    } catch (Exception e) {
+      log.error(
+          "Could not collect metrics and/or produce snapshots for account {}", accountNumber, e);
+    } finally {
+      sample.stop(meterRegistry.timer(SERVICE_TYPE_TIMER, "service_type", serviceType));
+    }
+  }
+
+  private void awaitServiceType(String accountNumber, Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while producing hourly snapshots for account {}", accountNumber, e);
+    } catch (ExecutionException e) {
+      log.error(
+          "Could not produce hourly snapshots for account {}", accountNumber, e.getCause());
+    }
   }
 
   private void attemptCloudigradeEnrichment(
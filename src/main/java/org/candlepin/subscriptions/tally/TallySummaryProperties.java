@@ -37,4 +37,13 @@ public class TallySummaryProperties {
 
   /** Retry exponential backoff multiplier. */
   private Double backOffMultiplier;
+
+  /**
+   * Pack all snapshots for an account and hour into as few TallySummary messages as possible,
+   * instead of sending one message per snapshot.
+   */
+  private boolean batchEnabled;
+
+  /** The maximum number of snapshots packed into a single TallySummary message. */
+  private int maxSnapshotsPerMessage = 100;
 }
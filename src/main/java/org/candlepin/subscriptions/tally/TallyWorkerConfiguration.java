@@ -26,9 +26,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.cloudigrade.CloudigradeClientConfiguration;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
+import org.candlepin.subscriptions.db.InstanceHourlyTotalRepository;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.inventory.db.InventoryDataSourceConfiguration;
 import org.candlepin.subscriptions.jmx.JmxBeansConfiguration;
@@ -59,6 +62,7 @@ import org.springframework.retry.backoff.FixedBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.retry.support.RetryTemplateBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Configuration for the "worker" profile.
@@ -92,6 +96,20 @@ public class TallyWorkerConfiguration {
     return new FactNormalizer(applicationProperties, tagProfile, clock);
   }
 
+  @Bean(name = "hbiTallyExecutor", destroyMethod = "shutdown")
+  public ExecutorService hbiTallyExecutor(ApplicationProperties applicationProperties) {
+    return Executors.newFixedThreadPool(
+        Math.max(1, applicationProperties.getHbiTallyParallelism()),
+        new CustomizableThreadFactory("hbi-tally-"));
+  }
+
+  @Bean(name = "hourlyTallyExecutor", destroyMethod = "shutdown")
+  public ExecutorService hourlyTallyExecutor(ApplicationProperties applicationProperties) {
+    return Executors.newFixedThreadPool(
+        Math.max(1, applicationProperties.getHourlyTallyServiceTypeParallelism()),
+        new CustomizableThreadFactory("hourly-tally-"));
+  }
+
   @Bean(name = "collectorRetryTemplate")
   public RetryTemplate collectorRetryTemplate() {
     SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy();
@@ -163,10 +181,17 @@ public class TallyWorkerConfiguration {
   public MetricUsageCollector metricUsageCollector(
       TagProfile tagProfile,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
+      InstanceHourlyTotalRepository instanceHourlyTotalRepository,
       EventController eventController,
-      ApplicationClock clock) {
+      ApplicationClock clock,
+      ApplicationProperties applicationProperties) {
     return new MetricUsageCollector(
-        tagProfile, accountServiceInventoryRepository, eventController, clock);
+        tagProfile,
+        accountServiceInventoryRepository,
+        instanceHourlyTotalRepository,
+        eventController,
+        clock,
+        applicationProperties);
   }
 
   @Bean
@@ -0,0 +1,120 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+
+/**
+ * A dense index over every {@link UsageCalculation.Key} that can be produced for a fixed set of
+ * products when no billing account is involved, i.e. (product x sla x usage x billingProvider).
+ *
+ * <p>Keys are created once, up front, so that tallying a host resolves each of its calculations by
+ * array index rather than by allocating and hashing a new key.
+ */
+public class UsageKeySpace {
+  public static final String ANY_BILLING_ACCOUNT_ID = "_ANY";
+
+  private static final ServiceLevel[] SLAS = ServiceLevel.values();
+  private static final Usage[] USAGES = Usage.values();
+  private static final BillingProvider[] BILLING_PROVIDERS = BillingProvider.values();
+
+  private final List<String> products;
+  private final Map<String, Integer> productOrdinals;
+  private final UsageCalculation.Key[] keys;
+
+  public UsageKeySpace(Collection<String> products) {
+    this.products = Collections.unmodifiableList(new ArrayList<>(products));
+    this.productOrdinals = new HashMap<>();
+    for (int i = 0; i < this.products.size(); i++) {
+      productOrdinals.put(this.products.get(i), i);
+    }
+    this.keys = new UsageCalculation.Key[this.products.size() * slotsPerProduct()];
+    for (int ordinal = 0; ordinal < this.products.size(); ordinal++) {
+      for (ServiceLevel sla : SLAS) {
+        for (Usage usage : USAGES) {
+          for (BillingProvider billingProvider : BILLING_PROVIDERS) {
+            keys[indexOf(ordinal, sla, usage, billingProvider)] =
+                new UsageCalculation.Key(
+                    this.products.get(ordinal),
+                    sla,
+                    usage,
+                    billingProvider,
+                    ANY_BILLING_ACCOUNT_ID);
+          }
+        }
+      }
+    }
+  }
+
+  private static int slotsPerProduct() {
+    return SLAS.length * USAGES.length * BILLING_PROVIDERS.length;
+  }
+
+  /** @return true if this key space indexes exactly the given products. */
+  public boolean covers(Collection<String> productIds) {
+    return products.size() == productIds.size() && productOrdinals.keySet().containsAll(productIds);
+  }
+
+  public List<String> getProducts() {
+    return products;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  public int indexOf(
+      int productOrdinal, ServiceLevel sla, Usage usage, BillingProvider billingProvider) {
+    return ((productOrdinal * SLAS.length + sla.ordinal()) * USAGES.length + usage.ordinal())
+            * BILLING_PROVIDERS.length
+        + billingProvider.ordinal();
+  }
+
+  /**
+   * Find the index of the given key.
+   *
+   * @param key the key to look up
+   * @return the key's index, or -1 if the key is for an unknown product or a specific billing
+   *     account, and so falls outside of this key space.
+   */
+  public int indexOf(UsageCalculation.Key key) {
+    if (!ANY_BILLING_ACCOUNT_ID.equals(key.getBillingAccountId())) {
+      return -1;
+    }
+    Integer ordinal = productOrdinals.get(key.getProductId());
+    if (ordinal == null) {
+      return -1;
+    }
+    return indexOf(ordinal, key.getSla(), key.getUsage(), key.getBillingProvider());
+  }
+
+  public UsageCalculation.Key getKey(int index) {
+    return keys[index];
+  }
+}
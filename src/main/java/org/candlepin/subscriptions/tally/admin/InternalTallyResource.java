@@ -31,6 +31,7 @@ import org.candlepin.subscriptions.tally.admin.api.InternalApi;
 import org.candlepin.subscriptions.tally.admin.api.model.TallyResend;
 import org.candlepin.subscriptions.tally.admin.api.model.TallyResendData;
 import org.candlepin.subscriptions.tally.admin.api.model.UuidList;
+import org.candlepin.subscriptions.tally.billing.BillableUsageTotalController;
 import org.candlepin.subscriptions.tally.billing.RemittanceController;
 import org.candlepin.subscriptions.tally.job.CaptureSnapshotsTaskManager;
 import org.candlepin.subscriptions.util.ApplicationClock;
@@ -46,6 +47,7 @@ public class InternalTallyResource implements InternalApi {
   private final ApplicationProperties applicationProperties;
   private final MarketplaceResendTallyController resendTallyController;
   private final RemittanceController remittanceController;
+  private final BillableUsageTotalController billableUsageTotalController;
   private final TallySnapshotController tallySnapshotController;
   private final CaptureSnapshotsTaskManager snapshotsTaskManager;
 
@@ -54,12 +56,14 @@ public class InternalTallyResource implements InternalApi {
       ApplicationProperties applicationProperties,
       MarketplaceResendTallyController resendTallyController,
       RemittanceController remittanceController,
+      BillableUsageTotalController billableUsageTotalController,
       TallySnapshotController tallySnapshotController,
       CaptureSnapshotsTaskManager snapshotsTaskManager) {
     this.clock = clock;
     this.applicationProperties = applicationProperties;
     this.resendTallyController = resendTallyController;
     this.remittanceController = remittanceController;
+    this.billableUsageTotalController = billableUsageTotalController;
     this.tallySnapshotController = tallySnapshotController;
     this.snapshotsTaskManager = snapshotsTaskManager;
   }
@@ -99,4 +103,9 @@ public class InternalTallyResource implements InternalApi {
   public void syncRemittance() {
     remittanceController.syncRemittance();
   }
+
+  @Override
+  public void reconcileBillableUsageTotals() {
+    billableUsageTotalController.reconcileTotals();
+  }
 }
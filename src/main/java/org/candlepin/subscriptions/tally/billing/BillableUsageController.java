@@ -21,17 +21,32 @@
 package org.candlepin.subscriptions.tally.billing;
 
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.db.BillableUsageRemittanceRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.BillableUsageRemittanceEntity;
 import org.candlepin.subscriptions.db.model.BillableUsageRemittanceEntityPK;
+import org.candlepin.subscriptions.db.model.BillableUsageTotal;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyMeasurementTotalView;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.json.Measurement.Uom;
@@ -48,16 +63,19 @@ public class BillableUsageController {
   private final BillingProducer billingProducer;
   private final BillableUsageRemittanceRepository billableUsageRemittanceRepository;
   private final TallySnapshotRepository snapshotRepository;
+  private final BillableUsageTotalController billableUsageTotalController;
 
   public BillableUsageController(
       ApplicationClock clock,
       BillingProducer billingProducer,
       BillableUsageRemittanceRepository billableUsageRemittanceRepository,
-      TallySnapshotRepository snapshotRepository) {
+      TallySnapshotRepository snapshotRepository,
+      BillableUsageTotalController billableUsageTotalController) {
     this.clock = clock;
     this.billingProducer = billingProducer;
     this.billableUsageRemittanceRepository = billableUsageRemittanceRepository;
     this.snapshotRepository = snapshotRepository;
+    this.billableUsageTotalController = billableUsageTotalController;
   }
 
   public void submitBillableUsage(BillingWindow billingWindow, BillableUsage usage) {
@@ -66,6 +84,33 @@ public class BillableUsageController {
     billingProducer.produce(processBillableUsage(billingWindow, usage));
   }
 
+  /**
+   * Submits a batch of billable usage that share the same billing window.
+   *
+   * <p>Monthly usage is resolved in bulk: the current remittances for the whole batch are loaded
+   * with one query, measured totals without a current running total are summed with one grouped
+   * query per metric, and the updated remittances are saved together before any usage is sent.
+   *
+   * @param billingWindow the billing window of every usage in the batch
+   * @param usages the billable usage to submit, in the order they should be sent
+   */
+  public void submitBillableUsages(BillingWindow billingWindow, List<BillableUsage> usages) {
+    List<BillableUsage> toBill;
+    switch (billingWindow) {
+      case HOURLY:
+        toBill = usages.stream().map(this::produceHourlyBillable).collect(Collectors.toList());
+        break;
+      case MONTHLY:
+        toBill = produceMonthlyBillables(usages);
+        break;
+      default:
+        throw new UnsupportedOperationException(
+            "Unsupported billing window specified when producing billable usage: " + billingWindow);
+    }
+    // Send the messages last to ensure that remittance has been updated.
+    toBill.forEach(billingProducer::produce);
+  }
+
   public BillableUsage processBillableUsage(BillingWindow billingWindow, BillableUsage usage) {
     BillableUsage toBill;
     switch (billingWindow) {
@@ -115,9 +160,7 @@ public class BillableUsageController {
 
   private BillableUsage produceMonthlyBillable(BillableUsage usage) {
     log.debug("Processing monthly billable usage {}", usage);
-    Double currentMonthlyTotal =
-        getCurrentlyMeasuredTotal(
-            usage, clock.startOfMonth(usage.getSnapshotDate()), usage.getSnapshotDate());
+    Double currentMonthlyTotal = getCurrentMonthlyTotal(usage);
     BillableUsageRemittanceEntity remittance = getLatestRemittance(usage);
     BillableUsageCalculation usageCalc =
         calculateBillableUsage(currentMonthlyTotal, remittance.getRemittedValue());
@@ -141,6 +184,132 @@ public class BillableUsageController {
     return usage;
   }
 
+  private List<BillableUsage> produceMonthlyBillables(List<BillableUsage> usages) {
+    log.debug("Processing {} monthly billable usages", usages.size());
+    Map<BillableUsageRemittanceEntityPK, BillableUsageRemittanceEntity> remittances =
+        getLatestRemittances(usages);
+    Map<BillableUsageRemittanceEntityPK, BillableUsageTotal> runningTotals =
+        billableUsageTotalController.isEnabled()
+            ? billableUsageTotalController.findTotals(remittances.keySet())
+            : Map.of();
+    List<BillableUsage> usagesToSum =
+        usages.stream()
+            .filter(usage -> getCurrentRunningTotal(runningTotals, usage).isEmpty())
+            .collect(Collectors.toList());
+    Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> hourlyTotals =
+        usagesToSum.isEmpty() ? Map.of() : getHourlyMeasuredTotals(usagesToSum);
+
+    Set<BillableUsageRemittanceEntityPK> updatedKeys = new LinkedHashSet<>();
+    for (BillableUsage usage : usages) {
+      double currentMonthlyTotal =
+          getCurrentRunningTotal(runningTotals, usage)
+              .orElseGet(() -> sumHourlyTotals(hourlyTotals, usage));
+      // Usages sharing a remittance share the entity, so each one sees the previous remittance.
+      BillableUsageRemittanceEntity remittance =
+          remittances.get(BillableUsageRemittanceEntityPK.keyFrom(usage));
+      BillableUsageCalculation usageCalc =
+          calculateBillableUsage(currentMonthlyTotal, remittance.getRemittedValue());
+
+      log.debug(
+          "Processing monthly billable usage: Usage: {}, Current total: {}, Current remittance: {}, New billable: {}",
+          usage,
+          currentMonthlyTotal,
+          remittance,
+          usageCalc);
+
+      usage.setValue(usageCalc.getBillableValue());
+      if (updateRemittance(remittance, usage.getOrgId(), usageCalc)) {
+        updatedKeys.add(remittance.getKey());
+      }
+    }
+
+    if (!updatedKeys.isEmpty()) {
+      log.debug("Updating {} remittances", updatedKeys.size());
+      billableUsageRemittanceRepository.saveAll(
+          updatedKeys.stream().map(remittances::get).collect(Collectors.toList()));
+    }
+    return usages;
+  }
+
+  private double sumHourlyTotals(
+      Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> hourlyTotals,
+      BillableUsage usage) {
+    return hourlyTotals
+        .getOrDefault(MeasuredTotalKey.from(usage), Collections.emptyNavigableMap())
+        .subMap(clock.startOfMonth(usage.getSnapshotDate()), true, usage.getSnapshotDate(), true)
+        .values()
+        .stream()
+        .mapToDouble(Double::doubleValue)
+        .sum();
+  }
+
+  private Optional<Double> getCurrentRunningTotal(
+      Map<BillableUsageRemittanceEntityPK, BillableUsageTotal> runningTotals, BillableUsage usage) {
+    return Optional.ofNullable(runningTotals.get(BillableUsageRemittanceEntityPK.keyFrom(usage)))
+        .filter(total -> BillableUsageTotalController.isCurrentAsOf(total, usage.getSnapshotDate()))
+        .map(BillableUsageTotal::getTotalValue);
+  }
+
+  private Map<BillableUsageRemittanceEntityPK, BillableUsageRemittanceEntity> getLatestRemittances(
+      List<BillableUsage> usages) {
+    Set<BillableUsageRemittanceEntityPK> keys =
+        usages.stream()
+            .map(BillableUsageRemittanceEntityPK::keyFrom)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    Map<BillableUsageRemittanceEntityPK, BillableUsageRemittanceEntity> remittances =
+        billableUsageRemittanceRepository.findAllById(keys).stream()
+            .collect(Collectors.toMap(BillableUsageRemittanceEntity::getKey, Function.identity()));
+    keys.forEach(
+        key ->
+            remittances.computeIfAbsent(
+                key,
+                k -> BillableUsageRemittanceEntity.builder().key(k).remittedValue(0.0).build()));
+    return remittances;
+  }
+
+  private Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> getHourlyMeasuredTotals(
+      List<BillableUsage> usages) {
+    Map<MeasuredTotalKey, NavigableMap<OffsetDateTime, Double>> hourlyTotals = new HashMap<>();
+    Map<Uom, List<BillableUsage>> usagesByUom =
+        usages.stream().collect(Collectors.groupingBy(u -> Uom.fromValue(u.getUom().value())));
+    usagesByUom.forEach(
+        (uom, uomUsages) -> {
+          OffsetDateTime beginning =
+              uomUsages.stream()
+                  .map(u -> clock.startOfMonth(u.getSnapshotDate()))
+                  .min(Comparator.naturalOrder())
+                  .orElseThrow();
+          OffsetDateTime ending =
+              uomUsages.stream()
+                  .map(BillableUsage::getSnapshotDate)
+                  .max(Comparator.naturalOrder())
+                  .orElseThrow();
+          // NOTE: We are filtering billable usage to PHYSICAL hardware as that's the only
+          //       hardware type set when metering.
+          snapshotRepository
+              .sumMeasurementValuesBySnapshotDate(
+                  distinct(uomUsages, BillableUsage::getAccountNumber),
+                  distinct(uomUsages, BillableUsage::getProductId),
+                  distinct(uomUsages, BillableUsage::getBillingAccountId),
+                  // Billable usage has already been filtered to HOURLY only.
+                  Granularity.HOURLY,
+                  beginning,
+                  ending,
+                  new TallyMeasurementKey(HardwareMeasurementType.PHYSICAL, uom))
+              .forEach(
+                  total ->
+                      hourlyTotals
+                          .computeIfAbsent(MeasuredTotalKey.from(total, uom), k -> new TreeMap<>())
+                          .merge(total.getSnapshotDate(), total.getTotal(), Double::sum));
+        });
+    return hourlyTotals;
+  }
+
+  private static Set<String> distinct(
+      List<BillableUsage> usages, Function<BillableUsage, String> field) {
+    return usages.stream().map(field).filter(Objects::nonNull).collect(Collectors.toSet());
+  }
+
   private boolean updateRemittance(
       BillableUsageRemittanceEntity remittance, String orgId, BillableUsageCalculation usageCalc) {
     boolean updated = false;
@@ -160,6 +329,17 @@ public class BillableUsageController {
     return updated;
   }
 
+  private Double getCurrentMonthlyTotal(BillableUsage usage) {
+    if (billableUsageTotalController.isEnabled()) {
+      Optional<Double> runningTotal = billableUsageTotalController.getMonthToDateTotal(usage);
+      if (runningTotal.isPresent()) {
+        return runningTotal.get();
+      }
+    }
+    return getCurrentlyMeasuredTotal(
+        usage, clock.startOfMonth(usage.getSnapshotDate()), usage.getSnapshotDate());
+  }
+
   private Double getCurrentlyMeasuredTotal(
       BillableUsage usage, OffsetDateTime beginning, OffsetDateTime ending) {
     // NOTE: We are filtering billable usage to PHYSICAL hardware as that's the only
@@ -180,4 +360,38 @@ public class BillableUsageController {
         ending,
         measurementKey);
   }
+
+  /** Identifies the snapshot bucket and metric that a monthly billable usage is measured from. */
+  @Value
+  private static class MeasuredTotalKey {
+    String accountNumber;
+    String productId;
+    ServiceLevel serviceLevel;
+    Usage usage;
+    BillingProvider billingProvider;
+    String billingAccountId;
+    Uom uom;
+
+    static MeasuredTotalKey from(BillableUsage usage) {
+      return new MeasuredTotalKey(
+          usage.getAccountNumber(),
+          usage.getProductId(),
+          ServiceLevel.fromString(usage.getSla().value()),
+          Usage.fromString(usage.getUsage().value()),
+          BillingProvider.fromString(usage.getBillingProvider().value()),
+          usage.getBillingAccountId(),
+          Uom.fromValue(usage.getUom().value()));
+    }
+
+    static MeasuredTotalKey from(TallyMeasurementTotalView total, Uom uom) {
+      return new MeasuredTotalKey(
+          total.getAccountNumber(),
+          total.getProductId(),
+          total.getServiceLevel(),
+          total.getUsage(),
+          total.getBillingProvider(),
+          total.getBillingAccountId(),
+          uom);
+    }
+  }
 }
@@ -0,0 +1,397 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.billing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.BillableUsageTotalRepository;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.BillableUsageRemittanceEntityPK;
+import org.candlepin.subscriptions.db.model.BillableUsageTotal;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyMeasurementTotalView;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.BillableUsage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains the running month-to-date totals that monthly billable usage is measured against.
+ *
+ * <p>Totals are updated by difference whenever hourly snapshots are written, so that monthly
+ * billing can read the total of a remittance key directly instead of summing every hourly snapshot
+ * since the start of the month.
+ */
+@Slf4j
+@Component
+public class BillableUsageTotalController {
+
+  // Running totals are adjusted many times a month, so they are rounded to keep floating point
+  // drift from tipping a ceil() into billing an extra unit.
+  private static final int TOTAL_SCALE = 9;
+  private static final double RECONCILIATION_TOLERANCE = 1e-6;
+
+  private final ApplicationClock clock;
+  private final BillableUsageTotalRepository totalRepository;
+  private final TallySnapshotRepository snapshotRepository;
+  private final boolean enabled;
+
+  public BillableUsageTotalController(
+      ApplicationClock clock,
+      BillableUsageTotalRepository totalRepository,
+      TallySnapshotRepository snapshotRepository,
+      ApplicationProperties applicationProperties) {
+    this.clock = clock;
+    this.totalRepository = totalRepository;
+    this.snapshotRepository = snapshotRepository;
+    this.enabled = applicationProperties.isBillableUsageRunningTotalsEnabled();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Applies changes to hourly snapshots to the running totals of their remittance keys.
+   *
+   * <p>Must be called after the snapshots have been saved, in the same transaction. A key that has
+   * no running total yet is seeded from the saved snapshots of its whole month.
+   *
+   * @param changes the hourly snapshots written, along with their measurements before the write
+   */
+  public void recordHourlyChanges(List<HourlyChange> changes) {
+    Map<BillableUsageRemittanceEntityPK, Double> deltas = new HashMap<>();
+    Map<BillableUsageRemittanceEntityPK, OffsetDateTime> latestDates = new HashMap<>();
+    changes.stream()
+        .filter(change -> isBillable(change.getSnapshot()))
+        .forEach(change -> collectDeltas(change, deltas, latestDates));
+    if (deltas.isEmpty()) {
+      return;
+    }
+
+    Map<BillableUsageRemittanceEntityPK, BillableUsageTotal> totals = findTotals(deltas.keySet());
+    Set<BillableUsageRemittanceEntityPK> missingKeys = new HashSet<>(deltas.keySet());
+    missingKeys.removeAll(totals.keySet());
+    for (BillableUsageTotal total : totals.values()) {
+      total.setTotalValue(round(total.getTotalValue() + deltas.get(total.getKey())));
+      total.setLatestSnapshotDate(
+          latest(total.getLatestSnapshotDate(), latestDates.get(total.getKey())));
+    }
+    // Seeded totals are summed from the saved snapshots, so the deltas are already included.
+    seedTotals(missingKeys, latestDates).forEach(total -> totals.put(total.getKey(), total));
+
+    log.debug("Updating {} billable usage running totals", totals.size());
+    totalRepository.saveAll(totals.values());
+  }
+
+  private void collectDeltas(
+      HourlyChange change,
+      Map<BillableUsageRemittanceEntityPK, Double> deltas,
+      Map<BillableUsageRemittanceEntityPK, OffsetDateTime> latestDates) {
+    TallySnapshot snapshot = change.getSnapshot();
+    Map<Uom, Double> previous = physicalMeasurements(change.getPreviousMeasurements());
+    Map<Uom, Double> current = physicalMeasurements(snapshot.getTallyMeasurements());
+    Set<Uom> uoms = new HashSet<>(previous.keySet());
+    uoms.addAll(current.keySet());
+    for (Uom uom : uoms) {
+      double delta = current.getOrDefault(uom, 0.0) - previous.getOrDefault(uom, 0.0);
+      if (delta != 0.0) {
+        BillableUsageRemittanceEntityPK key = keyFrom(snapshot, uom);
+        deltas.merge(key, delta, Double::sum);
+        latestDates.merge(key, snapshot.getSnapshotDate(), BillableUsageTotalController::latest);
+      }
+    }
+  }
+
+  /**
+   * Looks up the running totals for the given remittance keys.
+   *
+   * @param keys the remittance keys to look up
+   * @return the running totals found, by remittance key
+   */
+  public Map<BillableUsageRemittanceEntityPK, BillableUsageTotal> findTotals(
+      Collection<BillableUsageRemittanceEntityPK> keys) {
+    return totalRepository.findAllById(keys).stream()
+        .collect(Collectors.toMap(BillableUsageTotal::getKey, Function.identity()));
+  }
+
+  /**
+   * Checks whether a running total is the month-to-date total as of the given snapshot date, i.e.
+   * no later hour has contributed to it yet.
+   */
+  public static boolean isCurrentAsOf(BillableUsageTotal total, OffsetDateTime snapshotDate) {
+    return !snapshotDate.isBefore(total.getLatestSnapshotDate());
+  }
+
+  /**
+   * Gets the month-to-date total for a billable usage from its running total.
+   *
+   * <p>When later hours have already contributed to the running total, only those hours are summed
+   * and taken back out.
+   *
+   * @param usage the monthly billable usage
+   * @return the month-to-date total as of the usage's snapshot date, or empty if there is no
+   *     running total for its remittance key
+   */
+  public Optional<Double> getMonthToDateTotal(BillableUsage usage) {
+    return totalRepository
+        .findById(BillableUsageRemittanceEntityPK.keyFrom(usage))
+        .map(
+            total -> {
+              if (isCurrentAsOf(total, usage.getSnapshotDate())) {
+                return total.getTotalValue();
+              }
+              double laterTotal =
+                  sumMeasurementValues(
+                      total.getKey(),
+                      usage.getSnapshotDate().plusHours(1),
+                      total.getLatestSnapshotDate());
+              return round(total.getTotalValue() - laterTotal);
+            });
+  }
+
+  /**
+   * Verifies the running totals of the current and previous month against the raw sum of their
+   * hourly snapshots, correcting any that have drifted. Totals for older months are removed.
+   *
+   * @return the number of running totals that were corrected
+   */
+  @Transactional
+  public int reconcileTotals() {
+    OffsetDateTime startOfPreviousMonth = clock.startOfCurrentMonth().minusMonths(1);
+    totalRepository.deleteByKeyAccumulationPeriodLessThan(
+        BillableUsageRemittanceEntityPK.getAccumulationPeriod(startOfPreviousMonth));
+
+    int corrected = 0;
+    for (OffsetDateTime month : List.of(startOfPreviousMonth, clock.startOfCurrentMonth())) {
+      try (Stream<BillableUsageTotal> totals =
+          totalRepository.findByKeyAccumulationPeriod(
+              BillableUsageRemittanceEntityPK.getAccumulationPeriod(month))) {
+        corrected += totals.mapToInt(total -> reconcile(total, month) ? 1 : 0).sum();
+      }
+    }
+    log.info("Reconciled billable usage running totals; {} corrected.", corrected);
+    return corrected;
+  }
+
+  private boolean reconcile(BillableUsageTotal total, OffsetDateTime startOfMonth) {
+    OffsetDateTime endOfMonth = clock.endOfMonth(startOfMonth);
+    double expected = round(sumMeasurementValues(total.getKey(), startOfMonth, endOfMonth));
+    if (Math.abs(expected - total.getTotalValue()) <= RECONCILIATION_TOLERANCE) {
+      return false;
+    }
+    log.warn(
+        "Billable usage running total {} was {} but hourly snapshots sum to {}; correcting.",
+        total.getKey(),
+        total.getTotalValue(),
+        expected);
+    total.setTotalValue(expected);
+    // The hours that were missed are unknown, so assume any hour of the month so far contributed.
+    total.setLatestSnapshotDate(
+        latest(total.getLatestSnapshotDate(), earliest(clock.now(), endOfMonth)));
+    return true;
+  }
+
+  private List<BillableUsageTotal> seedTotals(
+      Set<BillableUsageRemittanceEntityPK> keys,
+      Map<BillableUsageRemittanceEntityPK, OffsetDateTime> latestDates) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    Map<BillableUsageRemittanceEntityPK, BillableUsageTotal> seeded = new HashMap<>();
+    keys.forEach(
+        key ->
+            seeded.put(
+                key,
+                BillableUsageTotal.builder()
+                    .key(key)
+                    .totalValue(0.0)
+                    .latestSnapshotDate(latestDates.get(key))
+                    .build()));
+
+    Map<String, List<BillableUsageRemittanceEntityPK>> keysByMetric =
+        keys.stream().collect(Collectors.groupingBy(BillableUsageRemittanceEntityPK::getMetricId));
+    keysByMetric.forEach(
+        (metricId, metricKeys) -> {
+          Uom uom = Uom.fromValue(metricId);
+          OffsetDateTime beginning =
+              metricKeys.stream()
+                  .map(key -> clock.startOfMonth(latestDates.get(key)))
+                  .min(Comparator.naturalOrder())
+                  .orElseThrow();
+          OffsetDateTime ending =
+              metricKeys.stream()
+                  .map(key -> clock.endOfMonth(latestDates.get(key)))
+                  .max(Comparator.naturalOrder())
+                  .orElseThrow();
+          snapshotRepository
+              .sumMeasurementValuesBySnapshotDate(
+                  distinct(metricKeys, BillableUsageRemittanceEntityPK::getAccountNumber),
+                  distinct(metricKeys, BillableUsageRemittanceEntityPK::getProductId),
+                  distinct(metricKeys, BillableUsageRemittanceEntityPK::getBillingAccountId),
+                  Granularity.HOURLY,
+                  beginning,
+                  ending,
+                  new TallyMeasurementKey(HardwareMeasurementType.PHYSICAL, uom))
+              .forEach(
+                  row -> {
+                    BillableUsageTotal total = seeded.get(keyFrom(row, uom));
+                    if (total != null) {
+                      total.setTotalValue(round(total.getTotalValue() + row.getTotal()));
+                      total.setLatestSnapshotDate(
+                          latest(total.getLatestSnapshotDate(), row.getSnapshotDate()));
+                    }
+                  });
+        });
+    return List.copyOf(seeded.values());
+  }
+
+  private double sumMeasurementValues(
+      BillableUsageRemittanceEntityPK key, OffsetDateTime beginning, OffsetDateTime ending) {
+    // NOTE: Only PHYSICAL measurements are billed, as that's the only hardware type set when
+    //       metering.
+    return snapshotRepository.sumMeasurementValueForPeriod(
+        key.getAccountNumber(),
+        key.getProductId(),
+        Granularity.HOURLY,
+        ServiceLevel.fromString(key.getSla()),
+        Usage.fromString(key.getUsage()),
+        BillingProvider.fromString(key.getBillingProvider()),
+        key.getBillingAccountId(),
+        beginning,
+        ending,
+        new TallyMeasurementKey(
+            HardwareMeasurementType.PHYSICAL, Uom.fromValue(key.getMetricId())));
+  }
+
+  /** Only snapshots that can produce billable usage contribute to running totals. */
+  private boolean isBillable(TallySnapshot snapshot) {
+    return snapshot.getGranularity() == Granularity.HOURLY
+        && isSpecific(snapshot.getServiceLevel().getValue())
+        && isSpecific(snapshot.getUsage().getValue())
+        && isSpecific(snapshot.getBillingProvider().getValue())
+        && isSpecific(snapshot.getBillingAccountId());
+  }
+
+  private static boolean isSpecific(String value) {
+    return value != null && !value.isEmpty() && !"_ANY".equals(value);
+  }
+
+  private static Map<Uom, Double> physicalMeasurements(
+      Map<TallyMeasurementKey, Double> measurements) {
+    return measurements.entrySet().stream()
+        .filter(e -> e.getKey().getMeasurementType() == HardwareMeasurementType.PHYSICAL)
+        .collect(Collectors.toMap(e -> e.getKey().getUom(), Map.Entry::getValue));
+  }
+
+  private static BillableUsageRemittanceEntityPK keyFrom(TallySnapshot snapshot, Uom uom) {
+    return key(
+        snapshot.getAccountNumber(),
+        snapshot.getProductId(),
+        uom,
+        snapshot.getSnapshotDate(),
+        snapshot.getServiceLevel(),
+        snapshot.getUsage(),
+        snapshot.getBillingProvider(),
+        snapshot.getBillingAccountId());
+  }
+
+  private static BillableUsageRemittanceEntityPK keyFrom(TallyMeasurementTotalView row, Uom uom) {
+    return key(
+        row.getAccountNumber(),
+        row.getProductId(),
+        uom,
+        row.getSnapshotDate(),
+        row.getServiceLevel(),
+        row.getUsage(),
+        row.getBillingProvider(),
+        row.getBillingAccountId());
+  }
+
+  @SuppressWarnings("java:S107")
+  private static BillableUsageRemittanceEntityPK key(
+      String accountNumber,
+      String productId,
+      Uom uom,
+      OffsetDateTime snapshotDate,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      BillingProvider billingProvider,
+      String billingAccountId) {
+    return BillableUsageRemittanceEntityPK.builder()
+        .accountNumber(accountNumber)
+        .productId(productId)
+        .metricId(uom.value())
+        .accumulationPeriod(BillableUsageRemittanceEntityPK.getAccumulationPeriod(snapshotDate))
+        .sla(serviceLevel.getValue())
+        .usage(usage.getValue())
+        .billingProvider(billingProvider.getValue())
+        .billingAccountId(billingAccountId)
+        .build();
+  }
+
+  private static Set<String> distinct(
+      List<BillableUsageRemittanceEntityPK> keys,
+      Function<BillableUsageRemittanceEntityPK, String> field) {
+    return keys.stream().map(field).collect(Collectors.toSet());
+  }
+
+  private static OffsetDateTime latest(OffsetDateTime a, OffsetDateTime b) {
+    return a.isBefore(b) ? b : a;
+  }
+
+  private static OffsetDateTime earliest(OffsetDateTime a, OffsetDateTime b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static double round(double value) {
+    return BigDecimal.valueOf(value).setScale(TOTAL_SCALE, RoundingMode.HALF_UP).doubleValue();
+  }
+
+  /** An hourly snapshot that was written, with its measurements from before the write. */
+  @Value
+  public static class HourlyChange {
+    TallySnapshot snapshot;
+    Map<TallyMeasurementKey, Double> previousMeasurements;
+  }
+}
@@ -95,7 +95,32 @@ public class BillingProducerConfiguration {
           CommonErrorHandler errorHandler,
           KafkaProperties kafkaProperties,
           KafkaConsumerRegistry registry) {
+    return tallySummaryListenerContainerFactory(
+        consumerFactory, errorHandler, kafkaProperties, registry);
+  }
+
+  @Bean
+  ConcurrentKafkaListenerContainerFactory<String, TallySummary>
+      billingProducerKafkaTallySummaryBatchListenerContainerFactory(
+          @Qualifier("billingProducerTallySummaryConsumerFactory")
+              ConsumerFactory<String, TallySummary> consumerFactory,
+          CommonErrorHandler errorHandler,
+          KafkaProperties kafkaProperties,
+          KafkaConsumerRegistry registry) {
+    var factory =
+        tallySummaryListenerContainerFactory(
+            consumerFactory, errorHandler, kafkaProperties, registry);
+    // Each poll is delivered as a single list, bounded by the max.poll.records consumer setting.
+    factory.setBatchListener(true);
+    return factory;
+  }
 
+  private ConcurrentKafkaListenerContainerFactory<String, TallySummary>
+      tallySummaryListenerContainerFactory(
+          ConsumerFactory<String, TallySummary> consumerFactory,
+          CommonErrorHandler errorHandler,
+          KafkaProperties kafkaProperties,
+          KafkaConsumerRegistry registry) {
     var factory = new ConcurrentKafkaListenerContainerFactory<String, TallySummary>();
     factory.setConsumerFactory(consumerFactory);
     // Concurrency should be set to the number of partitions for the target topic.
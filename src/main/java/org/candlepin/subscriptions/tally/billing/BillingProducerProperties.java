@@ -36,4 +36,10 @@ public class BillingProducerProperties {
 
   /** Retry exponential backoff multiplier. */
   private Double backOffMultiplier;
+
+  /**
+   * Consume tally summaries in batches, resolving remittances and measured totals for the whole
+   * batch at once instead of one billable usage at a time.
+   */
+  private boolean batchListenerEnabled;
 }
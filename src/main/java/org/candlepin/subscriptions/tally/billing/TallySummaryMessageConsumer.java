@@ -21,10 +21,17 @@
 package org.candlepin.subscriptions.tally.billing;
 
 import io.micrometer.core.annotation.Timed;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.json.TallySummary;
+import org.candlepin.subscriptions.registry.BillingWindow;
 import org.candlepin.subscriptions.registry.TagMetric;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
@@ -48,6 +55,7 @@ public class TallySummaryMessageConsumer extends SeekableKafkaConsumer {
   private BillableUsageMapper billableUsageMapper;
   private BillableUsageController billableUsageController;
   private RetryTemplate retry;
+  @Getter private final boolean batchListenerEnabled;
 
   @Autowired
   public TallySummaryMessageConsumer(
@@ -57,17 +65,20 @@ public class TallySummaryMessageConsumer extends SeekableKafkaConsumer {
       KafkaConsumerRegistry kafkaConsumerRegistry,
       BillableUsageMapper billableUsageMapper,
       BillableUsageController billableUsageController,
-      @Qualifier("billingProducerKafkaRetryTemplate") RetryTemplate retry) {
+      @Qualifier("billingProducerKafkaRetryTemplate") RetryTemplate retry,
+      BillingProducerProperties billingProducerProperties) {
     super(tallySummaryTopicProperties, kafkaConsumerRegistry);
     this.tagProfile = tagProfile;
     this.billableUsageMapper = billableUsageMapper;
     this.billableUsageController = billableUsageController;
     this.retry = retry;
+    this.batchListenerEnabled = billingProducerProperties.isBatchListenerEnabled();
   }
 
   @Timed("rhsm-subscriptions.billing-producer.tally-summary")
   @KafkaListener(
       id = "#{__listener.groupId}",
+      autoStartup = "#{!__listener.batchListenerEnabled}",
       topics = "#{__listener.topic}",
       containerFactory = "billingProducerKafkaTallySummaryListenerContainerFactory")
   @Transactional
@@ -78,21 +89,50 @@ public class TallySummaryMessageConsumer extends SeekableKafkaConsumer {
         .fromTallySummary(tallySummary)
         .forEach(
             usage -> {
-              Measurement.Uom uom = Measurement.Uom.fromValue(usage.getUom().toString());
-              Optional<TagMetric> tagMetric = tagProfile.getTagMetric(usage.getProductId(), uom);
-              if (tagMetric.isEmpty()) {
-                throw new UnsupportedOperationException(
-                    String.format(
-                        "Unable to find TagMetric for snapshot measurement with product %s and UOM %s!",
-                        usage.getProductId(), uom));
-              }
-
+              BillingWindow billingWindow = getBillingWindow(usage);
               retry.execute(
                   context -> {
-                    billableUsageController.submitBillableUsage(
-                        tagMetric.get().getBillingWindow(), usage);
+                    billableUsageController.submitBillableUsage(billingWindow, usage);
                     return null;
                   });
             });
   }
+
+  @Timed("rhsm-subscriptions.billing-producer.tally-summary-batch")
+  @KafkaListener(
+      id = "#{__listener.groupId}-batch",
+      groupId = "#{__listener.groupId}",
+      autoStartup = "#{__listener.batchListenerEnabled}",
+      topics = "#{__listener.topic}",
+      containerFactory = "billingProducerKafkaTallySummaryBatchListenerContainerFactory")
+  @Transactional
+  public void receive(List<TallySummary> tallySummaries) {
+    log.debug("{} Tally Summaries received. Producing billable usage.", tallySummaries.size());
+
+    Map<BillingWindow, List<BillableUsage>> usagesByWindow =
+        tallySummaries.stream()
+            .flatMap(billableUsageMapper::fromTallySummary)
+            .collect(
+                Collectors.groupingBy(
+                    this::getBillingWindow, LinkedHashMap::new, Collectors.toList()));
+    usagesByWindow.forEach(
+        (billingWindow, usages) ->
+            retry.execute(
+                context -> {
+                  billableUsageController.submitBillableUsages(billingWindow, usages);
+                  return null;
+                }));
+  }
+
+  private BillingWindow getBillingWindow(BillableUsage usage) {
+    Measurement.Uom uom = Measurement.Uom.fromValue(usage.getUom().toString());
+    Optional<TagMetric> tagMetric = tagProfile.getTagMetric(usage.getProductId(), uom);
+    if (tagMetric.isEmpty()) {
+      throw new UnsupportedOperationException(
+          String.format(
+              "Unable to find TagMetric for snapshot measurement with product %s and UOM %s!",
+              usage.getProductId(), uom));
+    }
+    return tagMetric.get().getBillingWindow();
+  }
 }
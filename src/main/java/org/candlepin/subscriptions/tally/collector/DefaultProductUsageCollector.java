@@ -81,4 +81,10 @@ public class DefaultProductUsageCollector implements ProductUsageCollector {
     /* do nothing for hypervisor-guest mappings by default */
     return Optional.empty();
   }
+
+  @Override
+  public void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket) {
+    // virtual systems only count towards the totals
+    HostTallyBuckets.collectFromBucket(prodCalc, bucket, HardwareMeasurementType.TOTAL);
+  }
 }
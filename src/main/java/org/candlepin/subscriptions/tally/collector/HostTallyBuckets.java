@@ -0,0 +1,53 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.collector;
+
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.HostTallyBucket;
+import org.candlepin.subscriptions.tally.UsageCalculation;
+
+/** Re-applies the counts of previously collected host buckets to product calculations. */
+final class HostTallyBuckets {
+
+  private HostTallyBuckets() {
+    // static methods only
+  }
+
+  /**
+   * Re-apply a bucket's counts to a product calculation. Cloud provider and physical buckets count
+   * towards their own measurement type; any other bucket counts towards the given type.
+   *
+   * @param prodCalc which usage key's calculation to update
+   * @param bucket a bucket previously returned by a collector
+   * @param otherType the measurement type counting buckets that are neither cloud nor physical
+   */
+  static void collectFromBucket(
+      UsageCalculation prodCalc, HostTallyBucket bucket, HardwareMeasurementType otherType) {
+    HardwareMeasurementType type = bucket.getMeasurementType();
+    if (HardwareMeasurementType.isSupportedCloudProvider(type.name())) {
+      prodCalc.addCloudProvider(type, bucket.getCores(), bucket.getSockets(), 1);
+    } else if (type == HardwareMeasurementType.PHYSICAL) {
+      prodCalc.addPhysical(bucket.getCores(), bucket.getSockets(), 1);
+    } else {
+      prodCalc.add(otherType, bucket.getCores(), bucket.getSockets(), 1);
+    }
+  }
+}
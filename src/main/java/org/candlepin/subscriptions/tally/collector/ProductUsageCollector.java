@@ -48,4 +48,14 @@ public interface ProductUsageCollector {
    */
   Optional<HostTallyBucket> collectForHypervisor(
       String account, UsageCalculation prodCalc, NormalizedFacts hypervisorFacts);
+
+  /**
+   * Re-apply the counts recorded in a previously collected bucket to the provided product
+   * calculation, without re-examining the host's facts. Used by incremental tallies for hosts that
+   * have not changed since the last tally.
+   *
+   * @param prodCalc which usage key's calculation to update
+   * @param bucket a bucket previously returned by collect or collectForHypervisor
+   */
+  void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket);
 }
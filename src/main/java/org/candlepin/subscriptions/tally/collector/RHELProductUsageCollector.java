@@ -104,6 +104,12 @@ public class RHELProductUsageCollector implements ProductUsageCollector {
             prodCalc, false, appliedCores, appliedSockets, HardwareMeasurementType.VIRTUAL));
   }
 
+  @Override
+  public void collectFromBucket(UsageCalculation prodCalc, HostTallyBucket bucket) {
+    // both unmapped guests and hypervisors (on behalf of their guests) count as hypervisors
+    HostTallyBuckets.collectFromBucket(prodCalc, bucket, HardwareMeasurementType.VIRTUAL);
+  }
+
   private HostTallyBucket createBucket(
       UsageCalculation currentCalc,
       boolean asHypervisor,
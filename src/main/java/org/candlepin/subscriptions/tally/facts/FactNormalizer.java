@@ -21,11 +21,16 @@
 package org.candlepin.subscriptions.tally.facts;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.HostHardwareType;
@@ -41,21 +46,87 @@ import org.springframework.util.StringUtils;
 /**
  * Responsible for examining an inventory host and producing normalized and condensed facts based on
  * the host's facts.
+ *
+ * <p>Product lookups are compiled from the {@link TagProfile} once, at construction. Every product
+ * tag the normalizer can produce is assigned a bit, so that the per-host product set is built and
+ * pruned as a {@link BitSet} and only materialized once, as a shared read-only set, at the end.
  */
 public class FactNormalizer {
   private static final Logger log = LoggerFactory.getLogger(FactNormalizer.class);
 
+  private static final String RHEL = "RHEL";
+  private static final String RHEL_UNGROUPED = "RHEL Ungrouped";
+
+  /** Upper bound on distinct product combinations kept in the interned product set cache. */
+  private static final int MAX_INTERNED_PRODUCT_SETS = 4096;
+
   private final ApplicationClock clock;
   private final int hostSyncThresholdHours;
-  private final Map<Integer, Set<String>> engProductIdToSwatchProductIdsMap;
-  private final Map<String, Set<String>> roleToProductsMap;
+
+  private final String[] productsByIndex;
+  private final Map<Integer, BitSet> engProductIdToProducts;
+  private final Map<String, BitSet> roleToProducts;
+  private final BitSet rhelVariants;
+  private final BitSet rhelProducts;
+  private final BitSet rhelIncludedProducts;
+  private final int rhelIndex;
+  private final int rhelUngroupedIndex;
+  private final Map<BitSet, Set<String>> internedProductSets = new ConcurrentHashMap<>();
 
   public FactNormalizer(
       ApplicationProperties props, TagProfile tagProfile, ApplicationClock clock) {
     this.clock = clock;
     this.hostSyncThresholdHours = props.getHostLastSyncThresholdHours();
-    this.engProductIdToSwatchProductIdsMap = tagProfile.getEngProductIdToSwatchProductIdsMap();
-    this.roleToProductsMap = tagProfile.getRoleToTagLookup();
+
+    Map<Integer, Set<String>> engProductIdToSwatchProductIdsMap =
+        tagProfile.getEngProductIdToSwatchProductIdsMap();
+    Map<String, Set<String>> roleToProductsMap = tagProfile.getRoleToTagLookup();
+
+    Map<String, Integer> productIndexes = new HashMap<>();
+    List<String> products = new ArrayList<>();
+    this.rhelIndex = indexOf(RHEL, productIndexes, products);
+    this.rhelUngroupedIndex = indexOf(RHEL_UNGROUPED, productIndexes, products);
+
+    this.engProductIdToProducts = new HashMap<>();
+    engProductIdToSwatchProductIdsMap.forEach(
+        (engId, tags) ->
+            engProductIdToProducts.put(engId, toBitSet(tags, productIndexes, products)));
+    this.roleToProducts = new HashMap<>();
+    if (roleToProductsMap != null) {
+      roleToProductsMap.forEach(
+          (role, tags) -> roleToProducts.put(role, toBitSet(tags, productIndexes, products)));
+    }
+
+    this.productsByIndex = products.toArray(new String[0]);
+    this.rhelVariants = new BitSet(productsByIndex.length);
+    this.rhelProducts = new BitSet(productsByIndex.length);
+    this.rhelIncludedProducts = new BitSet(productsByIndex.length);
+    for (int i = 0; i < productsByIndex.length; i++) {
+      String product = productsByIndex[i];
+      rhelVariants.set(i, isRhelVariant(product));
+      rhelProducts.set(i, product.startsWith(RHEL));
+      rhelIncludedProducts.set(
+          i, product.startsWith("Satellite") || product.startsWith("OpenShift"));
+    }
+  }
+
+  private static int indexOf(
+      String product, Map<String, Integer> productIndexes, List<String> products) {
+    return productIndexes.computeIfAbsent(
+        product,
+        p -> {
+          products.add(p);
+          return products.size() - 1;
+        });
+  }
+
+  private static BitSet toBitSet(
+      Collection<String> tags, Map<String, Integer> productIndexes, List<String> products) {
+    BitSet bits = new BitSet();
+    if (tags != null) {
+      tags.forEach(tag -> bits.set(indexOf(tag, productIndexes, products)));
+    }
+    return bits;
   }
 
   public static boolean isRhelVariant(String product) {
@@ -65,6 +136,8 @@ public class FactNormalizer {
   /**
    * Normalize the FactSets of the given host.
    *
+   * <p>The products of the returned facts are a shared, read-only set.
+   *
    * @param hostFacts the collection of facts to normalize.
    * @return a normalized version of the host's facts.
    */
@@ -72,23 +145,42 @@ public class FactNormalizer {
       InventoryHostFacts hostFacts, Map<String, String> reportedHypervisors) {
 
     NormalizedFacts normalizedFacts = new NormalizedFacts();
+    BitSet products = new BitSet(productsByIndex.length);
     normalizeClassification(normalizedFacts, hostFacts, reportedHypervisors);
-    normalizeSystemProfileFacts(normalizedFacts, hostFacts);
-    normalizeSatelliteFacts(normalizedFacts, hostFacts);
-    normalizeRhsmFacts(normalizedFacts, hostFacts);
-    normalizeQpcFacts(normalizedFacts, hostFacts);
-    normalizeSocketCount(normalizedFacts, hostFacts);
+    normalizeSystemProfileFacts(normalizedFacts, products, hostFacts);
+    normalizeSatelliteFacts(normalizedFacts, products, hostFacts);
+    normalizeRhsmFacts(normalizedFacts, products, hostFacts);
+    normalizeQpcFacts(products, hostFacts);
+    normalizeSocketCount(normalizedFacts);
     normalizeMarketplace(normalizedFacts, hostFacts);
-    normalizeConflictingOrMissingRhelVariants(normalizedFacts);
-    pruneProducts(normalizedFacts);
+    normalizeConflictingOrMissingRhelVariants(products);
+    pruneProducts(products);
     normalizeUnits(normalizedFacts, hostFacts);
     defaultNullFacts(normalizedFacts, hostFacts);
+    normalizedFacts.setProducts(internProducts(products));
     return normalizedFacts;
   }
 
+  private Set<String> internProducts(BitSet products) {
+    Set<String> interned = internedProductSets.get(products);
+    if (interned != null) {
+      return interned;
+    }
+    Set<String> productSet = new HashSet<>(products.cardinality() * 2);
+    for (int i = products.nextSetBit(0); i >= 0; i = products.nextSetBit(i + 1)) {
+      productSet.add(productsByIndex[i]);
+    }
+    productSet = Collections.unmodifiableSet(productSet);
+    if (internedProductSets.size() >= MAX_INTERNED_PRODUCT_SETS) {
+      return productSet;
+    }
+    Set<String> existing = internedProductSets.putIfAbsent(products, productSet);
+    return existing != null ? existing : productSet;
+  }
+
   private void normalizeSatelliteFacts(
-      NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
-    handleRole(normalizedFacts, hostFacts.getSatelliteRole());
+      NormalizedFacts normalizedFacts, BitSet products, InventoryHostFacts hostFacts) {
+    handleRole(products, hostFacts.getSatelliteRole());
     handleSla(normalizedFacts, hostFacts, hostFacts.getSatelliteSla());
     handleUsage(normalizedFacts, hostFacts, hostFacts.getSatelliteUsage());
   }
@@ -122,6 +214,7 @@ public class FactNormalizer {
       NormalizedFacts normalizedFacts,
       InventoryHostFacts hostFacts,
       Map<String, String> mappedHypervisors) {
+    // NOTE: isVirtual is evaluated once here; later steps read it back from normalizedFacts.
     boolean isVirtual = isVirtual(hostFacts);
 
     String hypervisorUuid = hostFacts.getSatelliteHypervisorUuid();
@@ -143,14 +236,14 @@ public class FactNormalizer {
     normalizedFacts.setHypervisor(isHypervisor);
     normalizedFacts.setVirtual(isVirtual);
     normalizedFacts.setHypervisorUnknown(isHypervisorUnknown);
-    normalizedFacts.setHardwareType(determineHardwareType(hostFacts));
+    normalizedFacts.setHardwareType(determineHardwareType(hostFacts, isVirtual));
   }
 
-  private HostHardwareType determineHardwareType(InventoryHostFacts facts) {
+  private HostHardwareType determineHardwareType(InventoryHostFacts facts, boolean isVirtual) {
     HostHardwareType hardwareType;
     if (HardwareMeasurementType.isSupportedCloudProvider(facts.getCloudProvider())) {
       hardwareType = HostHardwareType.CLOUD;
-    } else if (isVirtual(facts)) {
+    } else if (isVirtual) {
       hardwareType = HostHardwareType.VIRTUALIZED;
     } else {
       hardwareType = HostHardwareType.PHYSICAL;
@@ -158,23 +251,16 @@ public class FactNormalizer {
     return hardwareType;
   }
 
-  @SuppressWarnings("indentation")
-  private void pruneProducts(NormalizedFacts normalizedFacts) {
+  private void pruneProducts(BitSet products) {
     // If a Satellite or OpenShift product was found, do not include RHEL or its variants.
-    boolean hasRhelIncludedProduct =
-        normalizedFacts.getProducts().stream()
-            .anyMatch(s -> s.startsWith("Satellite") || s.startsWith("OpenShift"));
-    if (hasRhelIncludedProduct) {
-      normalizedFacts.setProducts(
-          normalizedFacts.getProducts().stream()
-              .filter(prod -> !prod.startsWith("RHEL"))
-              .collect(Collectors.toSet()));
+    if (products.intersects(rhelIncludedProducts)) {
+      products.andNot(rhelProducts);
     }
   }
 
-  private void normalizeSocketCount(NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
+  private void normalizeSocketCount(NormalizedFacts normalizedFacts) {
     // modulo-2 rounding only applied to physical or hypervisors
-    if (normalizedFacts.isHypervisor() || !isVirtual(hostFacts)) {
+    if (normalizedFacts.isHypervisor() || !normalizedFacts.isVirtual()) {
       Integer sockets = normalizedFacts.getSockets();
       if (sockets != null && (sockets % 2) == 1) {
         normalizedFacts.setSockets(sockets + 1);
@@ -182,19 +268,23 @@ public class FactNormalizer {
     }
   }
 
-  private void normalizeConflictingOrMissingRhelVariants(NormalizedFacts normalizedFacts) {
-    long variantCount =
-        normalizedFacts.getProducts().stream().filter(FactNormalizer::isRhelVariant).count();
+  private void normalizeConflictingOrMissingRhelVariants(BitSet products) {
+    int variantCount = 0;
+    for (int i = rhelVariants.nextSetBit(0); i >= 0; i = rhelVariants.nextSetBit(i + 1)) {
+      if (products.get(i)) {
+        variantCount++;
+      }
+    }
 
-    boolean hasRhel = normalizedFacts.getProducts().contains("RHEL");
+    boolean hasRhel = products.get(rhelIndex);
 
     if ((variantCount == 0 && hasRhel) || variantCount > 1) {
-      normalizedFacts.addProduct("RHEL Ungrouped");
+      products.set(rhelUngroupedIndex);
     }
   }
 
   private void normalizeSystemProfileFacts(
-      NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
+      NormalizedFacts normalizedFacts, BitSet products, InventoryHostFacts hostFacts) {
     String cloudProvider = hostFacts.getCloudProvider();
     if (HardwareMeasurementType.isSupportedCloudProvider(cloudProvider)) {
       normalizedFacts.setCloudProviderType(
@@ -215,7 +305,7 @@ public class FactNormalizer {
       var effectiveCores = calculateVirtualCPU(hostFacts);
       normalizedFacts.setCores(effectiveCores);
     }
-    getProductsFromProductIds(normalizedFacts, hostFacts.getSystemProfileProductIds());
+    getProductsFromProductIds(products, hostFacts.getSystemProfileProductIds());
   }
 
   private void normalizeMarketplace(NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
@@ -253,27 +343,25 @@ public class FactNormalizer {
     return (int) Math.ceil(cpu / threadsPerCore);
   }
 
-  private void getProductsFromProductIds(
-      NormalizedFacts normalizedFacts, Collection<String> productIds) {
+  private void getProductsFromProductIds(BitSet products, Collection<String> productIds) {
     if (productIds == null) {
       return;
     }
 
     for (String productId : productIds) {
       try {
-        Integer numericProductId = Integer.parseInt(productId);
-        normalizedFacts
-            .getProducts()
-            .addAll(
-                engProductIdToSwatchProductIdsMap.getOrDefault(
-                    numericProductId, Collections.emptySet()));
+        BitSet engProducts = engProductIdToProducts.get(Integer.parseInt(productId));
+        if (engProducts != null) {
+          products.or(engProducts);
+        }
       } catch (NumberFormatException e) {
         log.debug("Skipping non-numeric productId: {}", productId);
       }
     }
   }
 
-  private void normalizeRhsmFacts(NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
+  private void normalizeRhsmFacts(
+      NormalizedFacts normalizedFacts, BitSet products, InventoryHostFacts hostFacts) {
     // If the host hasn't been seen by rhsm-conduit, consider the host as unregistered, and do not
     // apply this host's facts.
     //
@@ -283,23 +371,24 @@ public class FactNormalizer {
     boolean skipRhsmFacts =
         StringUtils.hasText(syncTimestamp) && hostUnregistered(OffsetDateTime.parse(syncTimestamp));
     if (!skipRhsmFacts) {
-      getProductsFromProductIds(normalizedFacts, hostFacts.getProducts());
+      getProductsFromProductIds(products, hostFacts.getProducts());
 
       // Check for cores and sockets. If not included, default to 0.
 
       normalizedFacts.setOwner(hostFacts.getOrgId());
-      handleRole(normalizedFacts, hostFacts.getSyspurposeRole());
+      handleRole(products, hostFacts.getSyspurposeRole());
       handleSla(normalizedFacts, hostFacts, hostFacts.getSyspurposeSla());
       handleUsage(normalizedFacts, hostFacts, hostFacts.getSyspurposeUsage());
     }
   }
 
-  private void handleRole(NormalizedFacts normalizedFacts, String role) {
+  private void handleRole(BitSet products, String role) {
     if (role != null) {
-      normalizedFacts.getProducts().removeIf(FactNormalizer::isRhelVariant);
-      normalizedFacts
-          .getProducts()
-          .addAll(roleToProductsMap.getOrDefault(role, Collections.emptySet()));
+      products.andNot(rhelVariants);
+      BitSet roleProducts = roleToProducts.get(role);
+      if (roleProducts != null) {
+        products.or(roleProducts);
+      }
     }
   }
 
@@ -335,12 +424,12 @@ public class FactNormalizer {
     }
   }
 
-  private void normalizeQpcFacts(NormalizedFacts normalizedFacts, InventoryHostFacts hostFacts) {
+  private void normalizeQpcFacts(BitSet products, InventoryHostFacts hostFacts) {
     // Check if this is a RHEL host and set product.
-    if (hostFacts.getQpcProducts() != null && hostFacts.getQpcProducts().contains("RHEL")) {
-      normalizedFacts.addProduct("RHEL");
+    if (hostFacts.getQpcProducts() != null && hostFacts.getQpcProducts().contains(RHEL)) {
+      products.set(rhelIndex);
     }
-    getProductsFromProductIds(normalizedFacts, hostFacts.getQpcProductIds());
+    getProductsFromProductIds(products, hostFacts.getQpcProductIds());
   }
 
   /**
@@ -61,8 +61,14 @@ public class NormalizedFacts {
     products = new HashSet<>();
   }
 
+  /**
+   * Adds a product to these facts. The product set may be a read-only set shared with other hosts,
+   * so it is copied rather than modified in place.
+   */
   public void addProduct(String product) {
-    products.add(product);
+    Set<String> copy = new HashSet<>(products);
+    copy.add(product);
+    products = copy;
   }
 
   /**
@@ -21,10 +21,10 @@
 package org.candlepin.subscriptions.tally.roller;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +41,7 @@ import org.candlepin.subscriptions.tally.AccountUsageCalculation;
 import org.candlepin.subscriptions.tally.UsageCalculation;
 import org.candlepin.subscriptions.tally.UsageCalculation.Totals;
 import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +57,7 @@ public abstract class BaseSnapshotRoller {
   protected TallySnapshotRepository tallyRepo;
   protected ApplicationClock clock;
   protected final TagProfile tagProfile;
+  private boolean bulkUpsertEnabled;
 
   protected BaseSnapshotRoller(
       TallySnapshotRepository tallyRepo, ApplicationClock clock, TagProfile tagProfile) {
@@ -64,6 +66,15 @@ public abstract class BaseSnapshotRoller {
     this.tagProfile = tagProfile;
   }
 
+  /**
+   * Write changed snapshots with batched upserts rather than through JPA.
+   *
+   * @param bulkUpsertEnabled whether to use {@link TallySnapshotRepository#upsertAll}
+   */
+  public void setBulkUpsertEnabled(boolean bulkUpsertEnabled) {
+    this.bulkUpsertEnabled = bulkUpsertEnabled;
+  }
+
   /**
    * Roll the snapshots for the given account.
    *
@@ -123,6 +134,26 @@ public abstract class BaseSnapshotRoller {
     }
   }
 
+  protected DateRange getSnapshotPeriod(Granularity granularity) {
+    switch (granularity) {
+      case HOURLY:
+        return new DateRange(clock.startOfCurrentHour(), clock.endOfCurrentHour());
+      case DAILY:
+        return new DateRange(clock.startOfToday(), clock.endOfToday());
+      case WEEKLY:
+        return new DateRange(clock.startOfCurrentWeek(), clock.endOfCurrentWeek());
+      case MONTHLY:
+        return new DateRange(clock.startOfCurrentMonth(), clock.endOfCurrentMonth());
+      case QUARTERLY:
+        return new DateRange(clock.startOfCurrentQuarter(), clock.endOfCurrentQuarter());
+      case YEARLY:
+        return new DateRange(clock.startOfCurrentYear(), clock.endOfCurrentYear());
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported granularity: %s", granularity));
+    }
+  }
+
   @SuppressWarnings("indentation")
   protected List<TallySnapshot> getCurrentSnapshotsByAccount(
       String account,
@@ -141,43 +172,68 @@ public abstract class BaseSnapshotRoller {
       Collection<AccountUsageCalculation> accountCalcs,
       Map<String, List<TallySnapshot>> existingSnaps,
       Granularity targetGranularity) {
-    List<TallySnapshot> snaps = new LinkedList<>();
+    List<TallySnapshot> snaps = new ArrayList<>();
     for (AccountUsageCalculation accountCalc : accountCalcs) {
       String account = accountCalc.getAccount();
 
-      Map<UsageCalculation.Key, TallySnapshot> accountSnapsByUsageKey = new HashMap<>();
-      if (existingSnaps.containsKey(account)) {
-        accountSnapsByUsageKey =
-            existingSnaps.get(account).stream()
-                .collect(
-                    Collectors.toMap(
-                        UsageCalculation.Key::fromTallySnapshot,
-                        Function.identity(),
-                        this::handleDuplicateSnapshot));
-      }
+      Map<UsageCalculation.Key, TallySnapshot> accountSnapsByUsageKey =
+          indexSnapshotsByUsageKey(existingSnaps.getOrDefault(account, List.of()));
 
       for (UsageCalculation.Key usageKey : accountCalc.getKeys()) {
-        boolean isGranularitySupported =
-            tagProfile.tagSupportsGranularity(usageKey.getProductId(), targetGranularity);
-
-        if (isGranularitySupported) {
-          TallySnapshot snap = accountSnapsByUsageKey.get(usageKey);
-          UsageCalculation productCalc = accountCalc.getCalculation(usageKey);
-          if (snap == null && productCalc.hasMeasurements()) {
-            snap =
-                createSnapshotFromProductUsageCalculation(
-                    accountCalc.getAccount(),
-                    accountCalc.getOwner(),
-                    productCalc,
-                    targetGranularity);
-            snaps.add(snap);
-          } else if (snap != null && updateMaxValues(snap, productCalc)) {
-            snaps.add(snap);
-          }
-        }
+        rollCalculation(accountCalc, usageKey, accountSnapsByUsageKey, targetGranularity, snaps);
       }
     }
     log.debug("Persisting {} {} snapshots.", snaps.size(), targetGranularity);
+    return persistSnapshots(snaps);
+  }
+
+  protected Map<UsageCalculation.Key, TallySnapshot> indexSnapshotsByUsageKey(
+      List<TallySnapshot> snapshots) {
+    return snapshots.stream()
+        .collect(
+            Collectors.toMap(
+                UsageCalculation.Key::fromTallySnapshot,
+                Function.identity(),
+                this::handleDuplicateSnapshot));
+  }
+
+  /**
+   * Apply a single calculation to its snapshot of the given granularity, creating the snapshot if
+   * it does not exist yet.
+   *
+   * @param accountCalc the account's calculations
+   * @param usageKey the key of the calculation to apply
+   * @param snapsByUsageKey the account's existing snapshots of the target granularity
+   * @param targetGranularity the granularity of the snapshot to update
+   * @param changedSnaps collects the snapshot if it was created or changed
+   */
+  protected void rollCalculation(
+      AccountUsageCalculation accountCalc,
+      UsageCalculation.Key usageKey,
+      Map<UsageCalculation.Key, TallySnapshot> snapsByUsageKey,
+      Granularity targetGranularity,
+      List<TallySnapshot> changedSnaps) {
+    boolean isGranularitySupported =
+        tagProfile.tagSupportsGranularity(usageKey.getProductId(), targetGranularity);
+
+    if (isGranularitySupported) {
+      TallySnapshot snap = snapsByUsageKey.get(usageKey);
+      UsageCalculation productCalc = accountCalc.getCalculation(usageKey);
+      if (snap == null && productCalc.hasMeasurements()) {
+        snap =
+            createSnapshotFromProductUsageCalculation(
+                accountCalc.getAccount(), accountCalc.getOwner(), productCalc, targetGranularity);
+        changedSnaps.add(snap);
+      } else if (snap != null && updateMaxValues(snap, productCalc)) {
+        changedSnaps.add(snap);
+      }
+    }
+  }
+
+  protected Collection<TallySnapshot> persistSnapshots(List<TallySnapshot> snaps) {
+    if (bulkUpsertEnabled) {
+      return tallyRepo.upsertAll(snaps);
+    }
     return tallyRepo.saveAll(snaps);
   }
 
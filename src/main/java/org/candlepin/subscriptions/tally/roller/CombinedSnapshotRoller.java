@@ -0,0 +1,107 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.roller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.UsageCalculation;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Produces the current snapshots of several granularities at once. Produces the same snapshots as
+ * running the roller of each granularity in turn, but loads the existing snapshots of every
+ * granularity in a single query, applies the calculations to all of them in a single pass, and
+ * persists the changed snapshots in a single write.
+ */
+public class CombinedSnapshotRoller extends BaseSnapshotRoller {
+
+  private static final Logger log = LoggerFactory.getLogger(CombinedSnapshotRoller.class);
+
+  private final List<Granularity> granularities;
+
+  public CombinedSnapshotRoller(
+      TallySnapshotRepository tallyRepo,
+      ApplicationClock clock,
+      TagProfile tagProfile,
+      Granularity... granularities) {
+    super(tallyRepo, clock, tagProfile);
+    this.granularities = Arrays.asList(granularities);
+  }
+
+  @Override
+  @Transactional
+  public Collection<TallySnapshot> rollSnapshots(
+      String account, Collection<AccountUsageCalculation> accountCalcs) {
+    log.debug("Producing {} snapshots for account {}.", granularities, account);
+
+    Map<Granularity, DateRange> periods = new EnumMap<>(Granularity.class);
+    Set<String> products = new HashSet<>();
+    for (Granularity granularity : granularities) {
+      periods.put(granularity, getSnapshotPeriod(granularity));
+      products.addAll(getApplicableProducts(accountCalcs, granularity));
+    }
+
+    Map<Granularity, List<TallySnapshot>> existingByGranularity =
+        tallyRepo.findByAccountNumberAndProductIdInForPeriods(account, products, periods).stream()
+            .collect(Collectors.groupingBy(TallySnapshot::getGranularity));
+    Map<Granularity, Map<UsageCalculation.Key, TallySnapshot>> snapsByGranularity =
+        new EnumMap<>(Granularity.class);
+    for (Granularity granularity : granularities) {
+      snapsByGranularity.put(
+          granularity,
+          indexSnapshotsByUsageKey(existingByGranularity.getOrDefault(granularity, List.of())));
+    }
+
+    List<TallySnapshot> snaps = new ArrayList<>();
+    for (AccountUsageCalculation accountCalc : accountCalcs) {
+      // Only the given account's snapshots were loaded; any other account has none to update.
+      boolean isLoadedAccount = account.equals(accountCalc.getAccount());
+      for (UsageCalculation.Key usageKey : accountCalc.getKeys()) {
+        for (Granularity granularity : granularities) {
+          rollCalculation(
+              accountCalc,
+              usageKey,
+              isLoadedAccount ? snapsByGranularity.get(granularity) : Map.of(),
+              granularity,
+              snaps);
+        }
+      }
+    }
+    log.debug("Persisting {} snapshots.", snaps.size());
+    return persistSnapshots(snaps);
+  }
+}
@@ -25,7 +25,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Map;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import org.candlepin.subscriptions.db.model.*;
+import org.candlepin.subscriptions.json.Measurement;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -47,6 +49,8 @@ class AccountServiceInventoryRepositoryTest {
 
   @Autowired HostRepository hostRepo;
 
+  @Autowired EntityManager entityManager;
+
   @Transactional
   @BeforeAll
   void setupTestData() {
@@ -152,4 +156,42 @@ class AccountServiceInventoryRepositoryTest {
         repo.findById(new AccountServiceInventoryId("account123", "HBI_HOST")).orElseThrow();
     assertTrue(fetched.getServiceInstances().isEmpty());
   }
+
+  @Transactional
+  @Test
+  void testLoadsCollectionsForEveryInstance() {
+    AccountServiceInventory accountServiceInventory =
+        repo.findById(new AccountServiceInventoryId("account123", "HBI_HOST")).orElseThrow();
+    for (int i = 0; i < 3; i++) {
+      Host host = new Host();
+      host.setInstanceId("instance" + i);
+      host.setAccountNumber("account123");
+      host.setDisplayName("name" + i);
+      host.setInstanceType("HBI_HOST");
+      host.setMeasurement(Measurement.Uom.CORES, (double) i);
+      host.addToMonthlyTotal("2022-10", Measurement.Uom.CORES, (double) i);
+      host.addBucket(
+          "product",
+          ServiceLevel.PREMIUM,
+          Usage.PRODUCTION,
+          BillingProvider._ANY,
+          "_ANY",
+          false,
+          i,
+          i,
+          HardwareMeasurementType.PHYSICAL);
+      accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host);
+    }
+    repo.saveAndFlush(accountServiceInventory);
+    entityManager.clear();
+
+    AccountServiceInventory fetched =
+        repo.findById(new AccountServiceInventoryId("account123", "HBI_HOST")).orElseThrow();
+    for (int i = 0; i < 3; i++) {
+      Host host = fetched.getServiceInstances().get("instance" + i);
+      assertEquals(Map.of(Measurement.Uom.CORES, (double) i), host.getMeasurements());
+      assertEquals((double) i, host.getMonthlyTotal("2022-10", Measurement.Uom.CORES), 0.0);
+      assertEquals(1, host.getBuckets().size());
+    }
+  }
 }
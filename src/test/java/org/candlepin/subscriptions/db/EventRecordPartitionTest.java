@@ -0,0 +1,107 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import org.candlepin.subscriptions.db.model.EventRecord;
+import org.candlepin.subscriptions.json.Event;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+class EventRecordPartitionTest extends PostgresRepositoryTest {
+
+  private static final YearMonth FUTURE_MONTH = YearMonth.of(2099, 1);
+
+  @Autowired private EventRecordRepository repository;
+
+  @Autowired
+  @Qualifier("rhsmSubscriptionsEntityManagerFactory")
+  private EntityManager em;
+
+  @Test
+  void testFindMonthlyPartitionsListsPartitionsCreatedByMigration() {
+    assertTrue(repository.isPartitionedByMonth());
+
+    YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+    assertTrue(repository.findMonthlyPartitions().contains(currentMonth));
+    assertTrue(repository.findMonthlyPartitions().contains(currentMonth.plusMonths(3)));
+  }
+
+  @Test
+  void testCreateAndDropMonthlyPartition() {
+    repository.createMonthlyPartition(FUTURE_MONTH);
+    repository.createMonthlyPartition(FUTURE_MONTH);
+    assertTrue(repository.findMonthlyPartitions().contains(FUTURE_MONTH));
+
+    repository.dropMonthlyPartition(FUTURE_MONTH);
+    assertFalse(repository.findMonthlyPartitions().contains(FUTURE_MONTH));
+  }
+
+  @Test
+  void testCreateMonthlyPartitionMovesEventsOutOfDefaultPartition() {
+    assertFalse(repository.findMonthlyPartitions().contains(FUTURE_MONTH));
+    OffsetDateTime timestamp = FUTURE_MONTH.atDay(15).atStartOfDay().atOffset(ZoneOffset.UTC);
+    EventRecord inDefault = repository.saveAndFlush(new EventRecord(event(timestamp)));
+
+    repository.createMonthlyPartition(FUTURE_MONTH);
+    em.clear();
+
+    assertTrue(repository.findMonthlyPartitions().contains(FUTURE_MONTH));
+    assertEquals(0, repository.deleteDefaultPartitionEventsBefore(timestamp.plusYears(1)));
+    assertTrue(repository.findById(inDefault.getId()).isPresent());
+  }
+
+  @Test
+  void testDropMonthlyPartitionDeletesItsEvents() {
+    repository.createMonthlyPartition(FUTURE_MONTH);
+    OffsetDateTime timestamp = FUTURE_MONTH.atDay(15).atStartOfDay().atOffset(ZoneOffset.UTC);
+    EventRecord event = repository.saveAndFlush(new EventRecord(event(timestamp)));
+
+    repository.dropMonthlyPartition(FUTURE_MONTH);
+    em.clear();
+
+    assertTrue(repository.findById(event.getId()).isEmpty());
+  }
+
+  private Event event(OffsetDateTime timestamp) {
+    Event event = new Event();
+    event.setEventId(UUID.randomUUID());
+    event.setAccountNumber("account123");
+    event.setOrgId("org123");
+    event.setTimestamp(timestamp);
+    event.setInstanceId("instance123");
+    event.setEventSource("SOURCE");
+    event.setServiceType("SERVICE_TYPE");
+    event.setEventType("TYPE");
+    event.setDisplayName(Optional.empty());
+    return event;
+  }
+}
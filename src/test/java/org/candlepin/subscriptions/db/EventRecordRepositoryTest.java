@@ -176,6 +176,37 @@ class EventRecordRepositoryTest {
     assertEquals(e1, found.get(0));
   }
 
+  @SuppressWarnings({"linelength", "indentation"})
+  @Test
+  void findByServiceType() {
+    Event rhelEvent =
+        event("account123", "org123", "SOURCE", "TYPE", "INSTANCE", OffsetDateTime.now(CLOCK));
+    Event otherEvent =
+        event("account123", "org123", "SOURCE", "TYPE", "OTHER", OffsetDateTime.now(CLOCK));
+    otherEvent.setServiceType("OTHER_SERVICE_TYPE");
+
+    repository.saveAll(List.of(new EventRecord(rhelEvent), new EventRecord(otherEvent)));
+    repository.flush();
+
+    OffsetDateTime begin = OffsetDateTime.now(CLOCK).minusHours(1);
+    OffsetDateTime end = OffsetDateTime.now(CLOCK).plusHours(1);
+    List<EventRecord> found =
+        repository
+            .findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+                "account123", "SERVICE_TYPE", begin, end)
+            .collect(Collectors.toList());
+
+    assertEquals(1, found.size());
+    assertEquals(rhelEvent.getEventId(), found.get(0).getId());
+    assertEquals("SERVICE_TYPE", found.get(0).getServiceType());
+    assertTrue(
+        repository.existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "account123", "OTHER_SERVICE_TYPE", begin, end));
+    assertFalse(
+        repository.existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "account123", "MISSING_SERVICE_TYPE", begin, end));
+  }
+
   @Test
   void testUniqueConstraints() {
     EventRecord e1 =
@@ -0,0 +1,60 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base class for repository tests that need PostgreSQL rather than HSQLDB, e.g. to exercise table
+ * partitioning and native SQL. The database runs in a container shared by every subclass, so a
+ * container runtime is required; without one these tests fail rather than being skipped.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class PostgresRepositoryTest {
+
+  private static final CentosPostgreSQLContainer POSTGRES =
+      new CentosPostgreSQLContainer()
+          .withDatabaseName("rhsm-subscriptions")
+          .withUsername("rhsm-subscriptions")
+          .withPassword("rhsm-subscriptions");
+
+  static {
+    // The build disables Ryuk, so nothing else would stop the container once the tests are done.
+    Runtime.getRuntime().addShutdownHook(new Thread(POSTGRES::stop));
+  }
+
+  @DynamicPropertySource
+  static void postgresProperties(DynamicPropertyRegistry registry) {
+    // Started only once, so that subclasses share both the database and the cached Spring context.
+    POSTGRES.start();
+    registry.add(
+        "rhsm-subscriptions.datasource.url",
+        () -> POSTGRES.getJdbcUrl() + "?reWriteBatchedInserts=true&stringtype=unspecified");
+    registry.add("rhsm-subscriptions.datasource.username", POSTGRES::getUsername);
+    registry.add("rhsm-subscriptions.datasource.password", POSTGRES::getPassword);
+    registry.add("rhsm-subscriptions.datasource.driver-class-name", () -> "org.postgresql.Driver");
+    registry.add("rhsm-subscriptions.datasource.platform", () -> "postgresql");
+  }
+}
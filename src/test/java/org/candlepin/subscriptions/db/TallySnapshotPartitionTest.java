@@ -0,0 +1,176 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+class TallySnapshotPartitionTest extends PostgresRepositoryTest {
+
+  private static final YearMonth FUTURE_MONTH = YearMonth.of(2099, 1);
+  private static final OffsetDateTime FUTURE_DATE =
+      FUTURE_MONTH.atDay(15).atStartOfDay().atOffset(ZoneOffset.UTC);
+
+  @Autowired private TallySnapshotRepository repository;
+
+  @Autowired
+  @Qualifier("rhsmSubscriptionsEntityManagerFactory")
+  private EntityManager em;
+
+  @Test
+  void testMeasurementsAreReadAndWrittenWithPartitionKeys() {
+    assertTrue(repository.isPartitioned());
+    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+    TallySnapshot saved = repository.saveAndFlush(snapshot(Granularity.HOURLY, now, 4.0));
+
+    saved.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, 8.0);
+    saved.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 2.0);
+    repository.saveAndFlush(saved);
+    em.clear();
+
+    TallySnapshot found = repository.findById(saved.getId()).orElseThrow();
+    assertEquals(8.0, found.getMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES));
+    assertEquals(2.0, found.getMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES));
+    assertEquals(2, countMeasurements(saved));
+  }
+
+  @Test
+  void testMeasurementWithoutSnapshotIsRejected() {
+    var insert =
+        em.createNativeQuery(
+                "insert into tally_measurements "
+                    + "(snapshot_id, granularity, snapshot_date, measurement_type, uom, value) "
+                    + "values (:id, 'HOURLY', :date, 'TOTAL', 'CORES', 1.0)")
+            .setParameter("id", UUID.randomUUID())
+            .setParameter("date", OffsetDateTime.now(ZoneOffset.UTC));
+
+    assertThrows(PersistenceException.class, insert::executeUpdate);
+  }
+
+  @Test
+  void testDeletingSnapshotCascadesToMeasurements() {
+    TallySnapshot saved =
+        repository.saveAndFlush(
+            snapshot(Granularity.DAILY, OffsetDateTime.now(ZoneOffset.UTC), 4.0));
+
+    em.createNativeQuery("delete from tally_snapshots where id = :id")
+        .setParameter("id", saved.getId())
+        .executeUpdate();
+
+    assertEquals(0, countMeasurements(saved));
+  }
+
+  @Test
+  void testCreateMonthlyPartitionMovesSnapshotsOutOfDefaultPartition() {
+    assertFalse(repository.findMonthlyPartitions(Granularity.HOURLY).contains(FUTURE_MONTH));
+    TallySnapshot inDefault =
+        repository.saveAndFlush(snapshot(Granularity.HOURLY, FUTURE_DATE, 4.0));
+
+    repository.createMonthlyPartition(Granularity.HOURLY, FUTURE_MONTH);
+    repository.createMonthlyPartition(Granularity.HOURLY, FUTURE_MONTH);
+    em.clear();
+
+    assertTrue(repository.findMonthlyPartitions(Granularity.HOURLY).contains(FUTURE_MONTH));
+    assertEquals(
+        0,
+        repository.deleteUnpartitionedSnapshotsBefore(
+            Granularity.HOURLY, FUTURE_DATE.plusYears(1)));
+    TallySnapshot found = repository.findById(inDefault.getId()).orElseThrow();
+    assertEquals(4.0, found.getMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES));
+  }
+
+  @Test
+  void testDropMonthlyPartitionDropsSnapshotsAndMeasurements() {
+    repository.createMonthlyPartition(Granularity.DAILY, FUTURE_MONTH);
+    TallySnapshot saved = repository.saveAndFlush(snapshot(Granularity.DAILY, FUTURE_DATE, 4.0));
+
+    repository.dropMonthlyPartition(Granularity.DAILY, FUTURE_MONTH);
+    em.clear();
+
+    assertFalse(repository.findMonthlyPartitions(Granularity.DAILY).contains(FUTURE_MONTH));
+    assertTrue(repository.findById(saved.getId()).isEmpty());
+    assertEquals(0, countMeasurements(saved));
+  }
+
+  @Test
+  void testDeleteUnpartitionedSnapshotsBefore() {
+    TallySnapshot expired =
+        repository.saveAndFlush(
+            snapshot(Granularity.MONTHLY, OffsetDateTime.parse("2020-01-01T00:00Z"), 4.0));
+    TallySnapshot kept = repository.saveAndFlush(snapshot(Granularity.MONTHLY, FUTURE_DATE, 4.0));
+
+    assertEquals(
+        1,
+        repository.deleteUnpartitionedSnapshotsBefore(
+            Granularity.MONTHLY, OffsetDateTime.parse("2021-01-01T00:00Z")));
+    em.clear();
+
+    assertTrue(repository.findById(expired.getId()).isEmpty());
+    assertEquals(0, countMeasurements(expired));
+    assertTrue(repository.findById(kept.getId()).isPresent());
+    assertEquals(1, countMeasurements(kept));
+  }
+
+  private int countMeasurements(TallySnapshot snapshot) {
+    return ((Number)
+            em.createNativeQuery(
+                    "select count(*) from tally_measurements where snapshot_id = :id "
+                        + "and granularity = :granularity and snapshot_date = :date")
+                .setParameter("id", snapshot.getId())
+                .setParameter("granularity", snapshot.getGranularity().name())
+                .setParameter("date", snapshot.getSnapshotDate())
+                .getSingleResult())
+        .intValue();
+  }
+
+  private TallySnapshot snapshot(Granularity granularity, OffsetDateTime date, double cores) {
+    TallySnapshot snapshot = new TallySnapshot();
+    snapshot.setAccountNumber("account123");
+    snapshot.setOwnerId("org123");
+    snapshot.setProductId("RHEL");
+    snapshot.setGranularity(granularity);
+    snapshot.setServiceLevel(ServiceLevel.PREMIUM);
+    snapshot.setUsage(Usage.PRODUCTION);
+    snapshot.setBillingProvider(BillingProvider._ANY);
+    snapshot.setBillingAccountId("_ANY");
+    snapshot.setSnapshotDate(date);
+    snapshot.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, cores);
+    return snapshot;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+class TallySnapshotUpsertTest extends PostgresRepositoryTest {
+
+  private static final OffsetDateTime SNAPSHOT_DATE =
+      OffsetDateTime.now(ZoneOffset.UTC).withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
+
+  @Autowired private TallySnapshotRepository repository;
+
+  @Autowired
+  @Qualifier("rhsmSubscriptionsEntityManagerFactory")
+  private EntityManager em;
+
+  @Test
+  void testUpsertAllReturnsPersistedIdOfExistingSnapshot() {
+    TallySnapshot existing = repository.saveAndFlush(snapshot(4.0));
+    UUID persistedId = existing.getId();
+    em.clear();
+
+    TallySnapshot updated = snapshot(8.0);
+    TallySnapshot created = snapshot(2.0);
+    created.setProductId("OpenShift Container Platform");
+    repository.upsertAll(List.of(updated, created));
+    em.clear();
+
+    assertEquals(persistedId, updated.getId());
+    TallySnapshot found = repository.findById(persistedId).orElseThrow();
+    assertEquals(8.0, found.getMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES));
+    assertTrue(repository.findById(created.getId()).isPresent());
+  }
+
+  private TallySnapshot snapshot(double cores) {
+    TallySnapshot snapshot = new TallySnapshot();
+    snapshot.setAccountNumber("account123");
+    snapshot.setOwnerId("org123");
+    snapshot.setProductId("RHEL");
+    snapshot.setGranularity(Granularity.DAILY);
+    snapshot.setServiceLevel(ServiceLevel.PREMIUM);
+    snapshot.setUsage(Usage.PRODUCTION);
+    snapshot.setBillingProvider(BillingProvider._ANY);
+    snapshot.setBillingAccountId("_ANY");
+    snapshot.setSnapshotDate(SNAPSHOT_DATE);
+    snapshot.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, cores);
+    return snapshot;
+  }
+}
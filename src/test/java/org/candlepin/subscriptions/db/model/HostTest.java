@@ -142,6 +142,7 @@ class HostTest {
     HostTallyBucket actualBucket = host.getBuckets().stream().findFirst().orElseThrow();
     assertEquals(2, actualBucket.getCores());
     assertEquals(2, actualBucket.getSockets());
+    assertTrue(host.getBuckets().contains(actualBucket));
   }
 
   private InventoryHostFacts getInventoryHostFactsFull() {
@@ -0,0 +1,144 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.inventory.db;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryDatabaseOperationsTest {
+  private static final List<String> ORG_IDS = List.of("org123");
+  private static final int ORG_SIZE = 10;
+  private static final int PAGE_SIZE = 3;
+
+  @Mock InventoryRepository repo;
+
+  @Test
+  void pagedProcessingVisitsEveryHostOnceInBoundedPages() {
+    AtomicInteger largestPage = new AtomicInteger();
+    stubPages(ORG_SIZE, largestPage);
+
+    List<Long> visited = new ArrayList<>();
+    new InventoryDatabaseOperations(repo)
+        .processHostFactsPaged(
+            ORG_IDS,
+            14,
+            PAGE_SIZE,
+            facts -> visited.add(facts.getInventoryId().getLeastSignificantBits()));
+
+    // hosts are visited once each, in inventory ID order
+    assertEquals(LongStream.rangeClosed(1, ORG_SIZE).boxed().collect(toList()), visited);
+    assertEquals(PAGE_SIZE, largestPage.get());
+    // pages of 3, 3, 3 and a short page of 1 that ends the iteration
+    verify(repo, times(4)).getFactsPage(eq(ORG_IDS), eq(14), any(), eq(PAGE_SIZE));
+  }
+
+  @Test
+  void pagedProcessingStopsAfterShortPage() {
+    when(repo.getFactsPage(eq(ORG_IDS), anyInt(), any(), anyInt()))
+        .thenAnswer(
+            invocation -> syntheticPage(UUID.fromString(invocation.getArgument(2)), 3, 5));
+
+    List<UUID> seen = new ArrayList<>();
+    new InventoryDatabaseOperations(repo)
+        .processHostFactsPaged(ORG_IDS, 14, 3, facts -> seen.add(facts.getInventoryId()));
+
+    assertEquals(5, seen.size());
+    verify(repo).getFactsPage(ORG_IDS, 14, new UUID(0L, 0L).toString(), 3);
+    verify(repo).getFactsPage(ORG_IDS, 14, new UUID(0L, 3L).toString(), 3);
+    verifyNoMoreInteractions(repo);
+  }
+
+  @Test
+  void streamedProcessingConsumesEachHostAsItIsReadAndClosesTheStream() {
+    AtomicLong read = new AtomicLong();
+    AtomicBoolean closed = new AtomicBoolean();
+    when(repo.getFacts(ORG_IDS, 14))
+        .thenReturn(
+            LongStream.rangeClosed(1, ORG_SIZE)
+                .peek(read::set)
+                .mapToObj(this::facts)
+                .onClose(() -> closed.set(true)));
+
+    List<Long> visited = new ArrayList<>();
+    new InventoryDatabaseOperations(repo)
+        .processHostFacts(
+            ORG_IDS,
+            14,
+            facts -> {
+              long id = facts.getInventoryId().getLeastSignificantBits();
+              // no host is read ahead of the one being processed
+              assertEquals(id, read.get());
+              visited.add(id);
+            });
+
+    assertEquals(LongStream.rangeClosed(1, ORG_SIZE).boxed().collect(toList()), visited);
+    assertTrue(closed.get());
+  }
+
+  private void stubPages(long orgSize, AtomicInteger largestPage) {
+    when(repo.getFactsPage(eq(ORG_IDS), anyInt(), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              List<InventoryHostFacts> page =
+                  syntheticPage(
+                      UUID.fromString(invocation.getArgument(2)),
+                      invocation.getArgument(3),
+                      orgSize);
+              largestPage.accumulateAndGet(page.size(), Math::max);
+              return page;
+            });
+  }
+
+  /** Hosts in the synthetic org have inventory IDs 1..orgSize in their low bits. */
+  private List<InventoryHostFacts> syntheticPage(
+      UUID afterInventoryId, int pageSize, long orgSize) {
+    long first = afterInventoryId.getLeastSignificantBits() + 1;
+    long last = Math.min(orgSize, first + pageSize - 1);
+    List<InventoryHostFacts> page = new ArrayList<>(pageSize);
+    for (long id = first; id <= last; id++) {
+      page.add(facts(id));
+    }
+    return page;
+  }
+
+  private InventoryHostFacts facts(long id) {
+    InventoryHostFacts facts = new InventoryHostFacts();
+    facts.setInventoryId(new UUID(0L, id));
+    facts.setOrgId(ORG_IDS.get(0));
+    return facts;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */package org.candlepin.subscriptions.metering.service.prometheus;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.candlepin.subscriptions.FixedClockConfiguration;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.MeteringException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController.SeriesEvents;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
+import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
+import org.candlepin.subscriptions.registry.TagMetaData;
+import org.candlepin.subscriptions.registry.TagMetric;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.retry.support.RetryTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PrometheusFleetMeteringControllerTest {
+
+  private static final String TAG = "OpenShift-metrics";
+
+  @Mock private PrometheusService service;
+  @Mock private PrometheusMeteringController meteringController;
+  @Mock private TagProfile tagProfile;
+
+  private final ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+  private final TagMetric tagMetric =
+      TagMetric.builder().tag(TAG).metricId("metric").uom(Uom.CORES).build();
+  private final TagMetaData tagMetaData =
+      TagMetaData.builder().tags(Set.of(TAG)).serviceType("OpenShift Cluster").build();
+  private final OffsetDateTime start = clock.startOfCurrentHour();
+  private final OffsetDateTime end = start.plusHours(1);
+  private final Map<String, SeriesEvents> eventsByAccount = new HashMap<>();
+  private MetricProperties metricProperties;
+  private PrometheusFleetMeteringController controller;
+
+  @BeforeEach
+  void setup() {
+    metricProperties = new MetricProperties();
+    metricProperties.setQueryTemplates(Map.of("default", "query{#{runtime[accountSelector]}}"));
+    when(tagProfile.getTagMetric(TAG, Uom.CORES)).thenReturn(Optional.of(tagMetric));
+    when(tagProfile.getTagMetaDataByTag(TAG)).thenReturn(Optional.of(tagMetaData));
+    controller =
+        new PrometheusFleetMeteringController(
+            clock,
+            metricProperties,
+            service,
+            new QueryBuilder(metricProperties),
+            meteringController,
+            RetryTemplate.builder().maxAttempts(1).build(),
+            tagProfile);
+  }
+
+  @Test
+  void testStreamsSeriesIntoTheEventsOfTheirAccount() {
+    mockAccountEvents();
+    mockStream(
+        handler -> {
+          series(handler, "a1", "c1");
+          series(handler, "a2", "c1");
+          series(handler, "a1", "c2");
+          series(handler, null, "c3");
+        });
+
+    controller.collectMetrics(TAG, Uom.CORES, start, end);
+
+    OffsetDateTime startDate = start.plusHours(1);
+    verify(service, times(1))
+        .streamRangeQuery(eq("query{ebs_account!=\"\"}"), any(), any(), any(), any(), any());
+    verify(meteringController).ensureOptIn("a1");
+    verify(meteringController).ensureOptIn("a2");
+    verify(meteringController).startEvents("a1", tagMetric, tagMetaData, startDate, end);
+    verify(meteringController).startEvents("a2", tagMetric, tagMetaData, startDate, end);
+    verify(events("a1"), times(2)).series(any());
+    verify(events("a1"), times(2)).sample(123456L, 1.0);
+    verify(events("a2")).series(any());
+    verify(meteringController).persistEvents(events("a1"));
+    verify(meteringController).persistEvents(events("a2"));
+    verify(meteringController, never()).flushEvents(any());
+  }
+
+  @Test
+  void testFlushesAccountEventsInBatches() {
+    metricProperties.setFleetEventBatchSize(2);
+    mockAccountEvents();
+    mockStream(
+        handler -> {
+          series(handler, "a1", "c1");
+          when(events("a1").pendingEvents()).thenReturn(1, 2, 1);
+          handler.sample(123457L, 2.0);
+          handler.sample(123458L, 3.0);
+        });
+
+    controller.collectMetrics(TAG, Uom.CORES, start, end);
+
+    verify(meteringController, times(1)).flushEvents(events("a1"));
+    verify(meteringController).persistEvents(events("a1"));
+  }
+
+  @Test
+  void testFailedAccountDoesNotStopOthers() {
+    mockAccountEvents();
+    mockStream(
+        handler -> {
+          series(handler, "a1", "c1");
+          series(handler, "a2", "c1");
+        });
+    doThrow(new RuntimeException("FORCED!!"))
+        .when(meteringController)
+        .persistEvents(events("a1"));
+
+    assertThrows(
+        MeteringException.class, () -> controller.collectMetrics(TAG, Uom.CORES, start, end));
+
+    verify(meteringController).persistEvents(events("a2"));
+  }
+
+  @Test
+  void testAccountFailingWhileReadingIsSkippedAndNotPersisted() {
+    mockAccountEvents();
+    mockStream(
+        handler -> {
+          series(handler, "a1", "c1");
+          doThrow(new RuntimeException("FORCED!!"))
+              .when(events("a1"))
+              .sample(123457L, 2.0);
+          handler.sample(123457L, 2.0);
+          series(handler, "a1", "c2");
+          series(handler, "a2", "c1");
+        });
+
+    assertThrows(
+        MeteringException.class, () -> controller.collectMetrics(TAG, Uom.CORES, start, end));
+
+    verify(meteringController, times(1)).startEvents(eq("a1"), any(), any(), any(), any());
+    verify(meteringController, never()).persistEvents(events("a1"));
+    verify(meteringController).persistEvents(events("a2"));
+  }
+
+  private void mockAccountEvents() {
+    when(meteringController.startEvents(anyString(), any(), any(), any(), any()))
+        .thenAnswer(invocation -> events(invocation.getArgument(0)));
+  }
+
+  private SeriesEvents events(String account) {
+    return eventsByAccount.computeIfAbsent(account, a -> mock(SeriesEvents.class));
+  }
+
+  private void mockStream(Consumer<SeriesHandler> series) {
+    doAnswer(
+            invocation -> {
+              series.accept(invocation.getArgument(5));
+              return null;
+            })
+        .when(service)
+        .streamRangeQuery(anyString(), any(), any(), any(), any(), any());
+  }
+
+  private static void series(SeriesHandler handler, String account, String clusterId) {
+    Map<String, String> labels = new HashMap<>();
+    labels.put("_id", clusterId);
+    if (account != null) {
+      labels.put(QueryBuilder.ACCOUNT_LABEL, account);
+    }
+    handler.series(labels);
+    handler.sample(123456L, 1.0);
+  }
+}
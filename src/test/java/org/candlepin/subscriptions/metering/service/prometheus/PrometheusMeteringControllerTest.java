@@ -27,7 +27,9 @@ import static org.mockito.Mockito.*;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -40,12 +42,15 @@ import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.json.Event;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.MeteringEventFactory;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController.SeriesEvents;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
 import org.candlepin.subscriptions.prometheus.model.QueryResult;
 import org.candlepin.subscriptions.prometheus.model.QueryResultData;
 import org.candlepin.subscriptions.prometheus.model.QueryResultDataResultInner;
 import org.candlepin.subscriptions.prometheus.model.ResultType;
 import org.candlepin.subscriptions.prometheus.model.StatusType;
+import org.candlepin.subscriptions.registry.TagMetaData;
+import org.candlepin.subscriptions.registry.TagMetric;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.security.OptInController;
 import org.candlepin.subscriptions.util.ApplicationClock;
@@ -424,6 +429,111 @@ class PrometheusMeteringControllerTest {
     assertTrue(purgeCaptor.getValue().contains(purgedEvent));
   }
 
+  @Test
+  void eventUpsertsDoNotLoadExistingEventsAndDeleteStaleEventsByBatch() {
+    BigDecimal time1 = BigDecimal.valueOf(123456.234);
+    BigDecimal val1 = BigDecimal.valueOf(100L);
+
+    QueryResult data =
+        buildOpenShiftClusterQueryResult(
+            expectedAccount,
+            expectedOrgId,
+            expectedClusterId,
+            expectedSla,
+            expectedUsage,
+            expectedBillingProvider,
+            expectedBillingAccountId,
+            List.of(List.of(time1, val1)));
+    when(service.runRangeQuery(
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            any(),
+            any(),
+            any(),
+            any()))
+        .thenReturn(data);
+
+    OffsetDateTime start = clock.startOfCurrentHour();
+    OffsetDateTime end = start.plusDays(1);
+
+    metricProperties.setEventUpsertEnabled(true);
+    try {
+      controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedAccount, start, end);
+    } finally {
+      metricProperties.setEventUpsertEnabled(false);
+    }
+
+    ArgumentCaptor<Collection> upsertCaptor = ArgumentCaptor.forClass(Collection.class);
+    ArgumentCaptor<UUID> batchCaptor = ArgumentCaptor.forClass(UUID.class);
+    verify(eventController).upsertAll(upsertCaptor.capture(), batchCaptor.capture());
+    verify(eventController)
+        .deleteStaleEvents(
+            expectedAccount,
+            MeteringEventFactory.EVENT_SOURCE,
+            MeteringEventFactory.getEventType(expectedMetricId),
+            start.plusHours(1).minusSeconds(metricProperties.getStep()),
+            end,
+            batchCaptor.getValue());
+    verify(eventController, never()).mapEventsInTimeRange(any(), any(), any(), any(), any());
+    verify(eventController, never()).saveAll(any());
+    verify(eventController, never()).deleteEvents(any());
+    assertEquals(1, upsertCaptor.getValue().size());
+  }
+
+  @Test
+  void flushedEventsAreNotWrittenAgainAndStaleEventsAreOnlyDeletedOnPersist() {
+    OffsetDateTime start = clock.startOfCurrentHour();
+    OffsetDateTime end = start.plusDays(1);
+    TagMetric tagMetric = tagProfile.getTagMetric("OpenShift-metrics", Uom.CORES).orElseThrow();
+    TagMetaData tagMetaData = tagProfile.getTagMetaDataByTag("OpenShift-metrics").orElseThrow();
+    Event staleEvent =
+        MeteringEventFactory.createMetricEvent(
+            expectedAccount,
+            expectedOrgId,
+            expectedMetricId,
+            "C2",
+            expectedSla,
+            expectedUsage,
+            expectedRole,
+            start,
+            start.plusHours(1),
+            expectedServiceType,
+            expectedBillingProvider,
+            expectedBillingAccountId,
+            expectedUom,
+            1.0);
+    Map<EventKey, Event> existing = new HashMap<>();
+    existing.put(EventKey.fromEvent(staleEvent), staleEvent);
+    when(eventController.mapEventsInTimeRange(eq(expectedAccount), any(), any(), any(), any()))
+        .thenReturn(existing);
+
+    SeriesEvents events =
+        controller.startEvents(expectedAccount, tagMetric, tagMetaData, start.plusHours(1), end);
+    events.series(
+        Map.of(
+            "_id", expectedClusterId,
+            "support", expectedSla,
+            "usage", expectedUsage,
+            "product", expectedRole,
+            "external_organization", expectedOrgId));
+    events.sample(1616787308L, 4.0);
+    controller.flushEvents(events);
+    verify(eventController, never()).deleteEvents(any());
+
+    // the same sample read again after the flush is not written twice
+    events.sample(1616787308L, 5.0);
+    events.sample(1616790908L, 6.0);
+    controller.persistEvents(events);
+
+    ArgumentCaptor<Collection> saveCaptor = ArgumentCaptor.forClass(Collection.class);
+    verify(eventController, times(2)).saveAll(saveCaptor.capture());
+    assertEquals(
+        List.of(1, 1),
+        saveCaptor.getAllValues().stream().map(Collection::size).collect(Collectors.toList()));
+    ArgumentCaptor<Collection> purgeCaptor = ArgumentCaptor.forClass(Collection.class);
+    verify(eventController).deleteEvents(purgeCaptor.capture());
+    assertEquals(List.of(staleEvent), List.copyOf(purgeCaptor.getValue()));
+  }
+
   @Test
   void verifyConflictingSlaCausesSavesFirstValue() {
     QueryResultDataResultInner standardResultItem =
@@ -0,0 +1,138 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.metering.service.prometheus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.candlepin.subscriptions.metering.MeteringException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
+import org.junit.jupiter.api.Test;
+
+class PrometheusQueryResultReaderTest {
+
+  private final PrometheusQueryResultReader reader = new PrometheusQueryResultReader();
+
+  @Test
+  void readsSeriesLabelsAndSamplesOfMatrixResult() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+            + "{\"metric\":{\"_id\":\"c1\",\"support\":\"Premium\"},"
+            + "\"values\":[[1616787308,\"4.5\"],[1616790908.000,\"5\"]]},"
+            + "{\"metric\":{\"_id\":\"c2\"},\"values\":[[1616787308,\"+Inf\"]]}]}}";
+
+    RecordingHandler handler = new RecordingHandler();
+    reader.read(stream(json), handler);
+
+    assertEquals(
+        List.of(
+            "series {_id=c1, support=Premium}",
+            "sample 1616787308 4.5",
+            "sample 1616790908 5.0",
+            "series {_id=c2}",
+            "sample 1616787308 Infinity"),
+        handler.calls);
+  }
+
+  @Test
+  void readsVectorResult() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+            + "{\"metric\":{\"_id\":\"c1\"},\"value\":[1616787308,\"2\"]}]}}";
+
+    RecordingHandler handler = new RecordingHandler();
+    reader.read(stream(json), handler);
+
+    assertEquals(List.of("series {_id=c1}", "sample 1616787308 2.0"), handler.calls);
+  }
+
+  @Test
+  void samplesReadBeforeLabelsAreHandledAfterSeriesStarts() throws IOException {
+    String json =
+        "{\"data\":{\"result\":[{\"values\":[[1616787308,\"1\"]],\"metric\":{\"_id\":\"c1\"}}]},"
+            + "\"status\":\"success\"}";
+
+    RecordingHandler handler = new RecordingHandler();
+    reader.read(stream(json), handler);
+
+    assertEquals(List.of("series {_id=c1}", "sample 1616787308 1.0"), handler.calls);
+  }
+
+  @Test
+  void ignoresUnknownFields() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"warnings\":[\"w\"],\"data\":{\"resultType\":\"matrix\","
+            + "\"stats\":{\"a\":{\"b\":1}},\"result\":[]}}";
+
+    RecordingHandler handler = new RecordingHandler();
+    reader.read(stream(json), handler);
+
+    assertTrue(handler.calls.isEmpty());
+  }
+
+  @Test
+  void errorStatusThrowsException() {
+    String json = "{\"status\":\"error\",\"errorType\":\"bad_data\",\"error\":\"parse error\"}";
+
+    RecordingHandler handler = new RecordingHandler();
+    MeteringException e =
+        assertThrows(MeteringException.class, () -> reader.read(stream(json), handler));
+    assertTrue(e.getMessage().contains("parse error"));
+  }
+
+  @Test
+  void malformedSampleThrowsException() {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"result\":["
+            + "{\"metric\":{},\"values\":[[1616787308,\"1\",\"2\"]]}]}}";
+
+    RecordingHandler handler = new RecordingHandler();
+    assertThrows(JsonParseException.class, () -> reader.read(stream(json), handler));
+  }
+
+  private InputStream stream(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static class RecordingHandler implements SeriesHandler {
+    private final List<String> calls = new ArrayList<>();
+
+    @Override
+    public void series(Map<String, String> labels) {
+      calls.add("series " + new TreeMap<>(labels));
+    }
+
+    @Override
+    public void sample(long epochSeconds, double value) {
+      calls.add("sample " + epochSeconds + " " + value);
+    }
+  }
+}
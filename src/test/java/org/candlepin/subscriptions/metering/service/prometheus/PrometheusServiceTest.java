@@ -21,11 +21,21 @@
 package org.candlepin.subscriptions.metering.service.prometheus;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.net.UrlEscapers;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.Map;
+import org.candlepin.subscriptions.exception.ExternalServiceException;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusQueryResultReader.SeriesHandler;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
+import org.candlepin.subscriptions.prometheus.ApiException;
 import org.candlepin.subscriptions.prometheus.api.ApiProvider;
 import org.candlepin.subscriptions.prometheus.api.StubApiProvider;
 import org.candlepin.subscriptions.prometheus.model.QueryResult;
@@ -73,6 +83,45 @@ class PrometheusServiceTest {
     assertEquals(expectedResult, result);
   }
 
+  @Test
+  void testStreamingRangeQuery() throws Exception {
+    QueryHelper queries = new QueryHelper(tagProfile, queryBuilder);
+    String query = queries.expectedQuery("OpenShift-metrics", "a1");
+    String expectedQuery = UrlEscapers.urlFragmentEscaper().escape(query);
+
+    OffsetDateTime end = OffsetDateTime.now();
+    OffsetDateTime start = end.minusDays(2);
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+            + "{\"metric\":{\"_id\":\"c1\"},\"values\":[[1616787308,\"4.5\"]]}]}}";
+
+    ApiProvider provider = mock(ApiProvider.class);
+    when(provider.queryRangeStream(
+            expectedQuery, start.toEpochSecond(), end.toEpochSecond(), "3600", 1))
+        .thenReturn(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    PrometheusService service = new PrometheusService(provider);
+
+    SeriesHandler handler = mock(SeriesHandler.class);
+    service.streamRangeQuery(query, start, end, 3600, 1, handler);
+
+    verify(handler).series(Map.of("_id", "c1"));
+    verify(handler).sample(1616787308L, 4.5);
+  }
+
+  @Test
+  void testStreamingRangeQueryWrapsApiErrors() throws Exception {
+    ApiProvider provider = mock(ApiProvider.class);
+    when(provider.queryRangeStream(any(), any(), any(), any(), any()))
+        .thenThrow(new ApiException(500, "failed"));
+    PrometheusService service = new PrometheusService(provider);
+
+    OffsetDateTime end = OffsetDateTime.now();
+    SeriesHandler handler = mock(SeriesHandler.class);
+    assertThrows(
+        ExternalServiceException.class,
+        () -> service.streamRangeQuery("up", end.minusDays(1), end, 3600, 1, handler));
+  }
+
   @Test
   void testQueryApi() throws Exception {
     QueryHelper queries = new QueryHelper(tagProfile, queryBuilder);
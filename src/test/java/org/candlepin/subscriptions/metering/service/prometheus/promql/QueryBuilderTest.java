@@ -103,4 +103,18 @@ class QueryBuilderTest {
     String query = builder.build(queryDesc);
     assertEquals(String.format("Account: %s Metric ID: %s", account, metricId), query);
   }
+
+  @Test
+  void accountAndFleetQueriesShareTheTemplate() {
+    MetricProperties props = new MetricProperties();
+    props.getQueryTemplates().put("default", "metric{#{runtime[accountSelector]}}");
+    QueryBuilder builder = new QueryBuilder(props);
+    TagMetric tagMetric = TagMetric.builder().queryKey("default").build();
+
+    QueryDescriptor accountQuery = new QueryDescriptor(tagMetric);
+    accountQuery.addRuntimeVar("account", "12345");
+    assertEquals("metric{ebs_account=\"12345\"}", builder.build(accountQuery));
+    assertEquals(
+        "metric{ebs_account!=\"\"}", builder.buildFleetQuery(new QueryDescriptor(tagMetric)));
+  }
 }
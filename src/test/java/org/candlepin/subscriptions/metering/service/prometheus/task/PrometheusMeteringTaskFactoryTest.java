@@ -29,7 +29,9 @@ import static org.mockito.Mockito.verify;
 import java.time.OffsetDateTime;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.PrometheusFleetMeteringController;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
+import org.candlepin.subscriptions.metering.task.FleetMetricsTask;
 import org.candlepin.subscriptions.metering.task.MetricsTask;
 import org.candlepin.subscriptions.task.Task;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -46,11 +48,13 @@ class PrometheusMeteringTaskFactoryTest {
 
   @Mock private PrometheusMeteringController controller;
 
+  @Mock private PrometheusFleetMeteringController fleetController;
+
   private PrometheusMeteringTaskFactory factory;
 
   @BeforeEach
   void before() {
-    this.factory = new PrometheusMeteringTaskFactory(controller);
+    this.factory = new PrometheusMeteringTaskFactory(controller, fleetController);
   }
 
   @Test
@@ -82,6 +86,26 @@ class PrometheusMeteringTaskFactoryTest {
     verify(controller).collectMetrics("OpenShift", Uom.CORES, "12234", start, end);
   }
 
+  @Test
+  void testOpenshiftFleetMetricsTaskCreation() {
+    ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+    OffsetDateTime end = clock.now();
+    OffsetDateTime start = end.minusDays(1);
+
+    Task task =
+        factory.build(
+            TaskDescriptor.builder(TaskType.METRICS_FLEET_COLLECTION, "a-group")
+                .setSingleValuedArg("productTag", "OpenShift")
+                .setSingleValuedArg("metric", "Cores")
+                .setSingleValuedArg("start", start.toString())
+                .setSingleValuedArg("end", end.toString())
+                .build());
+    assertTrue(task instanceof FleetMetricsTask);
+
+    task.execute();
+    verify(fleetController).collectMetrics("OpenShift", Uom.CORES, start, end);
+  }
+
   @Test
   void testOpenshiftMetricsTaskMissingAccount() {
     TaskDescriptor descriptor =
@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.metering.service.prometheus.task;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +32,7 @@ import java.util.Set;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusAccountSource;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -58,6 +60,8 @@ class PrometheusMetricsTaskManagerTest {
 
   @Mock private TagProfile tagProfile;
 
+  private MetricProperties metricProperties;
+
   private PrometheusMetricsTaskManager manager;
 
   @BeforeEach
@@ -65,9 +69,16 @@ class PrometheusMetricsTaskManagerTest {
     when(queueProperties.getTopic()).thenReturn(TASK_TOPIC);
     when(tagProfile.getSupportedMetricsForProduct(any())).thenReturn(Set.of(Uom.CORES));
     ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+    metricProperties = new MetricProperties();
     manager =
         new PrometheusMetricsTaskManager(
-            queue, queueProperties, accountSource, tagProfile, clock, new ApplicationProperties());
+            queue,
+            queueProperties,
+            accountSource,
+            tagProfile,
+            clock,
+            new ApplicationProperties(),
+            metricProperties);
   }
 
   @Test
@@ -117,4 +128,24 @@ class PrometheusMetricsTaskManagerTest {
     verify(queue).enqueue(account2Task);
     verifyNoMoreInteractions(queue);
   }
+
+  @Test
+  void updateForAllAccountsWithFleetQuery() {
+    metricProperties.setFleetQueryEnabled(true);
+    OffsetDateTime end = OffsetDateTime.now();
+    OffsetDateTime start = end.minusDays(1);
+
+    TaskDescriptor fleetTask =
+        TaskDescriptor.builder(TaskType.METRICS_FLEET_COLLECTION, TASK_TOPIC)
+            .setSingleValuedArg("productTag", TEST_PROFILE_ID)
+            .setSingleValuedArg("metric", "Cores")
+            .setSingleValuedArg("start", start.toString())
+            .setSingleValuedArg("end", end.toString())
+            .build();
+
+    manager.updateMetricsForAllAccounts(TEST_PROFILE_ID, start, end);
+    verify(queue).enqueue(fleetTask);
+    verifyNoMoreInteractions(queue);
+    verifyNoInteractions(accountSource);
+  }
 }
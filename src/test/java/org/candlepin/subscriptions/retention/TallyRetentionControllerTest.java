@@ -24,10 +24,14 @@ import static org.mockito.Mockito.*;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.YearMonth;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import org.candlepin.subscriptions.db.AccountListSource;
+import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.junit.jupiter.api.Test;
@@ -50,8 +54,10 @@ class TallyRetentionControllerTest {
   @MockBean private TallyRetentionPolicy policy;
   @MockBean private TallySnapshotRepository repository;
   @MockBean private AccountListSource accountListSource;
+  @MockBean private EventRecordRepository eventRecordRepository;
 
   @Autowired private TallyRetentionController controller;
+  @Autowired private EventRecordsRetentionProperties eventRecordsRetentionProperties;
 
   @Test
   void retentionControllerShouldRemoveSnapshotsForGranularitiesConfigured() throws Exception {
@@ -85,4 +91,103 @@ class TallyRetentionControllerTest {
         .deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(
             anyString(), eq(Granularity.DAILY), eq(cutoff));
   }
+
+  @Test
+  void testPurgeSnapshotsDropsExpiredPartitionsWhenPartitioned() throws Exception {
+    OffsetDateTime cutoff = OffsetDateTime.parse("2022-06-15T00:00:00Z");
+    when(policy.getCutoffDate(Granularity.HOURLY)).thenReturn(cutoff);
+    when(policy.getCutoffDate(Granularity.MONTHLY)).thenReturn(cutoff);
+    when(repository.isPartitioned()).thenReturn(true);
+    when(repository.findMonthlyPartitions(Granularity.HOURLY))
+        .thenReturn(
+            List.of(
+                YearMonth.of(2022, 4),
+                YearMonth.of(2022, 5),
+                YearMonth.of(2022, 6),
+                YearMonth.of(2022, 7)));
+
+    controller.purgeSnapshots();
+
+    verify(repository).dropMonthlyPartition(Granularity.HOURLY, YearMonth.of(2022, 4));
+    verify(repository).dropMonthlyPartition(Granularity.HOURLY, YearMonth.of(2022, 5));
+    verify(repository, never()).dropMonthlyPartition(Granularity.HOURLY, YearMonth.of(2022, 6));
+    verify(repository, never()).dropMonthlyPartition(Granularity.HOURLY, YearMonth.of(2022, 7));
+    verify(repository).deleteUnpartitionedSnapshotsBefore(Granularity.HOURLY, cutoff);
+    verify(repository).deleteUnpartitionedSnapshotsBefore(Granularity.MONTHLY, cutoff);
+    verify(repository, never())
+        .deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(any(), any(), any());
+    verifyNoInteractions(accountListSource);
+  }
+
+  @Test
+  void testMaintainSnapshotPartitionsCreatesUpcomingMonths() {
+    when(repository.isPartitioned()).thenReturn(true);
+
+    controller.maintainSnapshotPartitions();
+
+    YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+    for (Granularity granularity : TallySnapshotRepository.MONTHLY_PARTITIONED_GRANULARITIES) {
+      verify(repository).createMonthlyPartition(granularity, currentMonth);
+    }
+    verify(repository, never()).createMonthlyPartition(eq(Granularity.MONTHLY), any());
+  }
+
+  @Test
+  void testPurgeEventRecordsDeletesRowsWhenNotPartitioned() {
+    when(eventRecordRepository.isPartitionedByMonth()).thenReturn(false);
+
+    controller.purgeOldEventRecords();
+
+    verify(eventRecordRepository).deleteEventRecordsByTimestampBefore(any());
+    verify(eventRecordRepository, never()).dropMonthlyPartition(any());
+  }
+
+  @Test
+  void testPurgeEventRecordsOnlyDropsExpiredPartitions() {
+    OffsetDateTime cutoff =
+        OffsetDateTime.now()
+            .truncatedTo(ChronoUnit.DAYS)
+            .minus(eventRecordsRetentionProperties.getEventRetentionDuration());
+    YearMonth cutoffMonth = YearMonth.from(cutoff.withOffsetSameInstant(ZoneOffset.UTC));
+    List<YearMonth> partitions =
+        List.of(
+            cutoffMonth.minusMonths(3),
+            cutoffMonth.minusMonths(2),
+            cutoffMonth.minusMonths(1),
+            cutoffMonth,
+            cutoffMonth.plusMonths(1));
+    when(eventRecordRepository.isPartitionedByMonth()).thenReturn(true);
+    when(eventRecordRepository.findMonthlyPartitions()).thenReturn(partitions);
+
+    controller.purgeOldEventRecords();
+
+    // Retention is a handful of partition drops, no matter how many events they hold.
+    verify(eventRecordRepository).dropMonthlyPartition(cutoffMonth.minusMonths(3));
+    verify(eventRecordRepository).dropMonthlyPartition(cutoffMonth.minusMonths(2));
+    verify(eventRecordRepository).dropMonthlyPartition(cutoffMonth.minusMonths(1));
+    verify(eventRecordRepository, never()).dropMonthlyPartition(cutoffMonth);
+    verify(eventRecordRepository, never()).dropMonthlyPartition(cutoffMonth.plusMonths(1));
+    verify(eventRecordRepository).deleteDefaultPartitionEventsBefore(cutoff);
+    verify(eventRecordRepository, never()).deleteEventRecordsByTimestampBefore(any());
+  }
+
+  @Test
+  void testMaintainEventPartitionsCreatesUpcomingMonths() {
+    when(eventRecordRepository.isPartitionedByMonth()).thenReturn(true);
+
+    controller.maintainEventPartitions();
+
+    int monthsAhead = eventRecordsRetentionProperties.getPartitionMonthsAhead();
+    verify(eventRecordRepository, times(monthsAhead + 1)).createMonthlyPartition(any());
+    verify(eventRecordRepository).createMonthlyPartition(YearMonth.now(ZoneOffset.UTC));
+  }
+
+  @Test
+  void testMaintainEventPartitionsSkippedWhenNotPartitioned() {
+    when(eventRecordRepository.isPartitionedByMonth()).thenReturn(false);
+
+    controller.maintainEventPartitions();
+
+    verify(eventRecordRepository, never()).createMonthlyPartition(any());
+  }
 }
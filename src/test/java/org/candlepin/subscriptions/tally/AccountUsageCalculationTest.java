@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.tally;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.Usage;
@@ -69,6 +70,40 @@ class AccountUsageCalculationTest {
     assertThat(calc.getProducts(), Matchers.containsInAnyOrder(p1, p2, p3));
   }
 
+  @Test
+  void testIndexedCalculationsAreVisibleByKey() {
+    UsageKeySpace keySpace = new UsageKeySpace(List.of("Product1", "Product2"));
+    AccountUsageCalculation calc = new AccountUsageCalculation("Account1", keySpace);
+    int index = keySpace.indexOf(1, ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY);
+
+    UsageCalculation prodCalc = calc.getOrCreateIndexedCalculation(index);
+
+    assertSame(prodCalc, calc.getCalculation(createUsageKey("Product2")));
+    assertSame(prodCalc, calc.getOrCreateCalculation(createUsageKey("Product2")));
+    assertTrue(calc.containsCalculation(createUsageKey("Product2")));
+    assertThat(calc.getProducts(), Matchers.contains("Product2"));
+    assertEquals(1, calc.getKeys().size());
+  }
+
+  @Test
+  void testKeysOutsideKeySpaceUseMap() {
+    UsageKeySpace keySpace = new UsageKeySpace(List.of("Product1"));
+    AccountUsageCalculation calc = new AccountUsageCalculation("Account1", keySpace);
+    UsageCalculation.Key unknownProduct = createUsageKey("Product2");
+    UsageCalculation.Key billingAccount =
+        new UsageCalculation.Key(
+            "Product1", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.AWS, "aws-account");
+
+    assertEquals(-1, keySpace.indexOf(unknownProduct));
+    assertEquals(-1, keySpace.indexOf(billingAccount));
+    UsageCalculation unknownCalc = calc.getOrCreateCalculation(unknownProduct);
+    UsageCalculation billingCalc = calc.getOrCreateCalculation(billingAccount);
+
+    assertSame(unknownCalc, calc.getCalculation(unknownProduct));
+    assertSame(billingCalc, calc.getCalculation(billingAccount));
+    assertEquals(2, calc.getKeys().size());
+  }
+
   private UsageCalculation.Key createUsageKey(String productId) {
     return new UsageCalculation.Key(
         productId, ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
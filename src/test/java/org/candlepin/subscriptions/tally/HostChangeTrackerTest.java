@@ -0,0 +1,102 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.Host;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement;
+import org.candlepin.subscriptions.tally.HostChangeTracker.Entity;
+import org.candlepin.subscriptions.tally.HostChangeTracker.Operation;
+import org.junit.jupiter.api.Test;
+
+class HostChangeTrackerTest {
+
+  @Test
+  void testUnchangedHostsHaveNoChanges() {
+    Host host = host("instance1");
+    HostChangeTracker tracker = new HostChangeTracker(List.of(host));
+
+    host.setMeasurement(Measurement.Uom.CORES, 4.0);
+    addBucket(host, "RHEL", 4);
+
+    Map<Entity, Map<Operation, Integer>> changes = tracker.compare(List.of(host));
+    for (Map<Operation, Integer> counts : changes.values()) {
+      counts.values().forEach(count -> assertEquals(0, count));
+    }
+  }
+
+  @Test
+  void testCountsChangesByEntityAndOperation() {
+    Host changed = host("changed");
+    Host removed = host("removed");
+    HostChangeTracker tracker = new HostChangeTracker(List.of(changed, removed));
+
+    changed.setDisplayName("renamed");
+    changed.setMeasurement(Measurement.Uom.CORES, 8.0);
+    changed.setMeasurement(Measurement.Uom.SOCKETS, 2.0);
+    addBucket(changed, "RHEL", 8);
+    addBucket(changed, "RHEL Workstation", 8);
+    Host added = host("added");
+
+    Map<Entity, Map<Operation, Integer>> changes = tracker.compare(List.of(changed, added));
+
+    assertEquals(
+        Map.of(Operation.INSERT, 1, Operation.UPDATE, 1, Operation.DELETE, 1),
+        changes.get(Entity.HOST));
+    assertEquals(
+        Map.of(Operation.INSERT, 2, Operation.UPDATE, 1, Operation.DELETE, 1),
+        changes.get(Entity.BUCKET));
+    assertEquals(
+        Map.of(Operation.INSERT, 2, Operation.UPDATE, 1, Operation.DELETE, 1),
+        changes.get(Entity.MEASUREMENT));
+  }
+
+  private static Host host(String instanceId) {
+    Host host = new Host();
+    host.setId(UUID.randomUUID());
+    host.setInstanceId(instanceId);
+    host.setDisplayName(instanceId);
+    host.setMeasurement(Measurement.Uom.CORES, 4.0);
+    addBucket(host, "RHEL", 4);
+    return host;
+  }
+
+  private static void addBucket(Host host, String productId, int cores) {
+    host.addBucket(
+        productId,
+        ServiceLevel.PREMIUM,
+        Usage.PRODUCTION,
+        BillingProvider._ANY,
+        "_ANY",
+        false,
+        1,
+        cores,
+        HardwareMeasurementType.PHYSICAL);
+  }
+}
@@ -43,15 +43,21 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.Stream.Builder;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.HostRepository;
 import org.candlepin.subscriptions.db.model.*;
 import org.candlepin.subscriptions.db.model.config.AccountConfig;
+import org.candlepin.subscriptions.inventory.db.InventoryDatabaseOperations;
 import org.candlepin.subscriptions.inventory.db.InventoryRepository;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.util.ApplicationClock;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -78,6 +84,9 @@ class InventoryAccountUsageCollectorTest {
   @MockBean private AccountServiceInventoryRepository accountServiceInventoryRepository;
   @Autowired private InventoryAccountUsageCollector collector;
   @Autowired private MeterRegistry meterRegistry;
+  @Autowired private FactNormalizer factNormalizer;
+  @Autowired private InventoryDatabaseOperations inventoryDatabaseOperations;
+  @Autowired private ApplicationClock clock;
 
   @Test
   void hypervisorCountsIgnoredForNonRhelProduct() {
@@ -783,6 +792,221 @@ class InventoryAccountUsageCollectorTest {
     assertEquals(1, accountServiceInventory.getServiceInstances().size());
   }
 
+  @Test
+  void partitionedCollectionMatchesSequentialCollection() {
+    AccountConfig accountConfig = createAccountConfig("A1");
+    String account = accountConfig.getAccountNumber();
+    String orgId = accountConfig.getOrgId();
+
+    InventoryHostFacts hypervisor = createHypervisor(account, orgId, TEST_PRODUCT_ID);
+    hypervisor.setSystemProfileCoresPerSocket(4);
+    hypervisor.setSystemProfileSockets(3);
+    InventoryHostFacts guest1 =
+        createGuest(hypervisor.getSubscriptionManagerId(), account, orgId, TEST_PRODUCT_ID);
+    InventoryHostFacts guest2 =
+        createGuest(hypervisor.getSubscriptionManagerId(), account, orgId, TEST_PRODUCT_ID);
+    InventoryHostFacts unmappedGuest = createGuest(null, account, orgId, TEST_PRODUCT_ID);
+    unmappedGuest.setSystemProfileCoresPerSocket(2);
+    unmappedGuest.setSystemProfileSockets(1);
+    InventoryHostFacts physical1 =
+        createRhsmHost(
+            account,
+            orgId,
+            TEST_PRODUCT_ID.toString(),
+            ServiceLevel.PREMIUM,
+            "",
+            OffsetDateTime.now());
+    physical1.setSystemProfileCoresPerSocket(2);
+    physical1.setSystemProfileSockets(2);
+    InventoryHostFacts physical2 =
+        createRhsmHost(
+            account,
+            orgId,
+            TEST_PRODUCT_ID.toString(),
+            ServiceLevel.STANDARD,
+            "",
+            OffsetDateTime.now());
+    physical2.setSystemProfileCoresPerSocket(8);
+    physical2.setSystemProfileSockets(1);
+    List<InventoryHostFacts> hosts =
+        List.of(guest1, physical1, hypervisor, unmappedGuest, guest2, physical2);
+
+    when(inventoryRepo.getReportedHypervisors(List.of(orgId)))
+        .thenAnswer(
+            invocation ->
+                Stream.<Object[]>of(
+                    new Object[] {
+                      hypervisor.getSubscriptionManagerId(), hypervisor.getSubscriptionManagerId()
+                    }));
+    when(inventoryRepo.getFacts(eq(List.of(orgId)), anyInt()))
+        .thenAnswer(invocation -> hosts.stream());
+
+    ApplicationProperties partitionedProps = new ApplicationProperties();
+    partitionedProps.setHbiTallyParallelism(3);
+    partitionedProps.setHbiTallyPartitionSize(2);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      InventoryAccountUsageCollector partitionedCollector =
+          new InventoryAccountUsageCollector(
+              factNormalizer,
+              inventoryDatabaseOperations,
+              accountServiceInventoryRepository,
+              partitionedProps,
+              meterRegistry,
+              executor,
+              clock);
+
+      AccountUsageCalculation expected =
+          collector.collect(RHEL_PRODUCTS, accountConfig).get(account);
+      AccountUsageCalculation actual =
+          partitionedCollector.collect(RHEL_PRODUCTS, accountConfig).get(account);
+
+      assertEquals(expected.getOwner(), actual.getOwner());
+      assertEquals(expected.getProducts(), actual.getProducts());
+      assertEquals(expected.getKeys(), actual.getKeys());
+      for (UsageCalculation.Key key : expected.getKeys()) {
+        for (HardwareMeasurementType type : HardwareMeasurementType.values()) {
+          UsageCalculation.Totals expectedTotals = expected.getCalculation(key).getTotals(type);
+          UsageCalculation.Totals actualTotals = actual.getCalculation(key).getTotals(type);
+          assertEquals(
+              expectedTotals == null ? null : expectedTotals.getMeasurements(),
+              actualTotals == null ? null : actualTotals.getMeasurements(),
+              String.format("Totals differ for %s %s", key, type));
+        }
+      }
+
+      ArgumentCaptor<AccountServiceInventory> saved =
+          ArgumentCaptor.forClass(AccountServiceInventory.class);
+      verify(accountServiceInventoryRepository, times(2)).save(saved.capture());
+      AccountServiceInventory sequentialInventory = saved.getAllValues().get(0);
+      AccountServiceInventory partitionedInventory = saved.getAllValues().get(1);
+      assertEquals(
+          sequentialInventory.getServiceInstances().size(),
+          partitionedInventory.getServiceInstances().size());
+      Host sequentialHypervisor =
+          findBySubscriptionManagerId(sequentialInventory, hypervisor.getSubscriptionManagerId());
+      Host partitionedHypervisor =
+          findBySubscriptionManagerId(partitionedInventory, hypervisor.getSubscriptionManagerId());
+      assertEquals(2, partitionedHypervisor.getNumOfGuests().intValue());
+      assertEquals(
+          sequentialHypervisor.getBuckets().size(), partitionedHypervisor.getBuckets().size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void incrementalCollectionReadsOnlyModifiedHostsAndReplaysTheRest() {
+    AccountConfig accountConfig = createAccountConfig("A1");
+    String account = accountConfig.getAccountNumber();
+    String orgId = accountConfig.getOrgId();
+    OffsetDateTime watermark = clock.now().minusDays(1);
+
+    Host unchanged = new Host("inv-unchanged", "insights1", account, orgId, "subman1");
+    unchanged.setInstanceId("inv-unchanged");
+    unchanged.addBucket(
+        TEST_PRODUCT,
+        ServiceLevel._ANY,
+        Usage._ANY,
+        BillingProvider._ANY,
+        BILLING_ACCOUNT_ID_ANY,
+        true,
+        2,
+        4,
+        HardwareMeasurementType.PHYSICAL);
+    Host deleted = new Host("inv-deleted", "insights2", account, orgId, "subman2");
+    deleted.setInstanceId("inv-deleted");
+
+    AccountServiceInventory accountServiceInventory =
+        new AccountServiceInventory(account, "HBI_HOST");
+    accountServiceInventory.setModifiedOnWatermark(watermark);
+    accountServiceInventory.setLastFullReconciliation(watermark);
+    accountServiceInventory.getServiceInstances().put(unchanged.getInstanceId(), unchanged);
+    accountServiceInventory.getServiceInstances().put(deleted.getInstanceId(), deleted);
+    when(accountServiceInventoryRepository.findById(
+            new AccountServiceInventoryId(account, "HBI_HOST")))
+        .thenReturn(Optional.of(accountServiceInventory));
+
+    InventoryHostFacts modified =
+        createRhsmHost(account, orgId, List.of(TEST_PRODUCT_ID), "", OffsetDateTime.now());
+    modified.setSystemProfileCoresPerSocket(1);
+    modified.setSystemProfileSockets(2);
+    modified.setModifiedOn(watermark.plusHours(1));
+
+    mockReportedHypervisors(orgId, new HashMap<>());
+    when(inventoryRepo.getFactsModifiedSince(eq(List.of(orgId)), anyInt(), any()))
+        .thenReturn(Stream.of(modified));
+    when(inventoryRepo.getActiveInventoryIds(eq(List.of(orgId)), anyInt()))
+        .thenReturn(Stream.of("inv-unchanged", modified.getInventoryId().toString()));
+
+    ApplicationProperties incrementalProps = new ApplicationProperties();
+    incrementalProps.setHbiIncrementalTallyEnabled(true);
+    InventoryAccountUsageCollector incrementalCollector =
+        new InventoryAccountUsageCollector(
+            factNormalizer,
+            inventoryDatabaseOperations,
+            accountServiceInventoryRepository,
+            incrementalProps,
+            meterRegistry,
+            mock(ExecutorService.class),
+            clock);
+
+    Map<String, AccountUsageCalculation> calcs =
+        incrementalCollector.collect(RHEL_PRODUCTS, accountConfig);
+
+    verify(inventoryRepo, never()).getFacts(any(), any());
+    checkTotalsCalculation(calcs.get(account), account, orgId, TEST_PRODUCT, 6, 4, 2);
+    checkPhysicalTotalsCalculation(calcs.get(account), account, orgId, TEST_PRODUCT, 6, 4, 2);
+    assertEquals(
+        Set.of("inv-unchanged", modified.getInventoryId().toString()),
+        accountServiceInventory.getServiceInstances().keySet());
+    assertEquals(1, unchanged.getBuckets().size());
+    assertEquals(modified.getModifiedOn(), accountServiceInventory.getModifiedOnWatermark());
+    assertEquals(watermark, accountServiceInventory.getLastFullReconciliation());
+  }
+
+  @Test
+  void hostChangesAreOnlyCountedWhenTrackingIsEnabled() {
+    AccountConfig accountConfig = createAccountConfig("A1");
+    String account = accountConfig.getAccountNumber();
+    String orgId = accountConfig.getOrgId();
+    InventoryHostFacts host =
+        createRhsmHost(account, orgId, List.of(TEST_PRODUCT_ID), "", OffsetDateTime.now());
+
+    mockReportedHypervisors(orgId, new HashMap<>());
+    when(inventoryRepo.getFacts(eq(List.of(orgId)), anyInt()))
+        .thenAnswer(invocation -> Stream.of(host));
+
+    Counter insertedHosts =
+        meterRegistry.counter(
+            "rhsm-subscriptions.tally.hbi_host_changes", "entity", "host", "operation", "insert");
+    double initialCount = insertedHosts.count();
+    collector.collect(RHEL_PRODUCTS, accountConfig);
+    assertEquals(initialCount, insertedHosts.count());
+
+    ApplicationProperties trackingProps = new ApplicationProperties();
+    trackingProps.setHbiHostChangeTrackingEnabled(true);
+    InventoryAccountUsageCollector trackingCollector =
+        new InventoryAccountUsageCollector(
+            factNormalizer,
+            inventoryDatabaseOperations,
+            accountServiceInventoryRepository,
+            trackingProps,
+            meterRegistry,
+            mock(ExecutorService.class),
+            clock);
+    trackingCollector.collect(RHEL_PRODUCTS, accountConfig);
+    assertEquals(1, insertedHosts.count() - initialCount);
+  }
+
+  private Host findBySubscriptionManagerId(
+      AccountServiceInventory inventory, String subscriptionManagerId) {
+    return inventory.getServiceInstances().values().stream()
+        .filter(h -> subscriptionManagerId.equals(h.getSubscriptionManagerId()))
+        .findFirst()
+        .orElseThrow();
+  }
+
   private void checkTotalsCalculation(
       AccountUsageCalculation calc,
       String account,
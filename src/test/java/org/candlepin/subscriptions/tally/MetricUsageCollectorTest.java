@@ -37,8 +37,10 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Stream;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
+import org.candlepin.subscriptions.db.InstanceHourlyTotalRepository;
 import org.candlepin.subscriptions.db.model.*;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.json.Event;
@@ -69,6 +71,8 @@ class MetricUsageCollectorTest {
 
   @Mock EventController eventController;
 
+  @Mock InstanceHourlyTotalRepository instanceHourlyTotalRepository;
+
   ApplicationClock clock = new FixedClockConfiguration().fixedClock();
 
   static final String SERVICE_TYPE = "SERVICE TYPE";
@@ -79,10 +83,12 @@ class MetricUsageCollectorTest {
 
   static final String OSD_METRIC_ID = "OSD-METRIC-ID";
 
+  TagProfile profile;
+
   @BeforeEach
   void setup() {
 
-    TagProfile profile =
+    profile =
         TagProfile.builder()
             .tagMappings(
                 List.of(
@@ -603,6 +609,170 @@ class MetricUsageCollectorTest {
     assertEquals(0.0, staleInstance.getMonthlyTotal(monthId, Measurement.Uom.CORES));
   }
 
+  @Test
+  void testStreamingCollectFoldsEventsHourByHourFromSingleQuery() {
+    ApplicationProperties props = new ApplicationProperties();
+    props.setMetricTallyStreamingEnabled(true);
+    MetricUsageCollector streamingCollector =
+        new MetricUsageCollector(profile, accountRepo, null, eventController, clock, props);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime firstHour = clock.startOfCurrentHour().minusHours(3);
+    OffsetDateTime secondHour = firstHour.plusHours(2);
+    Event coresEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(firstHour.plusMinutes(5))
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(List.of(new Measurement().withUom(Uom.CORES).withValue(42.0)))
+            .withProductIds(List.of("1234"))
+            .withUsage(Event.Usage.PRODUCTION)
+            .withBillingProvider(Event.BillingProvider.RED_HAT)
+            .withBillingAccountId(Optional.of("sellerAcctId"));
+    Event instanceHoursEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(secondHour.plusMinutes(30))
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(List.of(new Measurement().withUom(Uom.INSTANCE_HOURS).withValue(1.0)))
+            .withProductIds(List.of("1234"))
+            .withUsage(Event.Usage.PRODUCTION)
+            .withBillingProvider(Event.BillingProvider.RED_HAT)
+            .withBillingAccountId(Optional.of("sellerAcctId"));
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(coresEvent, instanceHoursEvent));
+
+    var result =
+        streamingCollector.collect(
+            SERVICE_TYPE, "account123", new DateRange(firstHour, secondHour.plusHours(1)));
+
+    Mockito.verify(eventController, Mockito.times(1))
+        .fetchEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, firstHour, secondHour.plusHours(1));
+    assertEquals(Set.of(firstHour, secondHour), result.getCalculations().keySet());
+    UsageCalculation.Key usageCalculationKey =
+        new UsageCalculation.Key(
+            RHEL, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider.RED_HAT, "sellerAcctId");
+    UsageCalculation firstCalc =
+        result.getCalculations().get(firstHour).getCalculation(usageCalculationKey);
+    assertEquals(
+        42.0, firstCalc.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurement(Uom.CORES));
+    UsageCalculation secondCalc =
+        result.getCalculations().get(secondHour).getCalculation(usageCalculationKey);
+    // cores were not reported in the second hour, so they must not carry over
+    assertNull(secondCalc.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurement(Uom.CORES));
+    assertEquals(
+        1.0,
+        secondCalc.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurement(Uom.INSTANCE_HOURS));
+  }
+
+  @Test
+  void testCorrectsMonthlyTotalFromHourlyTotalsWhenEventsAreLate() {
+    ApplicationProperties props = new ApplicationProperties();
+    props.setMetricTallyIncrementalTotalsEnabled(true);
+    MetricUsageCollector incrementalCollector =
+        new MetricUsageCollector(
+            profile, accountRepo, instanceHourlyTotalRepository, eventController, clock, props);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime lastSeen = clock.startOfCurrentHour();
+    OffsetDateTime lateHour = lastSeen.minusHours(5);
+    String monthId = InstanceMonthlyTotalKey.formatMonthId(lateHour);
+
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    accountServiceInventory.setHourlyTotalsStart(clock.startOfCurrentMonth());
+    Host instance = new Host();
+    instance.setInstanceId(instanceId);
+    instance.setInstanceType(SERVICE_TYPE);
+    instance.setLastSeen(lastSeen);
+    instance.setMeasurement(Uom.CORES, 20.0);
+    instance.addToMonthlyTotal(monthId, Uom.CORES, 100.0);
+    accountServiceInventory.getServiceInstances().put(instanceId, instance);
+    InstanceHourlyTotal previousTotal =
+        new InstanceHourlyTotal(
+            InstanceHourlyTotalKey.of("account123", SERVICE_TYPE, instanceId, lateHour, Uom.CORES),
+            10.0);
+
+    Event lateEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(lateHour)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(List.of(new Measurement().withUom(Uom.CORES).withValue(15.0)))
+            .withUsage(Event.Usage.PRODUCTION);
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(lateEvent));
+    when(instanceHourlyTotalRepository.findInRange(any(), any(), any(), any()))
+        .thenReturn(List.of(previousTotal));
+
+    var result =
+        incrementalCollector.collect(
+            SERVICE_TYPE, "account123", new DateRange(lateHour, lateHour.plusHours(1)));
+
+    // only the late hour is re-read, instead of everything since the start of the month
+    assertEquals(new DateRange(lateHour, lateHour.plusHours(1)), result.getRange());
+    assertTrue(result.isWasRecalculated());
+    assertEquals(105.0, instance.getMonthlyTotal(monthId, Uom.CORES));
+    assertEquals(15.0, previousTotal.getValue());
+    // the late hour must not roll back the latest state of the instance
+    assertEquals(lastSeen, instance.getLastSeen());
+    assertEquals(20.0, instance.getMeasurement(Uom.CORES));
+  }
+
+  @Test
+  void testCorrectionKeepsLateStateOfInstanceNeverSeenBefore() {
+    ApplicationProperties props = new ApplicationProperties();
+    props.setMetricTallyIncrementalTotalsEnabled(true);
+    MetricUsageCollector incrementalCollector =
+        new MetricUsageCollector(
+            profile, accountRepo, instanceHourlyTotalRepository, eventController, clock, props);
+    OffsetDateTime lastSeen = clock.startOfCurrentHour();
+    OffsetDateTime lateHour = lastSeen.minusHours(5);
+
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    accountServiceInventory.setHourlyTotalsStart(clock.startOfCurrentMonth());
+    Host seenInstance = new Host();
+    seenInstance.setInstanceId(UUID.randomUUID().toString());
+    seenInstance.setInstanceType(SERVICE_TYPE);
+    seenInstance.setLastSeen(lastSeen);
+    seenInstance.setMeasurement(Uom.CORES, 20.0);
+    accountServiceInventory.getServiceInstances().put(seenInstance.getInstanceId(), seenInstance);
+    String unseenInstanceId = UUID.randomUUID().toString();
+    Host unseenInstance = new Host();
+    unseenInstance.setInstanceId(unseenInstanceId);
+    unseenInstance.setInstanceType(SERVICE_TYPE);
+    accountServiceInventory.getServiceInstances().put(unseenInstanceId, unseenInstance);
+
+    Event lateEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(lateHour)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(unseenInstanceId)
+            .withMeasurements(List.of(new Measurement().withUom(Uom.CORES).withValue(15.0)))
+            .withUsage(Event.Usage.PRODUCTION);
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(lateEvent));
+
+    var result =
+        incrementalCollector.collect(
+            SERVICE_TYPE, "account123", new DateRange(lateHour, lateHour.plusHours(1)));
+
+    assertEquals(new DateRange(lateHour, lateHour.plusHours(1)), result.getRange());
+    assertEquals(lateHour, unseenInstance.getLastSeen());
+    assertEquals(15.0, unseenInstance.getMeasurement(Uom.CORES));
+    assertEquals(lastSeen, seenInstance.getLastSeen());
+    assertEquals(20.0, seenInstance.getMeasurement(Uom.CORES));
+  }
+
   @Test
   void collectionThrowsExceptionWhenDateRangeIsNotRounded() {
     DateRange range = new DateRange(clock.startOfCurrentHour(), clock.now());
@@ -28,8 +28,13 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,7 +59,9 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 @ExtendWith(MockitoExtension.class)
 class SnapshotSummaryProducerTest {
@@ -65,15 +72,27 @@ class SnapshotSummaryProducerTest {
 
   private TaskQueueProperties props;
 
+  private TallySummaryProperties summaryProperties;
+
+  private SimpleMeterRegistry meterRegistry;
+
   private SnapshotSummaryProducer producer;
 
   @BeforeEach
   void setup() {
     props = new TaskQueueProperties();
     props.setTopic("summary-topic");
+    summaryProperties = new TallySummaryProperties();
+    meterRegistry = new SimpleMeterRegistry();
     RetryTemplate retryTemplate = new RetryTemplate();
     this.producer =
-        new SnapshotSummaryProducer(kafka, retryTemplate, props, new TallySummaryMapper());
+        new SnapshotSummaryProducer(
+            kafka,
+            retryTemplate,
+            props,
+            new TallySummaryMapper(),
+            summaryProperties,
+            meterRegistry);
   }
 
   @Test
@@ -188,6 +207,61 @@ class SnapshotSummaryProducerTest {
     verify(kafka, never()).send(anyString(), any());
   }
 
+  @Test
+  void testBatchedSummariesPackSnapshotsForAnAccountAndHour() {
+    summaryProperties.setBatchEnabled(true);
+    summaryProperties.setMaxSnapshotsPerMessage(2);
+    SettableListenableFuture<SendResult<String, TallySummary>> sent =
+        new SettableListenableFuture<>();
+    sent.set(null);
+    when(kafka.send(eq(props.getTopic()), any(TallySummary.class))).thenReturn(sent);
+
+    OffsetDateTime hour = OffsetDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    List<TallySnapshot> snapshots = new ArrayList<>();
+    for (Usage usage : List.of(Usage.PRODUCTION, Usage.DEVELOPMENT_TEST, Usage.DISASTER_RECOVERY)) {
+      TallySnapshot snapshot =
+          buildSnapshot(
+              "a1",
+              "org1",
+              "OSD",
+              Granularity.HOURLY,
+              ServiceLevel.PREMIUM,
+              usage,
+              BillingProvider.RED_HAT,
+              Uom.CORES,
+              20.4);
+      snapshot.setSnapshotDate(hour);
+      snapshots.add(snapshot);
+    }
+    TallySnapshot withoutMeasurements =
+        buildSnapshot(
+            "a1",
+            "org1",
+            "OSD",
+            Granularity.HOURLY,
+            ServiceLevel.STANDARD,
+            Usage.PRODUCTION,
+            BillingProvider.RED_HAT,
+            Uom.CORES,
+            1.0);
+    withoutMeasurements.setSnapshotDate(hour);
+    withoutMeasurements.getTallyMeasurements().clear();
+    snapshots.add(withoutMeasurements);
+
+    producer.produceTallySummaryMessages(Map.of("a1", snapshots));
+
+    verify(kafka, times(2)).send(eq(props.getTopic()), summaryCaptor.capture());
+    assertEquals(
+        List.of(2, 1),
+        summaryCaptor.getAllValues().stream()
+            .map(summary -> summary.getTallySnapshots().size())
+            .collect(Collectors.toList()));
+    DistributionSummary perMessage =
+        meterRegistry.get("rhsm-subscriptions.tally.summary_snapshots_per_message").summary();
+    assertEquals(2, perMessage.count());
+    assertEquals(1.5, perMessage.mean());
+  }
+
   void assertMeasurement(
       Map<String, List<TallyMeasurement>> measurements,
       String hardwareType,
@@ -20,23 +20,39 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.google.common.collect.ImmutableMap;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountConfigRepository;
+import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.config.AccountConfig;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.util.DateRange;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
+@SpringBootTest(properties = "rhsm-subscriptions.hourly-tally-service-type-parallelism=2")
 @ActiveProfiles({"worker", "test"})
 class TallySnapshotControllerTest {
 
@@ -53,10 +69,29 @@ class TallySnapshotControllerTest {
 
   @MockBean InventoryAccountUsageCollector inventoryCollector;
 
+  @MockBean CombiningRollupSnapshotStrategy combiningRollupSnapshotStrategy;
+
+  @MockBean SnapshotSummaryProducer summaryProducer;
+
   @Autowired ApplicationProperties props;
 
+  @Autowired TagProfile tagProfile;
+
+  @Autowired
+  @Qualifier("hourlyTallyExecutor")
+  ExecutorService hourlyTallyExecutor;
+
+  @Autowired ConfigurableListableBeanFactory beanFactory;
+
+  private final DateRange hourlyRange =
+      new DateRange(
+          OffsetDateTime.of(2022, 10, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+          OffsetDateTime.of(2022, 10, 1, 1, 0, 0, 0, ZoneOffset.UTC));
+
   private boolean defaultCloudigradeIntegrationEnablement;
 
+  private int defaultHourlyParallelism;
+
   @BeforeEach
   void setup() {
     AccountConfig accountConfig = new AccountConfig(ACCOUNT);
@@ -64,6 +99,7 @@ class TallySnapshotControllerTest {
     when(accountRepo.findById(ACCOUNT)).thenReturn(Optional.of(accountConfig));
 
     defaultCloudigradeIntegrationEnablement = props.isCloudigradeEnabled();
+    defaultHourlyParallelism = props.getHourlyTallyServiceTypeParallelism();
     when(inventoryCollector.collect(any(), any()))
         .thenReturn(ImmutableMap.of(ACCOUNT, new AccountUsageCalculation(ACCOUNT)));
   }
@@ -71,6 +107,7 @@ class TallySnapshotControllerTest {
   @AfterEach
   void restore() {
     props.setCloudigradeEnabled(defaultCloudigradeIntegrationEnablement);
+    props.setHourlyTallyServiceTypeParallelism(defaultHourlyParallelism);
   }
 
   @Test
@@ -106,4 +143,102 @@ class TallySnapshotControllerTest {
     controller.produceSnapshotsForAccount(ACCOUNT);
     verifyNoInteractions(cloudigradeCollector);
   }
+
+  @Test
+  void testHourlyServiceTypesTalliedConcurrentlyWithinBound() {
+    Set<String> serviceTypes = tagProfile.getServiceTypes();
+    assertTrue(serviceTypes.size() > 2, "needs more service types than threads");
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch overlapping = new CountDownLatch(2);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    MetricUsageCollector.CollectionResult result = collectionResult();
+    when(metricUsageCollector.collect(any(), eq(ACCOUNT), eq(hourlyRange)))
+        .thenAnswer(
+            invocation -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              threadNames.add(Thread.currentThread().getName());
+              // Hold the first two service types until both are running at once.
+              overlapping.countDown();
+              overlapping.await(10, TimeUnit.SECONDS);
+              running.decrementAndGet();
+              return result;
+            });
+
+    controller.produceHourlySnapshotsForAccount(ACCOUNT, hourlyRange);
+
+    assertEquals(2, maxRunning.get());
+    assertTrue(threadNames.stream().allMatch(name -> name.startsWith("hourly-tally-")));
+    for (String serviceType : serviceTypes) {
+      verify(metricUsageCollector).collect(serviceType, ACCOUNT, hourlyRange);
+      verify(combiningRollupSnapshotStrategy)
+          .produceSnapshotsFromCalculations(
+              eq(ACCOUNT),
+              eq(hourlyRange),
+              eq(tagProfile.getTagsForServiceType(serviceType)),
+              any(),
+              eq(Granularity.HOURLY),
+              any());
+    }
+    verify(summaryProducer, times(serviceTypes.size())).produceTallySummaryMessages(any());
+  }
+
+  @Test
+  void testHourlyServiceTypeFailureDoesNotDropOthers() {
+    Set<String> serviceTypes = tagProfile.getServiceTypes();
+    String failingServiceType = serviceTypes.iterator().next();
+    MetricUsageCollector.CollectionResult result = collectionResult();
+    when(metricUsageCollector.collect(any(), eq(ACCOUNT), eq(hourlyRange))).thenReturn(result);
+    when(metricUsageCollector.collect(failingServiceType, ACCOUNT, hourlyRange))
+        .thenThrow(new IllegalStateException("Prometheus unavailable"));
+
+    controller.produceHourlySnapshotsForAccount(ACCOUNT, hourlyRange);
+
+    verify(combiningRollupSnapshotStrategy, never())
+        .produceSnapshotsFromCalculations(
+            any(),
+            any(),
+            eq(tagProfile.getTagsForServiceType(failingServiceType)),
+            any(),
+            any(),
+            any());
+    verify(summaryProducer, times(serviceTypes.size() - 1)).produceTallySummaryMessages(any());
+  }
+
+  @Test
+  void testHourlyServiceTypesTalliedOnCallingThreadWithoutParallelism() {
+    props.setHourlyTallyServiceTypeParallelism(1);
+    String callingThread = Thread.currentThread().getName();
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    MetricUsageCollector.CollectionResult result = collectionResult();
+    when(metricUsageCollector.collect(any(), eq(ACCOUNT), eq(hourlyRange)))
+        .thenAnswer(
+            invocation -> {
+              threadNames.add(Thread.currentThread().getName());
+              return result;
+            });
+
+    controller.produceHourlySnapshotsForAccount(ACCOUNT, hourlyRange);
+
+    assertEquals(Set.of(callingThread), threadNames);
+    verify(summaryProducer, times(tagProfile.getServiceTypes().size()))
+        .produceTallySummaryMessages(any());
+  }
+
+  @Test
+  void testHourlyTallyExecutorIsBoundedAndShutDownWithContext() {
+    ThreadPoolExecutor executor = assertInstanceOf(ThreadPoolExecutor.class, hourlyTallyExecutor);
+    assertEquals(2, executor.getCorePoolSize());
+    assertEquals(2, executor.getMaximumPoolSize());
+    assertEquals(
+        "shutdown", beanFactory.getBeanDefinition("hourlyTallyExecutor").getDestroyMethodName());
+  }
+
+  private MetricUsageCollector.CollectionResult collectionResult() {
+    MetricUsageCollector.CollectionResult result =
+        mock(MetricUsageCollector.CollectionResult.class);
+    when(result.getRange()).thenReturn(hourlyRange);
+    when(result.getCalculations()).thenReturn(Map.of());
+    return result;
+  }
 }
@@ -31,6 +31,7 @@ import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.tally.MarketplaceResendTallyController;
 import org.candlepin.subscriptions.tally.TallySnapshotController;
+import org.candlepin.subscriptions.tally.billing.BillableUsageTotalController;
 import org.candlepin.subscriptions.tally.billing.RemittanceController;
 import org.candlepin.subscriptions.tally.job.CaptureSnapshotsTaskManager;
 import org.candlepin.subscriptions.util.ApplicationClock;
@@ -48,6 +49,7 @@ class InternalTallyResourceTest {
   @Mock private RemittanceController remittanceController;
   @Mock private TallySnapshotController snapshotController;
   @Mock private CaptureSnapshotsTaskManager snapshotTaskManager;
+  @Mock private BillableUsageTotalController billableUsageTotalController;
 
   private InternalTallyResource resource;
   private ApplicationProperties appProps;
@@ -63,6 +65,7 @@ class InternalTallyResourceTest {
             appProps,
             resendTallyController,
             remittanceController,
+            billableUsageTotalController,
             snapshotController,
             snapshotTaskManager);
   }
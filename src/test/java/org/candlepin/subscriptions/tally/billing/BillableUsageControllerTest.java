@@ -26,7 +26,9 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.db.BillableUsageRemittanceRepository;
@@ -38,6 +40,7 @@ import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.InstanceMonthlyTotalKey;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyMeasurementTotalView;
 import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.json.BillableUsage.BillingProvider;
 import org.candlepin.subscriptions.json.BillableUsage.Sla;
@@ -60,12 +63,14 @@ class BillableUsageControllerTest {
   @Mock BillingProducer producer;
   @Mock BillableUsageRemittanceRepository remittanceRepo;
   @Mock TallySnapshotRepository snapshotRepo;
+  @Mock BillableUsageTotalController totalController;
 
   BillableUsageController controller;
 
   @BeforeEach
   void setup() {
-    controller = new BillableUsageController(clock, producer, remittanceRepo, snapshotRepo);
+    controller =
+        new BillableUsageController(clock, producer, remittanceRepo, snapshotRepo, totalController);
   }
 
   @Test
@@ -120,6 +125,58 @@ class BillableUsageControllerTest {
     verifyNoMoreInteractions(remittanceRepo);
   }
 
+  @Test
+  void monthlyWindowBatchResolvesRemittancesAndTotalsInBulk() {
+    OffsetDateTime firstHour = clock.startOfCurrentMonth().plusHours(1);
+    OffsetDateTime secondHour = clock.startOfCurrentMonth().plusHours(2);
+    BillableUsage first = billable(firstHour, 1.5);
+    BillableUsage second = billable(secondHour, 1.2);
+    BillableUsageRemittanceEntity currentRemittance =
+        remittance(first, clock.now().minusHours(1), 1.0);
+    when(remittanceRepo.findAllById(Set.of(keyFrom(first))))
+        .thenReturn(List.of(currentRemittance));
+    when(snapshotRepo.sumMeasurementValuesBySnapshotDate(
+            Set.of(first.getAccountNumber()),
+            Set.of(first.getProductId()),
+            Set.of(first.getBillingAccountId()),
+            Granularity.HOURLY,
+            clock.startOfCurrentMonth(),
+            secondHour,
+            new TallyMeasurementKey(
+                HardwareMeasurementType.PHYSICAL,
+                Measurement.Uom.fromValue(first.getUom().value()))))
+        .thenReturn(List.of(measuredTotal(first), measuredTotal(second)));
+
+    controller.submitBillableUsages(BillingWindow.MONTHLY, List.of(first, second));
+
+    // 1.5 rounds up to 2.0 and 2.7 rounds up to 3.0, with 1.0 already remitted.
+    BillableUsage expectedFirst = billable(firstHour, 1.0);
+    expectedFirst.setId(first.getId());
+    BillableUsage expectedSecond = billable(secondHour, 1.0);
+    expectedSecond.setId(second.getId());
+    verify(remittanceRepo).saveAll(List.of(remittance(first, clock.now(), 3.0)));
+    verify(producer).produce(expectedFirst);
+    verify(producer).produce(expectedSecond);
+  }
+
+  @Test
+  void monthlyWindowUsesRunningTotalWhenEnabled() {
+    BillableUsage usage = billable(clock.startOfCurrentMonth(), 2.3);
+    BillableUsageRemittanceEntity currentRemittance =
+        remittance(usage, clock.now().minusHours(1), 3.0);
+    when(totalController.isEnabled()).thenReturn(true);
+    when(totalController.getMonthToDateTotal(usage)).thenReturn(Optional.of(4.4));
+    when(remittanceRepo.findById(keyFrom(usage))).thenReturn(Optional.of(currentRemittance));
+    controller.submitBillableUsage(BillingWindow.MONTHLY, usage);
+
+    BillableUsageRemittanceEntity expectedRemittance = remittance(usage, clock.now(), 5.0);
+    BillableUsage expectedUsage = billable(usage.getSnapshotDate(), 2.0);
+    expectedUsage.setId(usage.getId()); // Id will be regenerated above.
+    verify(remittanceRepo).save(expectedRemittance);
+    verify(producer).produce(expectedUsage);
+    verifyNoInteractions(snapshotRepo);
+  }
+
   private BillableUsage billable(OffsetDateTime date, Double value) {
     return new BillableUsage()
         .withAccountNumber("account123")
@@ -167,6 +224,51 @@ class BillableUsageControllerTest {
         .thenReturn(sum);
   }
 
+  private TallyMeasurementTotalView measuredTotal(BillableUsage usage) {
+    return new TallyMeasurementTotalView() {
+      @Override
+      public String getAccountNumber() {
+        return usage.getAccountNumber();
+      }
+
+      @Override
+      public String getProductId() {
+        return usage.getProductId();
+      }
+
+      @Override
+      public ServiceLevel getServiceLevel() {
+        return ServiceLevel.fromString(usage.getSla().value());
+      }
+
+      @Override
+      public org.candlepin.subscriptions.db.model.Usage getUsage() {
+        return org.candlepin.subscriptions.db.model.Usage.fromString(usage.getUsage().value());
+      }
+
+      @Override
+      public org.candlepin.subscriptions.db.model.BillingProvider getBillingProvider() {
+        return org.candlepin.subscriptions.db.model.BillingProvider.fromString(
+            usage.getBillingProvider().value());
+      }
+
+      @Override
+      public String getBillingAccountId() {
+        return usage.getBillingAccountId();
+      }
+
+      @Override
+      public OffsetDateTime getSnapshotDate() {
+        return usage.getSnapshotDate();
+      }
+
+      @Override
+      public Double getTotal() {
+        return usage.getValue();
+      }
+    };
+  }
+
   private BillableUsageRemittanceEntity remittance(
       BillableUsage usage, OffsetDateTime remittedDate, Double value) {
     BillableUsageRemittanceEntityPK remKey = keyFrom(usage);
@@ -0,0 +1,202 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.FixedClockConfiguration;
+import org.candlepin.subscriptions.db.BillableUsageTotalRepository;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.BillableUsageRemittanceEntityPK;
+import org.candlepin.subscriptions.db.model.BillableUsageTotal;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyMeasurementTotalView;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BillableUsageTotalControllerTest {
+
+  private static final TallyMeasurementKey STORAGE =
+      new TallyMeasurementKey(HardwareMeasurementType.PHYSICAL, Uom.STORAGE_GIBIBYTES);
+
+  private final ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+
+  @Mock BillableUsageTotalRepository totalRepo;
+  @Mock TallySnapshotRepository snapshotRepo;
+  @Captor ArgumentCaptor<Collection<BillableUsageTotal>> totalsCaptor;
+
+  BillableUsageTotalController controller;
+
+  @BeforeEach
+  void setup() {
+    ApplicationProperties properties = new ApplicationProperties();
+    properties.setBillableUsageRunningTotalsEnabled(true);
+    controller = new BillableUsageTotalController(clock, totalRepo, snapshotRepo, properties);
+  }
+
+  @Test
+  void appliesHourlyDifferenceToExistingRunningTotal() {
+    OffsetDateTime hour = clock.startOfCurrentMonth().plusHours(3);
+    TallySnapshot snapshot = snapshot(hour, 5.0);
+    BillableUsageRemittanceEntityPK key = keyFor(hour);
+    BillableUsageTotal existing =
+        new BillableUsageTotal(key, 10.0, clock.startOfCurrentMonth().plusHours(1));
+    when(totalRepo.findAllById(Set.of(key))).thenReturn(List.of(existing));
+
+    controller.recordHourlyChanges(
+        List.of(new BillableUsageTotalController.HourlyChange(snapshot, Map.of(STORAGE, 2.0))));
+
+    verify(totalRepo).saveAll(totalsCaptor.capture());
+    assertEquals(
+        List.of(new BillableUsageTotal(key, 13.0, hour)), new ArrayList<>(totalsCaptor.getValue()));
+  }
+
+  @Test
+  void seedsMissingRunningTotalFromSavedSnapshots() {
+    OffsetDateTime earlierHour = clock.startOfCurrentMonth().plusHours(1);
+    OffsetDateTime hour = clock.startOfCurrentMonth().plusHours(3);
+    TallySnapshot snapshot = snapshot(hour, 5.0);
+    BillableUsageRemittanceEntityPK key = keyFor(hour);
+    when(totalRepo.findAllById(Set.of(key))).thenReturn(List.of());
+    when(snapshotRepo.sumMeasurementValuesBySnapshotDate(
+            Set.of("account123"),
+            Set.of("rhosak"),
+            Set.of("aws-account1"),
+            Granularity.HOURLY,
+            clock.startOfCurrentMonth(),
+            clock.endOfCurrentMonth(),
+            STORAGE))
+        .thenReturn(List.of(measuredTotal(earlierHour, 2.0), measuredTotal(hour, 5.0)));
+
+    controller.recordHourlyChanges(
+        List.of(new BillableUsageTotalController.HourlyChange(snapshot, Map.of())));
+
+    verify(totalRepo).saveAll(totalsCaptor.capture());
+    assertEquals(
+        List.of(new BillableUsageTotal(key, 7.0, hour)), new ArrayList<>(totalsCaptor.getValue()));
+  }
+
+  @Test
+  void ignoresSnapshotsThatAreNotBillable() {
+    TallySnapshot snapshot = snapshot(clock.startOfCurrentMonth(), 5.0);
+    snapshot.setServiceLevel(ServiceLevel._ANY);
+
+    controller.recordHourlyChanges(
+        List.of(new BillableUsageTotalController.HourlyChange(snapshot, Map.of())));
+
+    verify(totalRepo, never()).saveAll(any());
+  }
+
+  @Test
+  void reconcileCorrectsDriftedRunningTotals() {
+    OffsetDateTime hour = clock.startOfCurrentMonth().plusHours(3);
+    BillableUsageTotal total = new BillableUsageTotal(keyFor(hour), 3.0, hour);
+    when(totalRepo.findByKeyAccumulationPeriod(any())).thenReturn(Stream.empty());
+    when(totalRepo.findByKeyAccumulationPeriod(
+            BillableUsageRemittanceEntityPK.getAccumulationPeriod(hour)))
+        .thenReturn(Stream.of(total));
+    when(snapshotRepo.sumMeasurementValueForPeriod(
+            eq("account123"),
+            eq("rhosak"),
+            eq(Granularity.HOURLY),
+            eq(ServiceLevel.PREMIUM),
+            eq(Usage.PRODUCTION),
+            eq(BillingProvider.AWS),
+            eq("aws-account1"),
+            eq(clock.startOfCurrentMonth()),
+            any(),
+            eq(STORAGE)))
+        .thenReturn(4.0);
+
+    assertEquals(1, controller.reconcileTotals());
+    assertEquals(4.0, total.getTotalValue());
+  }
+
+  private TallySnapshot snapshot(OffsetDateTime date, double value) {
+    TallySnapshot snapshot =
+        TallySnapshot.builder()
+            .accountNumber("account123")
+            .productId("rhosak")
+            .granularity(Granularity.HOURLY)
+            .serviceLevel(ServiceLevel.PREMIUM)
+            .usage(Usage.PRODUCTION)
+            .billingProvider(BillingProvider.AWS)
+            .billingAccountId("aws-account1")
+            .snapshotDate(date)
+            .build();
+    snapshot.setMeasurement(STORAGE.getMeasurementType(), STORAGE.getUom(), value);
+    return snapshot;
+  }
+
+  private BillableUsageRemittanceEntityPK keyFor(OffsetDateTime date) {
+    return BillableUsageRemittanceEntityPK.builder()
+        .accountNumber("account123")
+        .productId("rhosak")
+        .metricId(Uom.STORAGE_GIBIBYTES.value())
+        .accumulationPeriod(BillableUsageRemittanceEntityPK.getAccumulationPeriod(date))
+        .sla(ServiceLevel.PREMIUM.getValue())
+        .usage(Usage.PRODUCTION.getValue())
+        .billingProvider(BillingProvider.AWS.getValue())
+        .billingAccountId("aws-account1")
+        .build();
+  }
+
+  private TallyMeasurementTotalView measuredTotal(OffsetDateTime date, double value) {
+    TallyMeasurementTotalView view = mock(TallyMeasurementTotalView.class);
+    when(view.getAccountNumber()).thenReturn("account123");
+    when(view.getProductId()).thenReturn("rhosak");
+    when(view.getServiceLevel()).thenReturn(ServiceLevel.PREMIUM);
+    when(view.getUsage()).thenReturn(Usage.PRODUCTION);
+    when(view.getBillingProvider()).thenReturn(BillingProvider.AWS);
+    when(view.getBillingAccountId()).thenReturn("aws-account1");
+    when(view.getSnapshotDate()).thenReturn(date);
+    when(view.getTotal()).thenReturn(value);
+    return view;
+  }
+}
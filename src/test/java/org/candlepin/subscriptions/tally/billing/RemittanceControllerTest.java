@@ -71,6 +71,7 @@ class RemittanceControllerTest {
   @Mock private BillableUsageRemittanceRepository remittanceRepo;
   @Mock private TallySnapshotRepository snapshotRepo;
   @Mock private KafkaTemplate<String, BillableUsage> billableTemplate;
+  @Mock private BillableUsageTotalController totalController;
 
   private ApplicationClock clock = new FixedClockConfiguration().fixedClock();
 
@@ -84,7 +85,8 @@ class RemittanceControllerTest {
     BillingProducer billingProducer =
         new BillingProducer(new TaskQueueProperties(), billableTemplate);
     BillableUsageController usageController =
-        new BillableUsageController(clock, billingProducer, remittanceRepo, snapshotRepo);
+        new BillableUsageController(
+            clock, billingProducer, remittanceRepo, snapshotRepo, totalController);
     controller =
         new RemittanceController(
             clock,
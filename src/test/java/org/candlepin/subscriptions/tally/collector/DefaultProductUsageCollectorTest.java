@@ -33,6 +33,7 @@ import java.util.LinkedList;
 import java.util.List;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.HostTallyBucket;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.tally.UsageCalculation;
@@ -137,6 +138,18 @@ class DefaultProductUsageCollectorTest {
     assertTotalsCalculation(calc, 0, 0, 3);
   }
 
+  @Test
+  void testCollectFromBucketCountsGuestTowardsTotalsOnly() {
+    UsageCalculation calc = new UsageCalculation(createUsageKey());
+    HostTallyBucket bucket = collector.collect(calc, guestFacts(3, 12, false)).orElseThrow();
+
+    UsageCalculation fromBucket = new UsageCalculation(createUsageKey());
+    collector.collectFromBucket(fromBucket, bucket);
+
+    assertTotalsCalculation(fromBucket, 3, 12, 1);
+    assertNullExcept(fromBucket, HardwareMeasurementType.TOTAL);
+  }
+
   private UsageCalculation.Key createUsageKey() {
     return new UsageCalculation.Key(
         "NON_RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
@@ -152,6 +152,19 @@ class RHELProductUsageCollectorTest {
     assertTotalsCalculation(calc, 0, 0, 3);
   }
 
+  @Test
+  void testCollectFromBucketCountsGuestAsHypervisor() {
+    UsageCalculation calc = new UsageCalculation(createUsageKey());
+    HostTallyBucket bucket = collector.collect(calc, guestFacts(3, 12, true)).orElseThrow();
+
+    UsageCalculation fromBucket = new UsageCalculation(createUsageKey());
+    collector.collectFromBucket(fromBucket, bucket);
+
+    assertTotalsCalculation(fromBucket, 1, 12, 1);
+    assertHypervisorTotalsCalculation(fromBucket, 1, 12, 1);
+    assertNullExcept(fromBucket, HardwareMeasurementType.TOTAL, HardwareMeasurementType.VIRTUAL);
+  }
+
   private UsageCalculation.Key createUsageKey() {
     return new UsageCalculation.Key(
         "RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "_ANY");
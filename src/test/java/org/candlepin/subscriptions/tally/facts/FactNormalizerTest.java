@@ -107,6 +107,21 @@ class FactNormalizerTest {
     assertEquals(Integer.valueOf(2), normalized.getSockets());
   }
 
+  @Test
+  void testAddProductDoesNotChangeProductSetSharedByOtherHosts() {
+    NormalizedFacts first =
+        normalizer.normalize(
+            createRhsmHost(Arrays.asList(1), null, clock.now()), new HashMap<>());
+    NormalizedFacts second =
+        normalizer.normalize(
+            createRhsmHost(Arrays.asList(1), null, clock.now()), new HashMap<>());
+    assertSame(first.getProducts(), second.getProducts());
+
+    first.addProduct("Satellite");
+    assertThat(first.getProducts(), Matchers.hasItem("Satellite"));
+    assertThat(second.getProducts(), Matchers.not(Matchers.hasItem("Satellite")));
+  }
+
   @Test
   void testQpcNormalization() {
     NormalizedFacts normalized =
@@ -0,0 +1,141 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.roller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.candlepin.subscriptions.FixedClockConfiguration;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.UsageCalculation;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+// The transactional annotation will rollback the transaction at the end of every test.
+@Transactional
+@ActiveProfiles({"api", "test"})
+@TestInstance(Lifecycle.PER_CLASS)
+class CombinedSnapshotRollerTest {
+
+  private static final String ACCOUNT = "my_account";
+  private static final String PRODUCT = "RHEL";
+
+  @Autowired private TallySnapshotRepository repository;
+
+  @Autowired private TagProfile tagProfile;
+
+  private ApplicationClock clock;
+
+  private CombinedSnapshotRoller roller;
+
+  @BeforeAll
+  void setupAllTests() {
+    this.clock = new FixedClockConfiguration().fixedClock();
+    this.roller =
+        new CombinedSnapshotRoller(
+            repository,
+            clock,
+            tagProfile,
+            Granularity.DAILY,
+            Granularity.WEEKLY,
+            Granularity.MONTHLY);
+  }
+
+  @Test
+  void testCreatesSnapshotForEachGranularity() {
+    roller.rollSnapshots(ACCOUNT, List.of(createAccountCalc(12)));
+
+    assertSingleSnapshot(Granularity.DAILY, clock.startOfToday(), clock.endOfToday(), 12);
+    assertSingleSnapshot(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek(), 12);
+    assertSingleSnapshot(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth(), 12);
+  }
+
+  @Test
+  void testUpdatesExistingSnapshotsPerGranularity() {
+    roller.rollSnapshots(ACCOUNT, List.of(createAccountCalc(20)));
+    roller.rollSnapshots(ACCOUNT, List.of(createAccountCalc(10)));
+
+    // DAILY is the finest granularity for the product, so it always takes the latest value.
+    assertSingleSnapshot(Granularity.DAILY, clock.startOfToday(), clock.endOfToday(), 10);
+    assertSingleSnapshot(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek(), 20);
+    assertSingleSnapshot(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth(), 20);
+  }
+
+  private void assertSingleSnapshot(
+      Granularity granularity,
+      OffsetDateTime begin,
+      OffsetDateTime end,
+      int expectedCores) {
+    List<TallySnapshot> snapshots =
+        repository
+            .findSnapshot(
+                ACCOUNT,
+                PRODUCT,
+                granularity,
+                ServiceLevel.EMPTY,
+                Usage.EMPTY,
+                BillingProvider.EMPTY,
+                "sellerAcct",
+                begin,
+                end,
+                PageRequest.of(0, 100))
+            .getContent();
+    assertEquals(1, snapshots.size());
+    assertEquals(
+        expectedCores,
+        snapshots.get(0).getMeasurementAsInteger(HardwareMeasurementType.PHYSICAL, Uom.CORES));
+  }
+
+  private AccountUsageCalculation createAccountCalc(int cores) {
+    UsageCalculation productCalc =
+        new UsageCalculation(
+            new UsageCalculation.Key(
+                PRODUCT, ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "sellerAcct"));
+    productCalc.addPhysical(cores, 2, 1);
+    AccountUsageCalculation calc = new AccountUsageCalculation(ACCOUNT);
+    calc.setOwner("O1");
+    calc.addCalculation(productCalc);
+    return calc;
+  }
+}
@@ -20,11 +20,29 @@
  */
 package org.candlepin.subscriptions.tally.roller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.UsageCalculation;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -90,4 +108,33 @@ class DailySnapshotRollerTest {
   void testHandlesDuplicates() {
     tester.performRemovesDuplicates(Granularity.DAILY, clock.startOfToday(), clock.endOfToday());
   }
+
+  @Test
+  void testBulkUpsertWritesSnapshotsWithoutJpa() {
+    TallySnapshotRepository mockRepo = mock(TallySnapshotRepository.class);
+    when(mockRepo.findByAccountNumberAndProductIdInAndGranularityAndSnapshotDateBetween(
+            any(), any(), any(), any(), any()))
+        .thenReturn(Stream.empty());
+    when(mockRepo.upsertAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    DailySnapshotRoller roller = new DailySnapshotRoller(mockRepo, clock, tagProfile);
+    roller.setBulkUpsertEnabled(true);
+
+    UsageCalculation productCalc =
+        new UsageCalculation(
+            new UsageCalculation.Key(
+                "RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "sellerAcct"));
+    productCalc.addPhysical(4, 2, 1);
+    AccountUsageCalculation accountCalc = new AccountUsageCalculation("my_account");
+    accountCalc.setOwner("O1");
+    accountCalc.addCalculation(productCalc);
+
+    Collection<TallySnapshot> snapshots = roller.rollSnapshots("my_account", List.of(accountCalc));
+
+    assertEquals(1, snapshots.size());
+    TallySnapshot snapshot = snapshots.iterator().next();
+    assertEquals(Granularity.DAILY, snapshot.getGranularity());
+    assertEquals(4, snapshot.getMeasurementAsInteger(HardwareMeasurementType.PHYSICAL, Uom.CORES));
+    verify(mockRepo).upsertAll(any());
+    verify(mockRepo, never()).saveAll(any());
+  }
 }
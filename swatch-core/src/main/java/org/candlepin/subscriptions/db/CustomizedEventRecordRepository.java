@@ -0,0 +1,96 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.candlepin.subscriptions.json.Event;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fragment interface defining bulk event writes and events partition maintenance, which are not
+ * handled well by Spring JPA's entity persistence.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedEventRecordRepository {
+
+  /**
+   * Writes the given events using batched INSERT ... ON CONFLICT statements keyed on the event
+   * natural key (event type, event source, instance, account and timestamp), so that existing
+   * events do not need to be loaded to be updated. An updated event keeps its original ID.
+   *
+   * <p>Every written event is marked with the given metering batch. Requires PostgreSQL.
+   *
+   * @param events the events to write.
+   * @param meteringBatchId the metering run writing the events.
+   * @return the number of events written.
+   */
+  @Transactional
+  int upsertAll(Collection<Event> events, UUID meteringBatchId);
+
+  /**
+   * Checks whether the events table is partitioned by month. It only is on PostgreSQL.
+   *
+   * @return true if monthly partitions can be created and dropped.
+   */
+  @Transactional
+  boolean isPartitionedByMonth();
+
+  /**
+   * Lists the months that have an events partition, in chronological order.
+   *
+   * @return the month of each monthly partition.
+   */
+  @Transactional
+  List<YearMonth> findMonthlyPartitions();
+
+  /**
+   * Creates the events partition for a month, if it does not exist yet. Events of that month
+   * already in the default partition are moved into the new partition.
+   *
+   * @param month the month the partition holds events of (in UTC).
+   */
+  @Transactional
+  void createMonthlyPartition(YearMonth month);
+
+  /**
+   * Drops the events partition for a month, and every event in it, in constant time.
+   *
+   * @param month the month whose partition is dropped.
+   */
+  @Transactional
+  void dropMonthlyPartition(YearMonth month);
+
+  /**
+   * Deletes the events before the cutoff that landed in the default partition because they had no
+   * monthly partition. Normally there are none.
+   *
+   * @param cutoffDate events before this timestamp are deleted.
+   * @return the number of deleted events.
+   */
+  @Transactional
+  int deleteDefaultPartitionEventsBefore(OffsetDateTime cutoffDate);
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import org.candlepin.subscriptions.json.Event;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Class implementing bulk event writes using batched PostgreSQL upserts, and maintenance of the
+ * monthly partitions of the events table.
+ */
+@Repository
+public class CustomizedEventRecordRepositoryImpl implements CustomizedEventRecordRepository {
+
+  private static final Logger log =
+      LoggerFactory.getLogger(CustomizedEventRecordRepositoryImpl.class);
+
+  private static final int BATCH_SIZE = 500;
+
+  // The existing row keeps its ID, so the ID embedded in the event data is kept in step with it.
+  private static final String UPSERT_EVENT =
+      "insert into events (id, account_number, org_id, event_type, event_source, instance_id, "
+          + "service_type, timestamp, data, metering_batch_id) "
+          + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+          + "on conflict (event_type, event_source, instance_id, account_number, timestamp) "
+          + "do update set org_id = excluded.org_id, service_type = excluded.service_type, "
+          + "data = jsonb_set(excluded.data, '{event_id}', to_jsonb(events.id::text)), "
+          + "metering_batch_id = excluded.metering_batch_id";
+
+  private static final String PARTITION_PREFIX = "events_p";
+
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("uuuu_MM");
+
+  private static final Pattern PARTITION_NAME = Pattern.compile("events_p(\\d{4})_(\\d{2})");
+
+  private static final String IS_PARTITIONED =
+      "select count(*) from pg_partitioned_table where partrelid = 'events'::regclass";
+
+  private static final String FIND_PARTITIONS =
+      "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+          + "where i.inhparent = cast('events' as regclass)";
+
+  private final EntityManager em;
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public CustomizedEventRecordRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em,
+      ObjectMapper objectMapper) {
+    this.em = em;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public int upsertAll(Collection<Event> events, UUID meteringBatchId) {
+    if (events.isEmpty()) {
+      return 0;
+    }
+    // Write out any other pending changes first, so that they are not reordered after the upserts.
+    em.flush();
+    em.unwrap(Session.class).doWork(connection -> writeEvents(connection, events, meteringBatchId));
+    log.debug("Upserted {} events for metering batch {}", events.size(), meteringBatchId);
+    return events.size();
+  }
+
+  private void writeEvents(Connection connection, Collection<Event> events, UUID meteringBatchId)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(UPSERT_EVENT)) {
+      int pending = 0;
+      for (Event event : events) {
+        if (event.getEventId() == null) {
+          event.setEventId(UUID.randomUUID());
+        }
+        statement.setObject(1, event.getEventId());
+        statement.setString(2, event.getAccountNumber());
+        statement.setString(3, event.getOrgId());
+        statement.setString(4, event.getEventType());
+        statement.setString(5, event.getEventSource());
+        statement.setString(6, event.getInstanceId());
+        statement.setString(7, event.getServiceType());
+        statement.setObject(8, event.getTimestamp());
+        statement.setString(9, toJson(event));
+        statement.setObject(10, meteringBatchId);
+        statement.addBatch();
+        if (++pending % BATCH_SIZE == 0) {
+          statement.executeBatch();
+        }
+      }
+      statement.executeBatch();
+    }
+  }
+
+  private String toJson(Event event) {
+    try {
+      return objectMapper.writeValueAsString(event);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Error serializing event", e);
+    }
+  }
+
+  @Override
+  public boolean isPartitionedByMonth() {
+    return em.unwrap(Session.class)
+        .doReturningWork(
+            connection -> {
+              if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return false;
+              }
+              try (Statement statement = connection.createStatement();
+                  ResultSet result = statement.executeQuery(IS_PARTITIONED)) {
+                return result.next() && result.getInt(1) > 0;
+              }
+            });
+  }
+
+  @Override
+  public List<YearMonth> findMonthlyPartitions() {
+    List<YearMonth> months = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    List<String> names = em.createNativeQuery(FIND_PARTITIONS).getResultList();
+    for (String name : names) {
+      Matcher matcher = PARTITION_NAME.matcher(name);
+      if (matcher.matches()) {
+        months.add(
+            YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+      }
+    }
+    Collections.sort(months);
+    return months;
+  }
+
+  @Override
+  public void createMonthlyPartition(YearMonth month) {
+    if (findMonthlyPartitions().contains(month)) {
+      return;
+    }
+    String partition = partitionName(month);
+    OffsetDateTime from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    OffsetDateTime to = from.plusMonths(1);
+    // Events of the month that arrived before its partition existed sit in the default partition,
+    // where they would make creating the partition fail. They are moved into the new table before
+    // it is attached, with the default partition locked so that no more arrive in the meantime.
+    em.createNativeQuery("lock table events_default in share row exclusive mode").executeUpdate();
+    em.createNativeQuery(
+            String.format(
+                "create table %s (like events including defaults including constraints)",
+                partition))
+        .executeUpdate();
+    int moved =
+        em.createNativeQuery(
+                String.format(
+                    "with moved as (delete from events_default "
+                        + "where timestamp >= :from and timestamp < :to returning *) "
+                        + "insert into %s select * from moved",
+                    partition))
+            .setParameter("from", from)
+            .setParameter("to", to)
+            .executeUpdate();
+    em.createNativeQuery(
+            String.format(
+                "alter table events attach partition %s for values from ('%s') to ('%s')",
+                partition, from, to))
+        .executeUpdate();
+    if (moved > 0) {
+      log.warn("Moved {} events from the default events partition to {}", moved, partition);
+    }
+    log.info("Created events partition {}", partition);
+  }
+
+  @Override
+  public void dropMonthlyPartition(YearMonth month) {
+    em.createNativeQuery(String.format("drop table if exists %s", partitionName(month)))
+        .executeUpdate();
+    log.info("Dropped events partition {}", partitionName(month));
+  }
+
+  @Override
+  public int deleteDefaultPartitionEventsBefore(OffsetDateTime cutoffDate) {
+    return em.createNativeQuery("delete from events_default where timestamp < :cutoffDate")
+        .setParameter("cutoffDate", cutoffDate)
+        .executeUpdate();
+  }
+
+  // Partition names are only ever built from a YearMonth, so they are safe to use in DDL.
+  private static String partitionName(YearMonth month) {
+    return PARTITION_PREFIX + PARTITION_SUFFIX.format(month);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.util.DateRange;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fragment interface defining queries, bulk writes and partition maintenance for tally snapshots
+ * that are not handled well by Spring JPA's query methods DSL and entity persistence.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedTallySnapshotRepository {
+
+  /**
+   * Granularities whose snapshots and measurements are partitioned by month of the snapshot date.
+   * Snapshots of the other granularities each live in a single partition.
+   */
+  Set<Granularity> MONTHLY_PARTITIONED_GRANULARITIES =
+      Collections.unmodifiableSet(
+          EnumSet.of(Granularity.HOURLY, Granularity.DAILY, Granularity.WEEKLY));
+
+  /**
+   * Find an account's snapshots, with their measurements, across several granularities at once.
+   *
+   * @param accountNumber the account of the snapshots
+   * @param productIds the products of the snapshots
+   * @param periods for each granularity to find, the range its snapshot dates must fall within
+   * @return the matching snapshots of every requested granularity
+   */
+  @Transactional
+  List<TallySnapshot> findByAccountNumberAndProductIdInForPeriods(
+      String accountNumber, Collection<String> productIds, Map<Granularity, DateRange> periods);
+
+  /**
+   * Writes the given snapshots and their measurements using batched INSERT ... ON CONFLICT
+   * statements keyed on the snapshot natural key (account, product, granularity, sla, usage,
+   * billing provider, billing account and snapshot date). Measurements are only ever inserted or
+   * updated, never removed.
+   *
+   * <p>The snapshots are detached from the persistence context, since their state has already
+   * been written. Requires PostgreSQL.
+   *
+   * @param snapshots the new or updated snapshots to write.
+   * @return the given snapshots, each with the ID of the row it was written to.
+   */
+  @Transactional
+  Collection<TallySnapshot> upsertAll(Collection<TallySnapshot> snapshots);
+
+  /**
+   * Checks whether tally snapshots are partitioned by granularity. They only are on PostgreSQL.
+   *
+   * @return true if snapshot partitions can be created and dropped.
+   */
+  @Transactional
+  boolean isPartitioned();
+
+  /**
+   * Lists the months that have a snapshot partition for a granularity, in chronological order.
+   *
+   * @param granularity the granularity of the partitions
+   * @return the month of each partition, or an empty list if the granularity is not partitioned by
+   *     month.
+   */
+  @Transactional
+  List<YearMonth> findMonthlyPartitions(Granularity granularity);
+
+  /**
+   * Creates the snapshot and measurement partitions for a granularity and month, if they do not
+   * exist yet. Rows of that month already in the default partitions are moved into them.
+   *
+   * @param granularity one of {@link #MONTHLY_PARTITIONED_GRANULARITIES}
+   * @param month the month the partitions hold snapshots of (in UTC).
+   */
+  @Transactional
+  void createMonthlyPartition(Granularity granularity, YearMonth month);
+
+  /**
+   * Drops the snapshot and measurement partitions for a granularity and month, and every snapshot
+   * in them, without deleting rows one by one.
+   *
+   * @param granularity one of {@link #MONTHLY_PARTITIONED_GRANULARITIES}
+   * @param month the month whose partitions are dropped.
+   */
+  @Transactional
+  void dropMonthlyPartition(Granularity granularity, YearMonth month);
+
+  /**
+   * Deletes the snapshots of a granularity before the cutoff, and their measurements, that are not
+   * in a monthly partition. For monthly partitioned granularities that is only their default
+   * partition, which is normally empty; for the others it is the granularity's partition.
+   *
+   * @param granularity the granularity of the snapshots
+   * @param cutoffDate snapshots before this date are deleted.
+   * @return the number of deleted snapshots.
+   */
+  @Transactional
+  int deleteUnpartitionedSnapshotsBefore(Granularity granularity, OffsetDateTime cutoffDate);
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.util.DateRange;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Class implementing snapshot queries not handled well by Spring JPA's query methods DSL, bulk
+ * snapshot writes using batched PostgreSQL upserts, and maintenance of the snapshot partitions.
+ */
+@Repository
+public class CustomizedTallySnapshotRepositoryImpl implements CustomizedTallySnapshotRepository {
+
+  private static final Logger log =
+      LoggerFactory.getLogger(CustomizedTallySnapshotRepositoryImpl.class);
+
+  private static final int BATCH_SIZE = 500;
+
+  private static final String NATURAL_KEY_COLUMNS =
+      "account_number, product_id, granularity, sla, usage, billing_provider, billing_account_id, "
+          + "snapshot_date";
+
+  private static final String UPSERT_SNAPSHOT =
+      "insert into tally_snapshots (id, owner_id, "
+          + NATURAL_KEY_COLUMNS
+          + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) on conflict ("
+          + NATURAL_KEY_COLUMNS
+          + ") do update set owner_id = coalesce(excluded.owner_id, tally_snapshots.owner_id)";
+
+  // Read back after each batch, so that snapshots that already existed get their persisted ID.
+  private static final String[] RETURNED_COLUMNS = {
+    "id",
+    "account_number",
+    "product_id",
+    "granularity",
+    "sla",
+    "usage",
+    "billing_provider",
+    "billing_account_id",
+    "snapshot_date"
+  };
+
+  private static final String UPSERT_MEASUREMENT =
+      "insert into tally_measurements "
+          + "(snapshot_id, granularity, snapshot_date, measurement_type, uom, value) "
+          + "select s.id, s.granularity, s.snapshot_date, ?, ?, ? from tally_snapshots s "
+          + "where s.account_number = ? and s.product_id = ? and s.granularity = ? and s.sla = ? "
+          + "and s.usage = ? and s.billing_provider = ? and s.billing_account_id = ? "
+          + "and s.snapshot_date = ? on conflict (snapshot_id, granularity, snapshot_date, "
+          + "measurement_type, uom) do update set value = excluded.value";
+
+  // Partition table names used in SQL only ever come from these fixed names, suffixed with
+  // "_default" or a formatted YearMonth.
+  private static final Map<Granularity, String> SNAPSHOT_PARTITIONS =
+      Map.of(
+          Granularity.HOURLY, "tally_snapshots_hourly",
+          Granularity.DAILY, "tally_snapshots_daily",
+          Granularity.WEEKLY, "tally_snapshots_weekly",
+          Granularity.MONTHLY, "tally_snapshots_monthly",
+          Granularity.QUARTERLY, "tally_snapshots_quarterly",
+          Granularity.YEARLY, "tally_snapshots_yearly");
+
+  private static final Map<Granularity, String> MEASUREMENT_PARTITIONS =
+      Map.of(
+          Granularity.HOURLY, "tally_measurements_hourly",
+          Granularity.DAILY, "tally_measurements_daily",
+          Granularity.WEEKLY, "tally_measurements_weekly",
+          Granularity.MONTHLY, "tally_measurements_monthly",
+          Granularity.QUARTERLY, "tally_measurements_quarterly",
+          Granularity.YEARLY, "tally_measurements_yearly");
+
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("uuuu_MM");
+
+  private static final Pattern PARTITION_MONTH = Pattern.compile(".*_p(\\d{4})_(\\d{2})");
+
+  private static final String IS_PARTITIONED =
+      "select count(*) from pg_partitioned_table where partrelid = 'tally_snapshots'::regclass";
+
+  private static final String FIND_PARTITIONS =
+      "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+          + "where i.inhparent = cast(:parent as regclass)";
+
+  private final EntityManager em;
+  private final MeterRegistry meterRegistry;
+
+  @Autowired
+  public CustomizedTallySnapshotRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em,
+      MeterRegistry meterRegistry) {
+    this.em = em;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public List<TallySnapshot> findByAccountNumberAndProductIdInForPeriods(
+      String accountNumber, Collection<String> productIds, Map<Granularity, DateRange> periods) {
+    if (productIds.isEmpty() || periods.isEmpty()) {
+      return List.of();
+    }
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<TallySnapshot> cq = cb.createQuery(TallySnapshot.class);
+    Root<TallySnapshot> snapshot = cq.from(TallySnapshot.class);
+    snapshot.fetch("tallyMeasurements", JoinType.LEFT);
+
+    List<Predicate> periodPredicates = new ArrayList<>();
+    periods.forEach(
+        (granularity, range) ->
+            periodPredicates.add(
+                cb.and(
+                    cb.equal(snapshot.get("granularity"), granularity),
+                    cb.between(
+                        snapshot.<OffsetDateTime>get("snapshotDate"),
+                        range.getStartDate(),
+                        range.getEndDate()))));
+
+    cq.select(snapshot)
+        .distinct(true)
+        .where(
+            cb.equal(snapshot.get("accountNumber"), accountNumber),
+            snapshot.get("productId").in(productIds),
+            cb.or(periodPredicates.toArray(new Predicate[0])));
+    return em.createQuery(cq).getResultList();
+  }
+
+  @Override
+  public Collection<TallySnapshot> upsertAll(Collection<TallySnapshot> snapshots) {
+    if (snapshots.isEmpty()) {
+      return snapshots;
+    }
+    Map<Granularity, Integer> writtenByGranularity = new EnumMap<>(Granularity.class);
+    for (TallySnapshot snapshot : snapshots) {
+      // The snapshot state is written below; keep Hibernate from flushing it a second time.
+      if (em.contains(snapshot)) {
+        em.detach(snapshot);
+      }
+      // Only kept when the snapshot is new; otherwise the existing row's ID is read back.
+      if (snapshot.getId() == null) {
+        snapshot.setId(UUID.randomUUID());
+      }
+      writtenByGranularity.merge(snapshot.getGranularity(), 1, Integer::sum);
+    }
+    // Write out any other pending changes first, e.g. removal of duplicate snapshots.
+    em.flush();
+    em.unwrap(Session.class).doWork(connection -> writeSnapshots(connection, snapshots));
+
+    writtenByGranularity.forEach(
+        (granularity, count) ->
+            meterRegistry
+                .counter("rhsm-subscriptions.snapshots.upserted", "granularity", granularity.name())
+                .increment(count));
+    log.debug("Upserted snapshots by granularity: {}", writtenByGranularity);
+    return snapshots;
+  }
+
+  private void writeSnapshots(Connection connection, Collection<TallySnapshot> snapshots)
+      throws SQLException {
+    Map<List<Object>, TallySnapshot> snapshotsByNaturalKey = new HashMap<>();
+    snapshots.forEach(snapshot -> snapshotsByNaturalKey.put(naturalKey(snapshot), snapshot));
+    try (PreparedStatement snapshotStatement =
+            connection.prepareStatement(UPSERT_SNAPSHOT, RETURNED_COLUMNS);
+        PreparedStatement measurementStatement = connection.prepareStatement(UPSERT_MEASUREMENT)) {
+      int pendingSnapshots = 0;
+      int pendingMeasurements = 0;
+      for (TallySnapshot snapshot : snapshots) {
+        snapshotStatement.setObject(1, snapshot.getId());
+        snapshotStatement.setString(2, snapshot.getOwnerId());
+        setNaturalKey(snapshotStatement, 3, snapshot);
+        snapshotStatement.addBatch();
+        if (++pendingSnapshots % BATCH_SIZE == 0) {
+          snapshotStatement.executeBatch();
+          readPersistedIds(snapshotStatement, snapshotsByNaturalKey);
+        }
+      }
+      snapshotStatement.executeBatch();
+      readPersistedIds(snapshotStatement, snapshotsByNaturalKey);
+
+      for (TallySnapshot snapshot : snapshots) {
+        for (Map.Entry<TallyMeasurementKey, Double> measurement :
+            snapshot.getTallyMeasurements().entrySet()) {
+          measurementStatement.setString(1, measurement.getKey().getMeasurementType().name());
+          measurementStatement.setString(2, measurement.getKey().getUom().name());
+          measurementStatement.setDouble(3, measurement.getValue());
+          setNaturalKey(measurementStatement, 4, snapshot);
+          measurementStatement.addBatch();
+          if (++pendingMeasurements % BATCH_SIZE == 0) {
+            measurementStatement.executeBatch();
+          }
+        }
+      }
+      measurementStatement.executeBatch();
+    }
+  }
+
+  private static void readPersistedIds(
+      PreparedStatement statement, Map<List<Object>, TallySnapshot> snapshotsByNaturalKey)
+      throws SQLException {
+    try (ResultSet persisted = statement.getGeneratedKeys()) {
+      while (persisted.next()) {
+        TallySnapshot snapshot = snapshotsByNaturalKey.get(naturalKey(persisted));
+        if (snapshot != null) {
+          snapshot.setId(persisted.getObject("id", UUID.class));
+        }
+      }
+    }
+  }
+
+  private static List<Object> naturalKey(TallySnapshot snapshot) {
+    return Arrays.asList(
+        snapshot.getAccountNumber(),
+        snapshot.getProductId(),
+        snapshot.getGranularity().name(),
+        snapshot.getServiceLevel().getValue(),
+        snapshot.getUsage().getValue(),
+        snapshot.getBillingProvider().getValue(),
+        snapshot.getBillingAccountId(),
+        snapshot.getSnapshotDate().toInstant());
+  }
+
+  private static List<Object> naturalKey(ResultSet row) throws SQLException {
+    return Arrays.asList(
+        row.getString("account_number"),
+        row.getString("product_id"),
+        row.getString("granularity"),
+        row.getString("sla"),
+        row.getString("usage"),
+        row.getString("billing_provider"),
+        row.getString("billing_account_id"),
+        row.getObject("snapshot_date", OffsetDateTime.class).toInstant());
+  }
+
+  private void setNaturalKey(PreparedStatement statement, int index, TallySnapshot snapshot)
+      throws SQLException {
+    statement.setString(index, snapshot.getAccountNumber());
+    statement.setString(index + 1, snapshot.getProductId());
+    statement.setString(index + 2, snapshot.getGranularity().name());
+    statement.setString(index + 3, snapshot.getServiceLevel().getValue());
+    statement.setString(index + 4, snapshot.getUsage().getValue());
+    statement.setString(index + 5, snapshot.getBillingProvider().getValue());
+    statement.setString(index + 6, snapshot.getBillingAccountId());
+    statement.setObject(index + 7, snapshot.getSnapshotDate());
+  }
+
+  @Override
+  public boolean isPartitioned() {
+    return em.unwrap(Session.class)
+        .doReturningWork(
+            connection -> {
+              if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return false;
+              }
+              try (Statement statement = connection.createStatement();
+                  ResultSet result = statement.executeQuery(IS_PARTITIONED)) {
+                return result.next() && result.getInt(1) > 0;
+              }
+            });
+  }
+
+  @Override
+  public List<YearMonth> findMonthlyPartitions(Granularity granularity) {
+    if (!MONTHLY_PARTITIONED_GRANULARITIES.contains(granularity)) {
+      return List.of();
+    }
+    @SuppressWarnings("unchecked")
+    List<String> names =
+        em.createNativeQuery(FIND_PARTITIONS)
+            .setParameter("parent", SNAPSHOT_PARTITIONS.get(granularity))
+            .getResultList();
+    List<YearMonth> months = new ArrayList<>();
+    for (String name : names) {
+      Matcher matcher = PARTITION_MONTH.matcher(name);
+      if (matcher.matches()) {
+        months.add(
+            YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+      }
+    }
+    Collections.sort(months);
+    return months;
+  }
+
+  @Override
+  public void createMonthlyPartition(Granularity granularity, YearMonth month) {
+    requireMonthlyPartitioned(granularity);
+    if (findMonthlyPartitions(granularity).contains(month)) {
+      return;
+    }
+    // Snapshots of the month written before its partition existed sit in the default partitions,
+    // where they would make creating the partition fail. They are moved into the new tables before
+    // those are attached, with the default partitions locked so that no more arrive meanwhile.
+    // Measurements are moved first, so that moving their snapshots does not cascade to them.
+    em.createNativeQuery(
+            String.format(
+                "lock table %s, %s in share row exclusive mode",
+                unpartitionedTable(MEASUREMENT_PARTITIONS, granularity),
+                unpartitionedTable(SNAPSHOT_PARTITIONS, granularity)))
+        .executeUpdate();
+    moveIntoMonthlyPartition(MEASUREMENT_PARTITIONS, granularity, month);
+    int moved = moveIntoMonthlyPartition(SNAPSHOT_PARTITIONS, granularity, month);
+    // Snapshots are attached first, so that the measurements' foreign key can be validated.
+    attachMonthlyPartition(SNAPSHOT_PARTITIONS, granularity, month);
+    attachMonthlyPartition(MEASUREMENT_PARTITIONS, granularity, month);
+    String partition = monthlyPartitionTable(SNAPSHOT_PARTITIONS, granularity, month);
+    if (moved > 0) {
+      log.warn("Moved {} snapshots from the default partition to {}", moved, partition);
+    }
+    log.info("Created snapshot partition {}", partition);
+  }
+
+  /**
+   * Creates the table that becomes a monthly partition, and moves the rows of that month from the
+   * default partition into it.
+   */
+  private int moveIntoMonthlyPartition(
+      Map<Granularity, String> partitions, Granularity granularity, YearMonth month) {
+    OffsetDateTime from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    String table = monthlyPartitionTable(partitions, granularity, month);
+    em.createNativeQuery(
+            String.format(
+                "create table %s (like %s including defaults including constraints)",
+                table, partitions.get(granularity)))
+        .executeUpdate();
+    return em.createNativeQuery(
+            String.format(
+                "with moved as (delete from %s "
+                    + "where snapshot_date >= :from and snapshot_date < :to returning *) "
+                    + "insert into %s select * from moved",
+                unpartitionedTable(partitions, granularity), table))
+        .setParameter("from", from)
+        .setParameter("to", from.plusMonths(1))
+        .executeUpdate();
+  }
+
+  private void attachMonthlyPartition(
+      Map<Granularity, String> partitions, Granularity granularity, YearMonth month) {
+    OffsetDateTime from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    em.createNativeQuery(
+            String.format(
+                "alter table %s attach partition %s for values from ('%s') to ('%s')",
+                partitions.get(granularity),
+                monthlyPartitionTable(partitions, granularity, month),
+                from,
+                from.plusMonths(1)))
+        .executeUpdate();
+  }
+
+  @Override
+  public void dropMonthlyPartition(Granularity granularity, YearMonth month) {
+    requireMonthlyPartitioned(granularity);
+    String partition = monthlyPartitionTable(SNAPSHOT_PARTITIONS, granularity, month);
+    // The measurements go first. A snapshot partition can only be detached, and then dropped, once
+    // no measurement references it any more.
+    em.createNativeQuery(
+            "drop table if exists "
+                + monthlyPartitionTable(MEASUREMENT_PARTITIONS, granularity, month))
+        .executeUpdate();
+    if (!findMonthlyPartitions(granularity).contains(month)) {
+      return;
+    }
+    em.createNativeQuery(
+            String.format(
+                "alter table %s detach partition %s",
+                SNAPSHOT_PARTITIONS.get(granularity), partition))
+        .executeUpdate();
+    em.createNativeQuery("drop table " + partition).executeUpdate();
+    log.info("Dropped snapshot partition {}", partition);
+  }
+
+  @Override
+  public int deleteUnpartitionedSnapshotsBefore(
+      Granularity granularity, OffsetDateTime cutoffDate) {
+    // Measurements are deleted in bulk first, so the snapshot deletes have nothing to cascade to.
+    em.createNativeQuery(
+            String.format(
+                "delete from %s where snapshot_date < :cutoffDate",
+                unpartitionedTable(MEASUREMENT_PARTITIONS, granularity)))
+        .setParameter("cutoffDate", cutoffDate)
+        .executeUpdate();
+    return em.createNativeQuery(
+            String.format(
+                "delete from %s where snapshot_date < :cutoffDate",
+                unpartitionedTable(SNAPSHOT_PARTITIONS, granularity)))
+        .setParameter("cutoffDate", cutoffDate)
+        .executeUpdate();
+  }
+
+  private void requireMonthlyPartitioned(Granularity granularity) {
+    if (!MONTHLY_PARTITIONED_GRANULARITIES.contains(granularity)) {
+      throw new IllegalArgumentException(
+          String.format("%s snapshots are not partitioned by month.", granularity));
+    }
+  }
+
+  /** The table holding the rows of a granularity that are not in a monthly partition. */
+  private static String unpartitionedTable(
+      Map<Granularity, String> partitions, Granularity granularity) {
+    String table = partitions.get(granularity);
+    return MONTHLY_PARTITIONED_GRANULARITIES.contains(granularity) ? table + "_default" : table;
+  }
+
+  private static String monthlyPartitionTable(
+      Map<Granularity, String> partitions, Granularity granularity, YearMonth month) {
+    return partitions.get(granularity) + "_p" + PARTITION_SUFFIX.format(month);
+  }
+}
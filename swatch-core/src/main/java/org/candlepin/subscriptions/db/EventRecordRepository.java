@@ -25,6 +25,7 @@ import java.util.UUID;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.model.EventRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -35,7 +36,8 @@ import org.springframework.data.repository.query.Param;
  * @see org.candlepin.subscriptions.json.Event
  */
 @SuppressWarnings({"linelength", "indentation"})
-public interface EventRecordRepository extends JpaRepository<EventRecord, UUID> {
+public interface EventRecordRepository
+    extends JpaRepository<EventRecord, UUID>, CustomizedEventRecordRepository {
 
   /**
    * Fetch a stream of events for a given account for a given time range.
@@ -97,15 +99,8 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
    * @param end
    * @return true if at least 1 event exists, false otherwise.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select exists(select 1 from events where account_number=:accountNumber and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp)")
   boolean existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
-      @Param("accountNumber") String accountNumber,
-      @Param("serviceType") String serviceType,
-      @Param("begin") OffsetDateTime begin,
-      @Param("end") OffsetDateTime end);
+      String accountNumber, String serviceType, OffsetDateTime begin, OffsetDateTime end);
 
   /**
    * Find all the events based on the account number and service type that exist during the
@@ -117,16 +112,35 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
    * @param end
    * @return a stream of Event objects matching the specified criteria.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select * from events where account_number=:accountNumber and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp")
   Stream<EventRecord>
       findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
-          @Param("accountNumber") String accountNumber,
-          @Param("serviceType") String serviceType,
-          @Param("begin") OffsetDateTime begin,
-          @Param("end") OffsetDateTime end);
+          String accountNumber, String serviceType, OffsetDateTime begin, OffsetDateTime end);
 
   void deleteByAccountNumber(String accountNumber);
+
+  /**
+   * Delete the events of a given account, event source and event type in a time range that were
+   * not written by the given metering batch.
+   *
+   * @param accountNumber account number
+   * @param eventSource event source
+   * @param eventType event type
+   * @param begin start of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @param meteringBatchId the batch whose events are kept
+   * @return the number of deleted events
+   */
+  @Modifying
+  @Query(
+      "delete from EventRecord e where e.accountNumber = :accountNumber "
+          + "and e.eventSource = :eventSource and e.eventType = :eventType "
+          + "and e.timestamp >= :begin and e.timestamp < :end "
+          + "and (e.meteringBatchId is null or e.meteringBatchId <> :meteringBatchId)")
+  int deleteStaleMeteringEvents(
+      @Param("accountNumber") String accountNumber,
+      @Param("eventSource") String eventSource,
+      @Param("eventType") String eventType,
+      @Param("begin") OffsetDateTime begin,
+      @Param("end") OffsetDateTime end,
+      @Param("meteringBatchId") UUID meteringBatchId);
 }
@@ -70,7 +70,11 @@ public interface HostRepository
   @SuppressWarnings("java:S107")
   @Query(
       value =
-          "select b from HostTallyBucket b join fetch b.host h where "
+          "select new org.candlepin.subscriptions.db.model.TallyHostView("
+              + "h.inventoryId, h.insightsId, h.displayName, b.measurementType, h.hardwareType, "
+              + "b.cores, b.sockets, h.numOfGuests, h.subscriptionManagerId, h.lastSeen, "
+              + "h.isUnmappedGuest, h.isHypervisor, h.cloudProvider) "
+              + "from HostTallyBucket b join b.host h where "
               + "h.accountNumber = :account and "
               + "b.key.productId = :product and "
               + "b.key.sla = :sla and b.key.usage = :usage and "
@@ -81,9 +85,8 @@ public interface HostRepository
               // with datatypes
               "((lower(h.displayName) LIKE lower(concat('%', :displayNameSubstring,'%')))) and "
               + "b.cores >= :minCores and b.sockets >= :minSockets",
-      // Because we are using a 'fetch join' to avoid having to lazy load each bucket host,
-      // we need to specify how the Page should gets its count when the 'limit' parameter
-      // is used.
+      // Because we are using a constructor expression, we need to specify how the Page should
+      // get its count when the 'limit' parameter is used.
       countQuery =
           "select count(b) from HostTallyBucket b join b.host h where "
               + "h.accountNumber = :account and "
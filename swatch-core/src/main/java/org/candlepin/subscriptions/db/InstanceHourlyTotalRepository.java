@@ -0,0 +1,51 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.candlepin.subscriptions.db.model.InstanceHourlyTotal;
+import org.candlepin.subscriptions.db.model.InstanceHourlyTotalKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/** Per-hour instance totals backing incremental corrections of monthly totals. */
+public interface InstanceHourlyTotalRepository
+    extends JpaRepository<InstanceHourlyTotal, InstanceHourlyTotalKey> {
+
+  @Query(
+      "SELECT t FROM InstanceHourlyTotal t where "
+          + "t.key.accountNumber = :accountNumber and "
+          + "t.key.serviceType = :serviceType and "
+          + "t.key.hour >= :beginning and "
+          + "t.key.hour < :ending")
+  List<InstanceHourlyTotal> findInRange(
+      @Param("accountNumber") String accountNumber,
+      @Param("serviceType") String serviceType,
+      @Param("beginning") OffsetDateTime beginning,
+      @Param("ending") OffsetDateTime ending);
+
+  void deleteByKeyAccountNumberAndKeyServiceTypeAndKeyHourBefore(
+      String accountNumber, String serviceType, OffsetDateTime hour);
+
+  void deleteByKeyAccountNumber(String accountNumber);
+}
@@ -22,12 +22,14 @@ package org.candlepin.subscriptions.db;
 
 import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyMeasurementTotalView;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.springframework.data.domain.Page;
@@ -39,7 +41,8 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /** Interface that Spring Data will turn into a DAO for us. */
-public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UUID> {
+public interface TallySnapshotRepository
+    extends JpaRepository<TallySnapshot, UUID>, CustomizedTallySnapshotRepository {
 
   // suppress line length and params arguments, can't help either easily b/c this is a spring data
   // method
@@ -129,6 +132,34 @@ public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UU
       @Param("ending") OffsetDateTime ending,
       @Param("measurementKey") TallyMeasurementKey measurementKey);
 
+  /**
+   * Sums a single measurement for every snapshot bucket of the given accounts and products,
+   * grouped by snapshot date, so that the totals for several billable usages can be resolved with
+   * one query.
+   */
+  @SuppressWarnings("java:S107") // repository method has a lot of params, deal with it
+  @Query(
+      "select s.accountNumber as accountNumber, s.productId as productId, "
+          + "s.serviceLevel as serviceLevel, s.usage as usage, "
+          + "s.billingProvider as billingProvider, s.billingAccountId as billingAccountId, "
+          + "s.snapshotDate as snapshotDate, sum(VALUE(m)) as total from TallySnapshot s "
+          + "join s.tallyMeasurements m on key(m) = :measurementKey "
+          + "where s.accountNumber in (:accountNumbers) and "
+          + "s.productId in (:productIds) and "
+          + "s.billingAccountId in (:billingAcctIds) and "
+          + "s.granularity = :granularity and "
+          + "s.snapshotDate >= :beginning and s.snapshotDate <= :ending "
+          + "group by s.accountNumber, s.productId, s.serviceLevel, s.usage, "
+          + "s.billingProvider, s.billingAccountId, s.snapshotDate")
+  List<TallyMeasurementTotalView> sumMeasurementValuesBySnapshotDate(
+      @Param("accountNumbers") Collection<String> accountNumbers,
+      @Param("productIds") Collection<String> productIds,
+      @Param("billingAcctIds") Collection<String> billingAccountIds,
+      @Param("granularity") Granularity granularity,
+      @Param("beginning") OffsetDateTime beginning,
+      @Param("ending") OffsetDateTime ending,
+      @Param("measurementKey") TallyMeasurementKey measurementKey);
+
   @Query(
       nativeQuery = true,
       value =
@@ -136,7 +167,9 @@ public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UU
               + "(select distinct first_value(s.id) over "
               + "(partition by s.account_number, s.sla, s.usage, s.billing_provider, s.billing_account_id, m.uom "
               + "order by s.snapshot_date desc) from tally_snapshots s "
-              + "inner join tally_measurements m on s.id = m.snapshot_id where s.granularity='HOURLY' "
+              + "inner join tally_measurements m on s.id = m.snapshot_id "
+              + "and s.granularity = m.granularity and s.snapshot_date = m.snapshot_date "
+              + "where s.granularity='HOURLY' "
               + "and extract(month from s.snapshot_date) = :month and s.sla != '_ANY' and "
               + "s.usage != '_ANY' and s.billing_provider != '_ANY' and s.billing_account_id != '_ANY');")
   Stream<TallySnapshot> findLatestBillablesForMonth(@Param("month") int month);
@@ -21,11 +21,14 @@
 package org.candlepin.subscriptions.db.model;
 
 import java.io.Serializable;
+import java.time.OffsetDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import javax.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 /**
  * Aggregate for an inventory of service instances for a given account.
@@ -78,8 +81,29 @@ public class AccountServiceInventory implements Serializable {
   // NOTE: insertable = false and updatable=false prevents extraneous update statements (they're
   // handled in hosts table)
   @MapKeyColumn(name = "instance_id", updatable = false, insertable = false)
+  // Hosts are read with their own select, and their collections in batches (see Host), instead of
+  // one outer-joined query whose row count is the product of every host's collection sizes.
+  @Fetch(FetchMode.SELECT)
   private Map<String, Host> serviceInstances = new HashMap<>();
 
   @Column(name = "org_id")
   private String orgId;
+
+  /**
+   * Latest modification time seen on a service instance during the last tally. Incremental tallies
+   * only re-read instances modified after this point.
+   */
+  @Column(name = "modified_on_watermark")
+  private OffsetDateTime modifiedOnWatermark;
+
+  /** When every service instance was last re-read, rather than only the modified ones. */
+  @Column(name = "last_full_reconciliation")
+  private OffsetDateTime lastFullReconciliation;
+
+  /**
+   * Per-hour instance totals are recorded for every hour from this point on, so monthly totals can
+   * be corrected incrementally for re-tallies that start here or later. Null when not recorded.
+   */
+  @Column(name = "hourly_totals_start")
+  private OffsetDateTime hourlyTotalsStart;
 }
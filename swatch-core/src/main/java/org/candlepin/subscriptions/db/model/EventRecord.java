@@ -71,6 +71,7 @@ public class EventRecord {
     this.eventType = event.getEventType();
     this.eventSource = event.getEventSource();
     this.instanceId = event.getInstanceId();
+    this.serviceType = event.getServiceType();
     this.timestamp = event.getTimestamp();
   }
 
@@ -91,8 +92,16 @@ public class EventRecord {
   @Column(name = "instance_id")
   private String instanceId;
 
+  /** Copied from the event data so that hourly tally queries can use an index. */
+  @Column(name = "service_type")
+  private String serviceType;
+
   private OffsetDateTime timestamp;
 
+  /** The metering run that last wrote this event, used to find events it no longer reports. */
+  @Column(name = "metering_batch_id")
+  private UUID meteringBatchId;
+
   @Valid
   @Column(name = "data")
   @Convert(converter = EventRecordConverter.class)
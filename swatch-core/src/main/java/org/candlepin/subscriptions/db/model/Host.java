@@ -52,6 +52,9 @@ import lombok.Setter;
 import lombok.ToString;
 import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 /**
  * Represents a reported Host from inventory. This entity stores normalized facts for a Host
@@ -64,6 +67,13 @@ import org.candlepin.subscriptions.json.Measurement.Uom;
 @Table(name = "hosts")
 public class Host implements Serializable {
 
+  /**
+   * Number of hosts whose collections are initialized per query. Collections are loaded with
+   * separate batched selects rather than joined into the host query, so loading an account's
+   * instances does not produce a cartesian product of buckets, measurements and monthly totals.
+   */
+  public static final int COLLECTION_BATCH_SIZE = 500;
+
   @Id
   @GeneratedValue(strategy = GenerationType.AUTO)
   private UUID id;
@@ -93,6 +103,8 @@ public class Host implements Serializable {
   private String subscriptionManagerId;
 
   @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = COLLECTION_BATCH_SIZE)
   @CollectionTable(name = "instance_measurements", joinColumns = @JoinColumn(name = "instance_id"))
   @MapKeyEnumerated(EnumType.STRING)
   @MapKeyColumn(name = "uom")
@@ -100,6 +112,8 @@ public class Host implements Serializable {
   private Map<Measurement.Uom, Double> measurements = new EnumMap<>(Measurement.Uom.class);
 
   @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = COLLECTION_BATCH_SIZE)
   @CollectionTable(
       name = "instance_monthly_totals",
       joinColumns = @JoinColumn(name = "instance_id"))
@@ -127,6 +141,8 @@ public class Host implements Serializable {
       cascade = CascadeType.ALL,
       orphanRemoval = true,
       fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = COLLECTION_BATCH_SIZE)
   private Set<HostTallyBucket> buckets = new HashSet<>();
 
   @Column(name = "is_unmapped_guest")
@@ -170,7 +186,10 @@ public class Host implements Serializable {
   }
 
   public void setMeasurement(Measurement.Uom uom, Double value) {
-    measurements.put(uom, value);
+    // an unchanged value is not put again, since that would mark the collection dirty
+    if (!Objects.equals(measurements.get(uom), value)) {
+      measurements.put(uom, value);
+    }
   }
 
   public HostTallyBucket addBucket( // NOSONAR
@@ -207,11 +226,19 @@ public class Host implements Serializable {
     Optional<HostTallyBucket> existingBucket =
         buckets.stream().filter(b -> b.getKey().equals(bucket.getKey())).findFirst();
     // if the bucket key already exists, then we should update the existing values, instead of
-    // creating a redundant entry
+    // creating a redundant entry. An unchanged bucket is left untouched so that it isn't written.
     if (existingBucket.isPresent()) {
       HostTallyBucket b = existingBucket.get();
-      b.setSockets(bucket.getSockets());
-      b.setCores(bucket.getCores());
+      if (b.getSockets() != bucket.getSockets()
+          || b.getCores() != bucket.getCores()
+          || b.getMeasurementType() != bucket.getMeasurementType()) {
+        // the bucket's hash covers its values, so it is re-added to keep the set consistent
+        buckets.remove(b);
+        b.setSockets(bucket.getSockets());
+        b.setCores(bucket.getCores());
+        b.setMeasurementType(bucket.getMeasurementType());
+        buckets.add(b);
+      }
     } else {
       bucket.setHost(this);
       getBuckets().add(bucket);
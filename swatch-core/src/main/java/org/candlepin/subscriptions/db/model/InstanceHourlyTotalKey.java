@@ -0,0 +1,73 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db.model;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.candlepin.subscriptions.json.Measurement;
+
+/** Key for the total an instance reported for a measurement during a single hour. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class InstanceHourlyTotalKey implements Serializable {
+
+  @Column(name = "account_number", nullable = false)
+  private String accountNumber;
+
+  @Column(name = "service_type", nullable = false)
+  private String serviceType;
+
+  @Column(name = "instance_id", nullable = false)
+  private String instanceId;
+
+  /** start of the hour, always in UTC so that keys compare equal regardless of source */
+  @Column(name = "hour_start", nullable = false)
+  private OffsetDateTime hour;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "uom", nullable = false)
+  private Measurement.Uom uom;
+
+  public static InstanceHourlyTotalKey of(
+      String accountNumber,
+      String serviceType,
+      String instanceId,
+      OffsetDateTime hour,
+      Measurement.Uom uom) {
+    return new InstanceHourlyTotalKey(
+        accountNumber, serviceType, instanceId, hour.withOffsetSameInstant(ZoneOffset.UTC), uom);
+  }
+
+  /** Copy of this key with the hour normalized to UTC. */
+  public InstanceHourlyTotalKey normalized() {
+    return of(accountNumber, serviceType, instanceId, hour, uom);
+  }
+}
@@ -21,55 +21,67 @@
 package org.candlepin.subscriptions.db.model;
 
 import java.time.OffsetDateTime;
+import lombok.Getter;
+import lombok.ToString;
 import org.candlepin.subscriptions.utilization.api.model.Host;
-import org.springframework.beans.factory.annotation.Value;
 
 /**
  * A data projection around Host and TallyHostBuckets necessary to give us a view of the data to be
  * returned in the Hosts API.
+ *
+ * <p>Built by a JPQL constructor expression, so only the columns below are selected and no Host
+ * entity (with its collections) is loaded per row.
  */
-public interface TallyHostView {
-
-  @Value("#{target.host.inventoryId}")
-  String getInventoryId();
-
-  @Value("#{target.host.insightsId}")
-  String getInsightsId();
-
-  @Value("#{target.host.displayName}")
-  String getDisplayName();
-
-  @Value("#{target.measurementType}")
-  String getHardwareMeasurementType();
-
-  @Value("#{target.host.hardwareType}")
-  String getHardwareType();
-
-  @Value("#{target.cores}")
-  int getCores();
-
-  @Value("#{target.sockets}")
-  int getSockets();
-
-  @Value("#{target.host.numOfGuests}")
-  Integer getNumberOfGuests();
-
-  @Value("#{target.host.subscriptionManagerId}")
-  String getSubscriptionManagerId();
-
-  @Value("#{target.host.lastSeen}")
-  OffsetDateTime getLastSeen();
-
-  @Value("#{target.host.unmappedGuest}")
-  boolean isUnmappedGuest();
-
-  @Value("#{target.host.hypervisor}")
-  boolean isHypervisor();
-
-  @Value("#{target.host.cloudProvider}")
-  String getCloudProvider();
+@Getter
+@ToString
+public class TallyHostView {
+
+  private final String inventoryId;
+  private final String insightsId;
+  private final String displayName;
+  private final String hardwareMeasurementType;
+  private final String hardwareType;
+  private final int cores;
+  private final int sockets;
+  private final Integer numberOfGuests;
+  private final String subscriptionManagerId;
+  private final OffsetDateTime lastSeen;
+  private final boolean unmappedGuest;
+  private final boolean hypervisor;
+  private final String cloudProvider;
+
+  @SuppressWarnings("java:S107")
+  public TallyHostView(
+      String inventoryId,
+      String insightsId,
+      String displayName,
+      HardwareMeasurementType hardwareMeasurementType,
+      HostHardwareType hardwareType,
+      int cores,
+      int sockets,
+      Integer numberOfGuests,
+      String subscriptionManagerId,
+      OffsetDateTime lastSeen,
+      boolean unmappedGuest,
+      boolean hypervisor,
+      String cloudProvider) {
+    this.inventoryId = inventoryId;
+    this.insightsId = insightsId;
+    this.displayName = displayName;
+    this.hardwareMeasurementType =
+        hardwareMeasurementType == null ? null : hardwareMeasurementType.toString();
+    this.hardwareType = hardwareType == null ? null : hardwareType.toString();
+    this.cores = cores;
+    this.sockets = sockets;
+    this.numberOfGuests = numberOfGuests;
+    this.subscriptionManagerId = subscriptionManagerId;
+    this.lastSeen = lastSeen;
+    this.unmappedGuest = unmappedGuest;
+    this.hypervisor = hypervisor;
+    this.cloudProvider = cloudProvider;
+  }
 
-  default Host asApiHost() {
+  public Host asApiHost() {
     return new Host()
         .inventoryId(getInventoryId())
         .insightsId(getInsightsId())
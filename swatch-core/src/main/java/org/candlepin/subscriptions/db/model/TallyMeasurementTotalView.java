@@ -0,0 +1,46 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db.model;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A data projection of the summed value of a single tally measurement for one snapshot bucket
+ * (account, product, SLA, usage, billing provider and billing account) at a given snapshot date.
+ */
+public interface TallyMeasurementTotalView {
+
+  String getAccountNumber();
+
+  String getProductId();
+
+  ServiceLevel getServiceLevel();
+
+  Usage getUsage();
+
+  BillingProvider getBillingProvider();
+
+  String getBillingAccountId();
+
+  OffsetDateTime getSnapshotDate();
+
+  Double getTotal();
+}
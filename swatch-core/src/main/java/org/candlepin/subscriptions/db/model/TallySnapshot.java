@@ -95,8 +95,16 @@ public class TallySnapshot implements Serializable {
   @Column(name = "granularity")
   private Granularity granularity;
 
+  // The measurements carry the snapshot's partition keys, so that PostgreSQL only looks at the
+  // partition of the snapshot they belong to when reading or writing them.
   @ElementCollection(fetch = FetchType.EAGER)
-  @CollectionTable(name = "tally_measurements", joinColumns = @JoinColumn(name = "snapshot_id"))
+  @CollectionTable(
+      name = "tally_measurements",
+      joinColumns = {
+        @JoinColumn(name = "snapshot_id", referencedColumnName = "id"),
+        @JoinColumn(name = "granularity", referencedColumnName = "granularity"),
+        @JoinColumn(name = "snapshot_date", referencedColumnName = "snapshot_date")
+      })
   @Column(name = "value")
   @MapKeyClass(TallyMeasurementKey.class)
   @Builder.Default
@@ -189,6 +189,19 @@ public class UsageCalculation {
     add(cloudType, 0, count, count);
   }
 
+  /**
+   * Adds the raw totals of another calculation for the same key into this one. Unlike {@link
+   * #add(HardwareMeasurementType, Measurement.Uom, Double)}, no values are re-applied to the TOTAL
+   * type, since the other calculation's TOTAL already includes them.
+   *
+   * @param other the calculation to fold into this one.
+   */
+  public void merge(UsageCalculation other) {
+    other.mappedTotals.forEach(
+        (type, totals) ->
+            totals.getMeasurements().forEach((uom, value) -> increment(type, uom, value)));
+  }
+
   private void increment(HardwareMeasurementType type, Measurement.Uom uom, Double value) {
     Totals total = getOrDefault(type);
     total.increment(uom, value);
@@ -18,7 +18,7 @@
  * granted to use or replicate Red Hat trademarks that are incorporated
  * in this software or its documentation.
  */
-package com.redhat.swatch;
+package org.candlepin.subscriptions.db;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
@@ -26,9 +26,12 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.containers.wait.strategy.LogMessageWaitStrategy;
 import org.testcontainers.utility.DockerImageName;
 
-/** testcontainers override to set centos postgres compatible env vars */
-public class CentosPostgreSQLContainer extends PostgreSQLContainer {
-  CentosPostgreSQLContainer() {
+/**
+ * The PostgreSQL image used in production, configured the way it expects to be. Shared with other
+ * modules through the swatch-core test fixtures.
+ */
+public class CentosPostgreSQLContainer extends PostgreSQLContainer<CentosPostgreSQLContainer> {
+  public CentosPostgreSQLContainer() {
     super(
         DockerImageName.parse("quay.io/centos7/postgresql-12-centos7")
             .asCompatibleSubstituteFor("postgres"));
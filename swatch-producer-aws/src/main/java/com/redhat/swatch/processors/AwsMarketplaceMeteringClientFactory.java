@@ -22,33 +22,119 @@ package com.redhat.swatch.processors;
 
 import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
 import com.redhat.swatch.files.AwsCredentialsLookup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClientBuilder;
 
+/**
+ * Provides MarketplaceMeteringClient instances per AWS seller account.
+ *
+ * <p>Clients are cached, because each one owns an HTTP connection pool and building one per
+ * request is expensive. The cache is bounded: the least recently used client is closed and evicted
+ * when a new seller account would exceed AWS_MARKETPLACE_CLIENT_CACHE_SIZE. Credentials are read
+ * from AWS_CREDENTIALS_JSON once at startup, so rotated credentials take effect on restart.
+ */
+@Slf4j
 @ApplicationScoped
 public class AwsMarketplaceMeteringClientFactory {
   private final AwsCredentialsLookup awsCredentialsLookup;
   private final boolean awsMarketplaceEndpointOverride;
   private final String awsMarketplaceEndpointUrl;
   private final String awsRegion;
+  private final int clientCacheSize;
+  private final Counter cacheHitCounter;
+  private final Counter cacheMissCounter;
+  private final Counter cacheEvictionCounter;
+
+  // access-ordered, guarded by itself
+  private final Map<String, MarketplaceMeteringClient> clients =
+      new LinkedHashMap<>(16, 0.75f, true);
 
   public AwsMarketplaceMeteringClientFactory(
       AwsCredentialsLookup awsCredentialsLookup,
+      MeterRegistry meterRegistry,
       @ConfigProperty(name = "AWS_MARKETPLACE_ENDPOINT_OVERRIDE")
           boolean awsMarketplaceEndpointOverride,
       @ConfigProperty(name = "AWS_MARKETPLACE_ENDPOINT_URL") String awsMarketplaceEndpointUrl,
-      @ConfigProperty(name = "AWS_REGION") String awsRegion) {
+      @ConfigProperty(name = "AWS_REGION") String awsRegion,
+      @ConfigProperty(name = "AWS_MARKETPLACE_CLIENT_CACHE_SIZE") int clientCacheSize) {
     this.awsMarketplaceEndpointOverride = awsMarketplaceEndpointOverride;
     this.awsMarketplaceEndpointUrl = awsMarketplaceEndpointUrl;
     this.awsRegion = awsRegion;
     this.awsCredentialsLookup = awsCredentialsLookup;
+    this.clientCacheSize = clientCacheSize;
+    cacheHitCounter = meterRegistry.counter("swatch_aws_marketplace_client_cache_hits_total");
+    cacheMissCounter = meterRegistry.counter("swatch_aws_marketplace_client_cache_misses_total");
+    cacheEvictionCounter =
+        meterRegistry.counter("swatch_aws_marketplace_client_cache_evictions_total");
+    meterRegistry.gauge("swatch_aws_marketplace_client_cache_size", clients, this::cachedClients);
   }
 
+  /**
+   * Get the client for the seller account of the given context, building it if needed.
+   *
+   * <p>The returned client is shared and must not be closed by the caller.
+   *
+   * @param context AWS usage context identifying the seller account
+   * @return client using the seller account's credentials
+   */
   public MarketplaceMeteringClient buildMarketplaceMeteringClient(AwsUsageContext context) {
+    String awsSellerAccountId = context.getAwsSellerAccountId();
+    MarketplaceMeteringClient evicted = null;
+    MarketplaceMeteringClient client;
+    synchronized (clients) {
+      client = clients.get(awsSellerAccountId);
+      if (client != null) {
+        cacheHitCounter.increment();
+        return client;
+      }
+      cacheMissCounter.increment();
+      client = createClient(awsSellerAccountId);
+      if (clientCacheSize > 0) {
+        if (clients.size() >= clientCacheSize) {
+          var eldest = clients.entrySet().iterator().next();
+          evicted = eldest.getValue();
+          clients.remove(eldest.getKey());
+          cacheEvictionCounter.increment();
+          log.debug("Evicting MarketplaceMeteringClient for seller account {}", eldest.getKey());
+        }
+        clients.put(awsSellerAccountId, client);
+      }
+    }
+    if (evicted != null) {
+      evicted.close();
+    }
+    return client;
+  }
+
+  @PreDestroy
+  public void closeClients() {
+    List<MarketplaceMeteringClient> toClose;
+    synchronized (clients) {
+      toClose = new ArrayList<>(clients.values());
+      clients.clear();
+    }
+    toClose.forEach(MarketplaceMeteringClient::close);
+  }
+
+  private double cachedClients(Map<String, MarketplaceMeteringClient> cache) {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  private MarketplaceMeteringClient createClient(String awsSellerAccountId) {
     MarketplaceMeteringClientBuilder builder = MarketplaceMeteringClient.builder();
     if (awsMarketplaceEndpointOverride) {
       builder = builder.endpointOverride(URI.create(awsMarketplaceEndpointUrl));
@@ -57,8 +143,7 @@ public class AwsMarketplaceMeteringClientFactory {
       builder = builder.region(Region.of(awsRegion));
     }
     return builder
-        .credentialsProvider(
-            awsCredentialsLookup.getCredentialsProvider(context.getAwsSellerAccountId()))
+        .credentialsProvider(awsCredentialsLookup.getCredentialsProvider(awsSellerAccountId))
         .build();
   }
 }
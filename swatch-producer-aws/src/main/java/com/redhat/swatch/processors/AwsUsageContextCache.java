@@ -0,0 +1,209 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.processors;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.exception.AwsProducerException;
+import com.redhat.swatch.exception.AwsUsageContextLookupException;
+import com.redhat.swatch.exception.DefaultApiException;
+import com.redhat.swatch.exception.SubscriptionRecentlyTerminatedException;
+import com.redhat.swatch.openapi.model.BillableUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.core.Response.Status;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Caches AWS usage context lookups, which are almost always identical for every hour of a given
+ * org, product, SLA, usage and billing account.
+ *
+ * <p>A cached context is only used for snapshots at or after its subscription start, and for at
+ * most AWS_USAGE_CONTEXT_CACHE_TTL. Lookups that found no subscription, or only a recently
+ * terminated one, are cached for the shorter AWS_USAGE_CONTEXT_NEGATIVE_CACHE_TTL. Other lookup
+ * errors are not cached. A TTL of zero disables the respective caching.
+ */
+@Slf4j
+@ApplicationScoped
+public class AwsUsageContextCache {
+
+  /** Performs the actual lookup on a cache miss. */
+  @FunctionalInterface
+  public interface Loader {
+    AwsUsageContext load(BillableUsage billableUsage) throws AwsUsageContextLookupException;
+  }
+
+  private final Map<CacheKey, CachedLookup> cache = new ConcurrentHashMap<>();
+  private final Duration ttl;
+  private final Duration negativeTtl;
+  private final int maxSize;
+  private final Clock clock;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  @Inject
+  public AwsUsageContextCache(
+      MeterRegistry meterRegistry,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_TTL") Duration ttl,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_NEGATIVE_CACHE_TTL") Duration negativeTtl,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_SIZE") int maxSize) {
+    this(meterRegistry, ttl, negativeTtl, maxSize, Clock.systemUTC());
+  }
+
+  AwsUsageContextCache(
+      MeterRegistry meterRegistry,
+      Duration ttl,
+      Duration negativeTtl,
+      int maxSize,
+      Clock clock) {
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.maxSize = maxSize;
+    this.clock = clock;
+    hitCounter = meterRegistry.counter("swatch_aws_usage_context_cache_hits_total");
+    missCounter = meterRegistry.counter("swatch_aws_usage_context_cache_misses_total");
+  }
+
+  /**
+   * Get the AWS usage context for a billable usage, from the cache if possible.
+   *
+   * @param billableUsage usage to look up the context for
+   * @param loader lookup to use on a cache miss
+   * @return the usage context
+   * @throws AwsUsageContextLookupException if the lookup fails, or failed recently
+   */
+  public AwsUsageContext lookup(BillableUsage billableUsage, Loader loader)
+      throws AwsUsageContextLookupException {
+    CacheKey key = CacheKey.from(billableUsage);
+    Instant now = clock.instant();
+    CachedLookup cached = cache.get(key);
+    if (cached != null && cached.appliesTo(billableUsage, now)) {
+      hitCounter.increment();
+      return cached.getContextOrThrow();
+    }
+    missCounter.increment();
+
+    try {
+      AwsUsageContext context = loader.load(billableUsage);
+      put(key, new CachedLookup(context, null, now.plus(ttl)), ttl);
+      return context;
+    } catch (SubscriptionRecentlyTerminatedException e) {
+      put(key, new CachedLookup(null, e, now.plus(negativeTtl)), negativeTtl);
+      throw e;
+    } catch (AwsUsageContextLookupException e) {
+      if (isNotFound(e)) {
+        put(key, new CachedLookup(null, e, now.plus(negativeTtl)), negativeTtl);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Evict the cached lookups of an org, e.g. after its subscriptions were synced.
+   *
+   * @param orgId org to evict, or null to evict every cached lookup
+   */
+  public void invalidate(String orgId) {
+    if (orgId == null) {
+      log.info("Invalidating all cached AWS usage contexts");
+      cache.clear();
+    } else {
+      log.info("Invalidating cached AWS usage contexts for orgId={}", orgId);
+      cache.keySet().removeIf(key -> orgId.equals(key.getOrgId()));
+    }
+  }
+
+  private void put(CacheKey key, CachedLookup lookup, Duration entryTtl) {
+    if (entryTtl.isZero() || entryTtl.isNegative()) {
+      return;
+    }
+    if (cache.size() >= maxSize) {
+      Instant now = clock.instant();
+      cache.values().removeIf(cached -> !now.isBefore(cached.getExpiresAt()));
+      if (cache.size() >= maxSize) {
+        cache.clear();
+      }
+    }
+    cache.put(key, lookup);
+  }
+
+  private static boolean isNotFound(AwsUsageContextLookupException e) {
+    return e.getCause() instanceof DefaultApiException
+        && Optional.ofNullable(((DefaultApiException) e.getCause()).getResponse())
+            .map(response -> response.getStatus() == Status.NOT_FOUND.getStatusCode())
+            .orElse(false);
+  }
+
+  @Value
+  private static class CacheKey {
+    String accountNumber;
+    String orgId;
+    String productId;
+    BillableUsage.SlaEnum sla;
+    BillableUsage.UsageEnum usage;
+    String billingAccountId;
+
+    static CacheKey from(BillableUsage billableUsage) {
+      return new CacheKey(
+          billableUsage.getAccountNumber(),
+          billableUsage.getOrgId(),
+          billableUsage.getProductId(),
+          billableUsage.getSla(),
+          billableUsage.getUsage(),
+          billableUsage.getBillingAccountId());
+    }
+  }
+
+  @Value
+  private static class CachedLookup {
+    AwsUsageContext context;
+    AwsProducerException failure;
+    Instant expiresAt;
+
+    boolean appliesTo(BillableUsage billableUsage, Instant now) {
+      if (!now.isBefore(expiresAt)) {
+        return false;
+      }
+      // a context is only known to be valid from its subscription start on
+      return context == null
+          || context.getSubscriptionStartDate() == null
+          || billableUsage.getSnapshotDate() == null
+          || !billableUsage.getSnapshotDate().isBefore(context.getSubscriptionStartDate());
+    }
+
+    AwsUsageContext getContextOrThrow() {
+      if (failure != null) {
+        throw failure;
+      }
+      return Objects.requireNonNull(context);
+    }
+  }
+}
@@ -37,8 +37,13 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.reactive.messaging.annotations.Blocking;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.enterprise.context.ApplicationScoped;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.faulttolerance.Retry;
@@ -54,52 +59,140 @@ import software.amazon.awssdk.services.marketplacemetering.model.UsageRecordResu
 @Slf4j
 @ApplicationScoped
 public class BillableUsageProcessor {
+  /** Maximum number of usage records AWS accepts in a single BatchMeterUsage call. */
+  public static final int AWS_MAX_BATCH_SIZE = 25;
+
   private final Counter acceptedCounter;
   private final Counter rejectedCounter;
   private final TagProfile tagProfile;
   private final InternalSubscriptionsApi internalSubscriptionsApi;
   private final AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory;
+  private final AwsUsageContextCache awsUsageContextCache;
   private final Optional<Boolean> isDryRun;
+  private final boolean isBatchSendEnabled;
 
   public BillableUsageProcessor(
       MeterRegistry meterRegistry,
       TagProfile tagProfile,
       @RestClient InternalSubscriptionsApi internalSubscriptionsApi,
       AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory,
-      @ConfigProperty(name = "ENABLE_AWS_DRY_RUN") Optional<Boolean> isDryRun) {
+      AwsUsageContextCache awsUsageContextCache,
+      @ConfigProperty(name = "ENABLE_AWS_DRY_RUN") Optional<Boolean> isDryRun,
+      @ConfigProperty(name = "AWS_BATCH_SEND_ENABLED") boolean isBatchSendEnabled) {
     acceptedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_accepted_total");
     rejectedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_rejected_total");
     this.tagProfile = tagProfile;
     this.internalSubscriptionsApi = internalSubscriptionsApi;
     this.awsMarketplaceMeteringClientFactory = awsMarketplaceMeteringClientFactory;
+    this.awsUsageContextCache = awsUsageContextCache;
     this.isDryRun = isDryRun;
+    this.isBatchSendEnabled = isBatchSendEnabled;
   }
 
+  /**
+   * Process the billable usages of a poll from the tally-in channel.
+   *
+   * <p>When batch sending is enabled, usages are grouped by AWS seller account and product code,
+   * and sent with up to {@value #AWS_MAX_BATCH_SIZE} usage records per BatchMeterUsage call.
+   * Otherwise, each usage is sent on its own.
+   *
+   * @param billableUsages usages in the order they were consumed
+   */
   @Incoming("tally-in")
   @Blocking
+  public void process(List<BillableUsage> billableUsages) {
+    if (!isBatchSendEnabled) {
+      billableUsages.forEach(this::process);
+      return;
+    }
+
+    Map<BatchKey, List<PendingUsage>> batches = new LinkedHashMap<>();
+    for (BillableUsage billableUsage : billableUsages) {
+      if (!shouldProcess(billableUsage)) {
+        continue;
+      }
+      Optional<AwsUsageContext> context = lookupAwsUsageContextOrLog(billableUsage);
+      if (context.isEmpty()) {
+        continue;
+      }
+      try {
+        UsageRecord usageRecord = transformToAwsUsage(context.get(), billableUsage);
+        batches
+            .computeIfAbsent(
+                new BatchKey(context.get().getAwsSellerAccountId(), context.get().getProductCode()),
+                k -> new ArrayList<>())
+            .add(new PendingUsage(billableUsage, context.get(), usageRecord));
+      } catch (AwsDimensionNotConfiguredException e) {
+        log.error(
+            "Error transforming usage for account={} tallySnapshotId={} orgId={}",
+            billableUsage.getAccountNumber(),
+            billableUsage.getId(),
+            billableUsage.getOrgId(),
+            e);
+      }
+    }
+
+    batches
+        .values()
+        .forEach(
+            pendingUsages -> {
+              for (int i = 0; i < pendingUsages.size(); i += AWS_MAX_BATCH_SIZE) {
+                sendBatch(
+                    pendingUsages.subList(
+                        i, Math.min(i + AWS_MAX_BATCH_SIZE, pendingUsages.size())));
+              }
+            });
+  }
+
   public void process(BillableUsage billableUsage) {
+    if (!shouldProcess(billableUsage)) {
+      return;
+    }
+
+    Optional<AwsUsageContext> optionalContext = lookupAwsUsageContextOrLog(billableUsage);
+    if (optionalContext.isEmpty()) {
+      return;
+    }
+    AwsUsageContext context = optionalContext.get();
+    try {
+      transformAndSend(context, billableUsage);
+    } catch (Exception e) {
+      log.error(
+          "Error sending usage for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={} orgId={}",
+          billableUsage.getAccountNumber(),
+          context.getRhSubscriptionId(),
+          billableUsage.getId(),
+          context.getCustomerId(),
+          context.getProductCode(),
+          billableUsage.getOrgId(),
+          e);
+    }
+  }
+
+  private boolean shouldProcess(BillableUsage billableUsage) {
     if (log.isDebugEnabled()) {
       log.debug("Picked up billable usage message {} to process", billableUsage);
     }
     if (billableUsage == null) {
       log.warn("Skipping null billable usage: deserialization failure?");
-      return;
+      return false;
     }
     if (!isApplicable(billableUsage)) {
       log.debug("Skipping billable usage because it is not applicable: {}", billableUsage);
-      return;
+      return false;
     }
+    return true;
+  }
 
-    AwsUsageContext context;
+  private Optional<AwsUsageContext> lookupAwsUsageContextOrLog(BillableUsage billableUsage) {
     try {
-      context = lookupAwsUsageContext(billableUsage);
+      return Optional.of(awsUsageContextCache.lookup(billableUsage, this::lookupAwsUsageContext));
     } catch (SubscriptionRecentlyTerminatedException e) {
       log.info(
           "Subscription recently terminated for account={} tallySnapshotId={} orgId={}",
           billableUsage.getAccountNumber(),
           billableUsage.getId(),
           billableUsage.getOrgId());
-      return;
     } catch (AwsUsageContextLookupException e) {
       log.error(
           "Error looking up usage context for account={} tallySnapshotId={} orgId={}",
@@ -107,21 +200,8 @@ public class BillableUsageProcessor {
           billableUsage.getId(),
           billableUsage.getOrgId(),
           e);
-      return;
-    }
-    try {
-      transformAndSend(context, billableUsage);
-    } catch (Exception e) {
-      log.error(
-          "Error sending usage for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={} orgId={}",
-          billableUsage.getAccountNumber(),
-          context.getRhSubscriptionId(),
-          billableUsage.getId(),
-          context.getCustomerId(),
-          context.getProductCode(),
-          billableUsage.getOrgId(),
-          e);
     }
+    return Optional.empty();
   }
 
   private boolean isApplicable(BillableUsage billableUsage) {
@@ -208,6 +288,89 @@ public class BillableUsageProcessor {
     }
   }
 
+  /**
+   * Send usages sharing a seller account and product code in one BatchMeterUsage call. Records AWS
+   * did not process, or rejected, are logged against the usage they came from.
+   */
+  private void sendBatch(List<PendingUsage> pendingUsages) {
+    AwsUsageContext context = pendingUsages.get(0).getContext();
+    List<UsageRecord> usageRecords = new ArrayList<>();
+    Map<UsageRecord, List<PendingUsage>> pendingUsagesByRecord = new LinkedHashMap<>();
+    pendingUsages.forEach(
+        pendingUsage -> {
+          usageRecords.add(pendingUsage.getUsageRecord());
+          pendingUsagesByRecord
+              .computeIfAbsent(pendingUsage.getUsageRecord(), k -> new ArrayList<>())
+              .add(pendingUsage);
+        });
+    BatchMeterUsageRequest request =
+        BatchMeterUsageRequest.builder()
+            .productCode(context.getProductCode())
+            .usageRecords(usageRecords)
+            .build();
+
+    if (isDryRun.isPresent() && Boolean.TRUE.equals(isDryRun.get())) {
+      log.info("[DRY RUN] Sending usage request to AWS: {}", request);
+      return;
+    } else {
+      log.info("Sending usage request to AWS: {}", request);
+    }
+
+    try {
+      MarketplaceMeteringClient marketplaceMeteringClient =
+          awsMarketplaceMeteringClientFactory.buildMarketplaceMeteringClient(context);
+      BatchMeterUsageResponse response = send(marketplaceMeteringClient, request);
+      log.debug("{}", response);
+      response
+          .results()
+          .forEach(
+              result -> {
+                if (result.status() != UsageRecordResultStatus.SUCCESS) {
+                  logFailedUsages(
+                      pendingUsagesByRecord.get(result.usageRecord()),
+                      result.statusAsString(),
+                      null);
+                } else {
+                  log.info("{}", result);
+                  acceptedCounter.increment();
+                }
+              });
+      if (!response.unprocessedRecords().isEmpty()) {
+        rejectedCounter.increment(response.unprocessedRecords().size());
+        response
+            .unprocessedRecords()
+            .forEach(
+                usageRecord ->
+                    logFailedUsages(
+                        pendingUsagesByRecord.get(usageRecord), "unprocessed", null));
+      }
+    } catch (Exception e) {
+      // Any failure is contained to this batch, so that the batches already sent from the same poll
+      // are not redelivered and metered twice.
+      rejectedCounter.increment(usageRecords.size());
+      logFailedUsages(pendingUsages, "error", e);
+    }
+  }
+
+  private void logFailedUsages(List<PendingUsage> pendingUsages, String status, Exception e) {
+    if (pendingUsages == null) {
+      log.error("AWS returned status={} for a usage record that was not sent", status);
+      return;
+    }
+    pendingUsages.forEach(
+        pendingUsage ->
+            log.error(
+                "Error sending usage status={} for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={} orgId={}",
+                status,
+                pendingUsage.getBillableUsage().getAccountNumber(),
+                pendingUsage.getContext().getRhSubscriptionId(),
+                pendingUsage.getBillableUsage().getId(),
+                pendingUsage.getContext().getCustomerId(),
+                pendingUsage.getContext().getProductCode(),
+                pendingUsage.getBillableUsage().getOrgId(),
+                e));
+  }
+
   @Retry
   public BatchMeterUsageResponse send(
       MarketplaceMeteringClient client, BatchMeterUsageRequest request) {
@@ -232,4 +395,17 @@ public class BillableUsageProcessor {
         .timestamp(effectiveTimestamp.toInstant())
         .build();
   }
+
+  @Value
+  private static class BatchKey {
+    String awsSellerAccountId;
+    String productCode;
+  }
+
+  @Value
+  private static class PendingUsage {
+    BillableUsage billableUsage;
+    AwsUsageContext context;
+    UsageRecord usageRecord;
+  }
 }
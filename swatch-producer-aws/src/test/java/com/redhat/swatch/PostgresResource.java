@@ -23,6 +23,7 @@ package com.redhat.swatch;
 import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
 import java.util.Collections;
 import java.util.Map;
+import org.candlepin.subscriptions.db.CentosPostgreSQLContainer;
 import org.testcontainers.containers.PostgreSQLContainer;
 
 public class PostgresResource implements QuarkusTestResourceLifecycleManager {
@@ -20,9 +20,11 @@
  */
 package com.redhat.swatch.com.redhat.swatch.processors;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -40,20 +42,26 @@ import com.redhat.swatch.openapi.model.BillableUsage.UomEnum;
 import com.redhat.swatch.openapi.model.Error;
 import com.redhat.swatch.openapi.model.Errors;
 import com.redhat.swatch.processors.AwsMarketplaceMeteringClientFactory;
+import com.redhat.swatch.processors.AwsUsageContextCache;
 import com.redhat.swatch.processors.BillableUsageProcessor;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import javax.ws.rs.core.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
 import software.amazon.awssdk.services.marketplacemetering.model.BatchMeterUsageRequest;
 import software.amazon.awssdk.services.marketplacemetering.model.BatchMeterUsageResponse;
@@ -105,6 +113,7 @@ class BillableUsageProcessorTest {
   @Mock MarketplaceMeteringClient meteringClient;
 
   MeterRegistry meterRegistry;
+  AwsUsageContextCache usageContextCache;
   Counter acceptedCounter;
   Counter rejectedCounter;
   BillableUsageProcessor processor;
@@ -114,13 +123,16 @@ class BillableUsageProcessorTest {
     meterRegistry = new SimpleMeterRegistry();
     acceptedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_accepted_total");
     rejectedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_rejected_total");
+    usageContextCache = new AwsUsageContextCache(meterRegistry, Duration.ZERO, Duration.ZERO, 0);
     processor =
         new BillableUsageProcessor(
             meterRegistry,
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
-            Optional.of(false));
+            usageContextCache,
+            Optional.of(false),
+            false);
   }
 
   @Test
@@ -234,7 +246,9 @@ class BillableUsageProcessorTest {
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
-            Optional.of(true));
+            usageContextCache,
+            Optional.of(true),
+            false);
     when(internalSubscriptionsApi.getAwsUsageContext(
             any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
@@ -276,4 +290,105 @@ class BillableUsageProcessorTest {
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
     verifyNoInteractions(meteringClient);
   }
+
+  @Test
+  void shouldPackUsagesIntoBatchesOfAwsMaxSize() throws ApiException {
+    BillableUsageProcessor batchProcessor =
+        new BillableUsageProcessor(
+            meterRegistry,
+            new TagProfile(),
+            internalSubscriptionsApi,
+            clientFactory,
+            usageContextCache,
+            Optional.of(false),
+            true);
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+    List<BillableUsage> usages = new ArrayList<>();
+    for (int i = 0; i < BillableUsageProcessor.AWS_MAX_BATCH_SIZE + 5; i++) {
+      usages.add(RHOSAK_INSTANCE_HOURS_RECORD);
+    }
+    usages.add(new BillableUsage().billingProvider(BillingProviderEnum.RED_HAT));
+
+    batchProcessor.process(usages);
+
+    ArgumentCaptor<BatchMeterUsageRequest> requests =
+        ArgumentCaptor.forClass(BatchMeterUsageRequest.class);
+    verify(meteringClient, times(2)).batchMeterUsage(requests.capture());
+    assertEquals(
+        BillableUsageProcessor.AWS_MAX_BATCH_SIZE,
+        requests.getAllValues().get(0).usageRecords().size());
+    assertEquals(5, requests.getAllValues().get(1).usageRecords().size());
+  }
+
+  @Test
+  void shouldCountUnprocessedRecordsOfBatch() throws ApiException {
+    BillableUsageProcessor batchProcessor =
+        new BillableUsageProcessor(
+            meterRegistry,
+            new TagProfile(),
+            internalSubscriptionsApi,
+            clientFactory,
+            usageContextCache,
+            Optional.of(false),
+            true);
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              List<UsageRecord> records =
+                  invocation.getArgument(0, BatchMeterUsageRequest.class).usageRecords();
+              return BatchMeterUsageResponse.builder()
+                  .results(
+                      UsageRecordResult.builder()
+                          .usageRecord(records.get(0))
+                          .status(UsageRecordResultStatus.SUCCESS)
+                          .build())
+                  .unprocessedRecords(records.get(1))
+                  .build();
+            });
+
+    batchProcessor.process(
+        List.of(RHOSAK_INSTANCE_HOURS_RECORD, RHOSAK_STORAGE_GIB_MONTHS_RECORD));
+
+    assertEquals(1.0, acceptedCounter.count());
+    assertEquals(1.0, rejectedCounter.count());
+  }
+
+  @Test
+  void shouldContinueWithRemainingBatchesWhenOneFails() throws ApiException {
+    BillableUsageProcessor batchProcessor =
+        new BillableUsageProcessor(
+            meterRegistry,
+            new TagProfile(),
+            internalSubscriptionsApi,
+            clientFactory,
+            usageContextCache,
+            Optional.of(false),
+            true);
+    when(internalSubscriptionsApi.getAwsUsageContext(
+            any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenThrow(SdkClientException.create("Unable to execute HTTP request"))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+    List<BillableUsage> usages = new ArrayList<>();
+    for (int i = 0; i < BillableUsageProcessor.AWS_MAX_BATCH_SIZE + 5; i++) {
+      usages.add(RHOSAK_INSTANCE_HOURS_RECORD);
+    }
+
+    assertDoesNotThrow(() -> batchProcessor.process(usages));
+
+    verify(meteringClient, times(2)).batchMeterUsage(any(BatchMeterUsageRequest.class));
+    assertEquals(BillableUsageProcessor.AWS_MAX_BATCH_SIZE, rejectedCounter.count());
+    assertEquals(1.0, acceptedCounter.count());
+  }
 }
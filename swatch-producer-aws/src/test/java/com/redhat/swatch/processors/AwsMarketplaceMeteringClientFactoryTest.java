@@ -0,0 +1,81 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.files.AwsCredentialsLookup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
+
+class AwsMarketplaceMeteringClientFactoryTest {
+  private static final String CREDENTIALS_JSON =
+      "[{\"accessKeyId\":\"key1\",\"secretAccessKey\":\"secret1\","
+          + "\"sellerAccount\":\"seller1\"},"
+          + "{\"accessKeyId\":\"key2\",\"secretAccessKey\":\"secret2\","
+          + "\"sellerAccount\":\"seller2\"}]";
+
+  MeterRegistry meterRegistry;
+  AwsMarketplaceMeteringClientFactory factory;
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    factory =
+        new AwsMarketplaceMeteringClientFactory(
+            new AwsCredentialsLookup(CREDENTIALS_JSON),
+            meterRegistry,
+            true,
+            "http://localhost:8101/",
+            "us-east-1",
+            1);
+  }
+
+  @Test
+  void testClientIsReusedForSameSellerAccount() {
+    MarketplaceMeteringClient client = factory.buildMarketplaceMeteringClient(context("seller1"));
+    assertSame(client, factory.buildMarketplaceMeteringClient(context("seller1")));
+    assertEquals(1.0, counter("swatch_aws_marketplace_client_cache_hits_total"));
+    assertEquals(1.0, counter("swatch_aws_marketplace_client_cache_misses_total"));
+  }
+
+  @Test
+  void testLeastRecentlyUsedClientIsEvictedWhenFull() {
+    MarketplaceMeteringClient client = factory.buildMarketplaceMeteringClient(context("seller1"));
+    factory.buildMarketplaceMeteringClient(context("seller2"));
+    assertNotSame(client, factory.buildMarketplaceMeteringClient(context("seller1")));
+    assertEquals(2.0, counter("swatch_aws_marketplace_client_cache_evictions_total"));
+  }
+
+  private double counter(String name) {
+    return meterRegistry.counter(name).count();
+  }
+
+  private AwsUsageContext context(String sellerAccount) {
+    return new AwsUsageContext().awsSellerAccountId(sellerAccount);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.exception.AwsUsageContextLookupException;
+import com.redhat.swatch.exception.SubscriptionRecentlyTerminatedException;
+import com.redhat.swatch.openapi.model.BillableUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AwsUsageContextCacheTest {
+  private static final OffsetDateTime SUBSCRIPTION_START =
+      OffsetDateTime.of(2022, 10, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+  private static final AwsUsageContext CONTEXT =
+      new AwsUsageContext().customerId("customer").subscriptionStartDate(SUBSCRIPTION_START);
+
+  MutableClock clock;
+  AwsUsageContextCache cache;
+  AtomicInteger loads;
+
+  @BeforeEach
+  void setup() {
+    clock = new MutableClock(SUBSCRIPTION_START.plusDays(10).toInstant());
+    cache =
+        new AwsUsageContextCache(
+            new SimpleMeterRegistry(), Duration.ofHours(1), Duration.ofMinutes(5), 100, clock);
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  void testLookupIsCachedForOtherHoursOfSameUsage() {
+    AwsUsageContext first = cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    AwsUsageContext second =
+        cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2).plusHours(1)), this::load);
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void testCachedContextNotUsedBeforeSubscriptionStart() {
+    cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    cache.lookup(usage("org1", SUBSCRIPTION_START.minusHours(1)), this::load);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void testCachedContextExpires() {
+    cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    clock.advance(Duration.ofHours(1));
+    cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void testRecentlyTerminatedIsCachedUntilNegativeTtl() {
+    BillableUsage usage = usage("org1", SUBSCRIPTION_START.plusDays(2));
+    AwsUsageContextCache.Loader terminated =
+        u -> {
+          loads.incrementAndGet();
+          throw new SubscriptionRecentlyTerminatedException(new RuntimeException());
+        };
+    var exception = SubscriptionRecentlyTerminatedException.class;
+    assertThrows(exception, () -> cache.lookup(usage, terminated));
+    assertThrows(exception, () -> cache.lookup(usage, terminated));
+    assertEquals(1, loads.get());
+    clock.advance(Duration.ofMinutes(5));
+    assertThrows(exception, () -> cache.lookup(usage, terminated));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void testLookupErrorsAreNotCached() {
+    BillableUsage usage = usage("org1", SUBSCRIPTION_START.plusDays(2));
+    AwsUsageContextCache.Loader failing =
+        u -> {
+          loads.incrementAndGet();
+          throw new AwsUsageContextLookupException(new RuntimeException());
+        };
+    assertThrows(AwsUsageContextLookupException.class, () -> cache.lookup(usage, failing));
+    assertThrows(AwsUsageContextLookupException.class, () -> cache.lookup(usage, failing));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void testInvalidateEvictsOnlyGivenOrg() {
+    cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    cache.lookup(usage("org2", SUBSCRIPTION_START.plusDays(2)), this::load);
+    cache.invalidate("org1");
+    cache.lookup(usage("org1", SUBSCRIPTION_START.plusDays(2)), this::load);
+    cache.lookup(usage("org2", SUBSCRIPTION_START.plusDays(2)), this::load);
+    assertEquals(3, loads.get());
+  }
+
+  private AwsUsageContext load(BillableUsage usage) {
+    loads.incrementAndGet();
+    return CONTEXT;
+  }
+
+  private BillableUsage usage(String orgId, OffsetDateTime snapshotDate) {
+    return new BillableUsage()
+        .orgId(orgId)
+        .productId("rhosak")
+        .sla(BillableUsage.SlaEnum.PREMIUM)
+        .usage(BillableUsage.UsageEnum.PRODUCTION)
+        .snapshotDate(snapshotDate);
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}